@@ -0,0 +1,49 @@
+package net.gotev.hostmonitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of the logger calls made by the check loop when logging is disabled.
+ * @author gotev (Aleksandar Gotev)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoggerBenchmark {
+
+    private static final String LOG_TAG = LoggerBenchmark.class.getSimpleName();
+
+    private final Host mHost = new Host("www.example.com", 443);
+    private final long mConnectTime = 12345678;
+
+    @Setup
+    public void setUp() {
+        Logger.setLogLevel(Logger.LogLevel.OFF);
+    }
+
+    @Benchmark
+    public void constantMessage() {
+        Logger.debug(LOG_TAG, "Reachability check finished!");
+    }
+
+    @Benchmark
+    public void concatenatedMessage() {
+        // same message built for each probe result
+        Logger.debug(LOG_TAG, "Host " + mHost.getHost() + " on port " + mHost.getPort()
+                + " connection established in " + (mConnectTime / 1000000) + "ms");
+    }
+}
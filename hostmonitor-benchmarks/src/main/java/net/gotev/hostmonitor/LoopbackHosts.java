@@ -0,0 +1,200 @@
+package net.gotev.hostmonitor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Local loopback endpoints used as benchmark targets.
+ * @author gotev (Aleksandar Gotev)
+ */
+class LoopbackHosts implements Closeable {
+
+    enum Kind {
+        // a listener accepts and immediately closes the connections
+        OPEN,
+        // a listener accepts and keeps the connections open until closed
+        HOLD_OPEN,
+        // nothing listens on the port, so connections are refused
+        REFUSED,
+        // a listener never accepts and its backlog is full, so connection attempts time out
+        BLACKHOLED
+    }
+
+    private static final String LOOPBACK = "127.0.0.1";
+
+    // timeout used while filling the backlog of a blackholed listener
+    private static final int FILL_TIMEOUT = 100;
+    private static final int MAX_FILL_CONNECTIONS = 16;
+
+    private final Set<Host> mHosts = new LinkedHashSet<>();
+    private final List<Closeable> mResources = new ArrayList<>();
+    private final List<SocketChannel> mAccepted = new ArrayList<>();
+    private boolean mHoldOpen;
+    private Selector mSelector;
+    private Thread mAcceptor;
+
+    private LoopbackHosts() { }
+
+    /**
+     * Creates the given number of loopback endpoints, all of the same kind.
+     * @param kind kind of the endpoints
+     * @param count number of endpoints
+     * @return created endpoints. Close them when finished
+     * @throws IOException if the endpoints can't be created
+     */
+    static LoopbackHosts create(Kind kind, int count) throws IOException {
+        LoopbackHosts hosts = new LoopbackHosts();
+
+        try {
+            if (kind == Kind.OPEN || kind == Kind.HOLD_OPEN) {
+                hosts.mHoldOpen = kind == Kind.HOLD_OPEN;
+                hosts.openListeners(count);
+            } else if (kind == Kind.REFUSED) {
+                hosts.reservePorts(count);
+            } else {
+                hosts.openBlackholes(count);
+            }
+        } catch (IOException exc) {
+            hosts.close();
+            throw exc;
+        }
+
+        return hosts;
+    }
+
+    Set<Host> getHosts() {
+        return Collections.unmodifiableSet(mHosts);
+    }
+
+    private void openListeners(int count) throws IOException {
+        mSelector = Selector.open();
+
+        for (int i = 0; i < count; i++) {
+            ServerSocketChannel channel = ServerSocketChannel.open();
+            mResources.add(channel);
+            channel.socket().bind(new InetSocketAddress(InetAddress.getByName(LOOPBACK), 0), 128);
+            channel.configureBlocking(false);
+            channel.register(mSelector, SelectionKey.OP_ACCEPT);
+            mHosts.add(new Host(LOOPBACK, channel.socket().getLocalPort()));
+        }
+
+        mAcceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "LoopbackHostsAcceptor");
+        mAcceptor.setDaemon(true);
+        mAcceptor.start();
+    }
+
+    private void accept() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                mSelector.select();
+
+                for (SelectionKey key : mSelector.selectedKeys()) {
+                    SocketChannel channel;
+                    while ((channel = ((ServerSocketChannel) key.channel()).accept()) != null) {
+                        if (mHoldOpen) {
+                            synchronized (mAccepted) {
+                                mAccepted.add(channel);
+                            }
+                        } else {
+                            channel.close();
+                        }
+                    }
+                }
+
+                mSelector.selectedKeys().clear();
+            }
+        } catch (Exception exc) {
+            // selector closed
+        }
+    }
+
+    private void reservePorts(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            ServerSocket socket = new ServerSocket(0, 1, InetAddress.getByName(LOOPBACK));
+            mHosts.add(new Host(LOOPBACK, socket.getLocalPort()));
+            socket.close();
+        }
+    }
+
+    private void openBlackholes(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            ServerSocket listener = new ServerSocket(0, 1, InetAddress.getByName(LOOPBACK));
+            mResources.add(listener);
+            fillBacklog(listener.getLocalPort());
+            mHosts.add(new Host(LOOPBACK, listener.getLocalPort()));
+        }
+    }
+
+    private void fillBacklog(int port) throws IOException {
+        for (int i = 0; i < MAX_FILL_CONNECTIONS; i++) {
+            Socket socket = new Socket();
+            mResources.add(socket);
+
+            try {
+                socket.connect(new InetSocketAddress(LOOPBACK, port), FILL_TIMEOUT);
+            } catch (SocketTimeoutException exc) {
+                // backlog full, the next connection attempts are going to be dropped
+                return;
+            }
+        }
+
+        throw new IOException("Unable to fill the backlog of port " + port);
+    }
+
+    @Override
+    public void close() {
+        if (mAcceptor != null) {
+            mAcceptor.interrupt();
+        }
+
+        if (mSelector != null) {
+            try {
+                mSelector.close();
+            } catch (IOException exc) {
+                // ignored
+            }
+        }
+
+        for (Closeable resource : mResources) {
+            try {
+                resource.close();
+            } catch (IOException exc) {
+                // ignored
+            }
+        }
+
+        synchronized (mAccepted) {
+            for (SocketChannel channel : mAccepted) {
+                try {
+                    channel.close();
+                } catch (IOException exc) {
+                    // ignored
+                }
+            }
+
+            mAccepted.clear();
+        }
+
+        mResources.clear();
+        mHosts.clear();
+    }
+}
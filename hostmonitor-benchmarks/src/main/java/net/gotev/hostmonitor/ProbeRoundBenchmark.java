@@ -0,0 +1,96 @@
+package net.gotev.hostmonitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a whole check round over N loopback hosts, including the status state machine.
+ * After the first round the statuses don't change anymore, so the steady state is measured.
+ * @author gotev (Aleksandar Gotev)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProbeRoundBenchmark {
+
+    // connect timeout, which is the time spent on each blackholed host
+    private static final int SOCKET_TIMEOUT = 50;
+
+    @Param({"16", "64"})
+    public int hosts;
+
+    // the parameters are strings, as generated JMH code can't access package-private types
+    @Param({"OPEN", "REFUSED", "BLACKHOLED"})
+    public String kind;
+
+    @Param({"BLOCKING", "PARALLEL", "SELECTOR"})
+    public String engine;
+
+    private LoopbackHosts mLoopbackHosts;
+    private final StatusTable mTable = new StatusTable();
+    private final Probe mProbe = new TcpProbe();
+    private ReachabilityCheck mCheck;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Logger.setLogLevel(Logger.LogLevel.OFF);
+        mLoopbackHosts = LoopbackHosts.create(LoopbackHosts.Kind.valueOf(kind), hosts);
+
+        for (Host host : mLoopbackHosts.getHosts()) {
+            mTable.put(host, new Status());
+        }
+
+        CheckSettings settings = new CheckSettings()
+                .setSocketTimeout(SOCKET_TIMEOUT)
+                .setMaxAttempts(1)
+                .setProbeEngine("SELECTOR".equals(engine) ? ProbeEngine.SELECTOR
+                                                          : ProbeEngine.BLOCKING)
+                .setParallelism("PARALLEL".equals(engine) ? 8 : 1);
+
+        mCheck = new ReachabilityCheck(settings, mTable, new ReachabilityCheck.Callback() {
+            @Override
+            public Probe getProbe(Host host) {
+                return mProbe;
+            }
+
+            @Override
+            public void onStatusChanged(ProbeResult result, Status previousStatus,
+                                        Status newStatus) {
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mLoopbackHosts.close();
+        mTable.clear();
+    }
+
+    @Benchmark
+    public int round() {
+        mCheck.check(ConnectionType.WIFI, mLoopbackHosts.getHosts());
+        return mTable.size();
+    }
+}
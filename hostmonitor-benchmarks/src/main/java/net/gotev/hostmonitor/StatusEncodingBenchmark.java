@@ -0,0 +1,45 @@
+package net.gotev.hostmonitor;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the JSON encoding of a single status, which is the format used by the
+ * SharedPreferences status store. HostStatus is encoded in a Parcel, which is available
+ * only on an Android runtime, so it's not measured here.
+ * @author gotev (Aleksandar Gotev)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StatusEncodingBenchmark {
+
+    private final Gson mGson = new Gson();
+    private final Status mStatus = new Status(true, ConnectionType.WIFI, 20,
+                                              System.currentTimeMillis());
+    private final String mJson = mGson.toJson(mStatus);
+
+    @Benchmark
+    public String encode() {
+        return mGson.toJson(mStatus);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return mGson.fromJson(mJson, Status.class);
+    }
+}
@@ -0,0 +1,97 @@
+package net.gotev.hostmonitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of persisting and loading the statuses as the number of hosts grows.
+ * It's the work done by HostMonitorConfig saveHostsMap and when the hosts are loaded,
+ * with the default binary status store.
+ * @author gotev (Aleksandar Gotev)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StatusStoreBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int hosts;
+
+    private BinaryStatusStore mStore;
+    private final StatusTable mTable = new StatusTable();
+    private final StatusTable mLoadedTable = new StatusTable();
+    private final BitSet mAll = new BitSet();
+    private final BitSet mOne = new BitSet();
+    private Host mFirst;
+    private File mDirectory;
+    private boolean mReachable;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Logger.setLogLevel(Logger.LogLevel.OFF);
+        mDirectory = Files.createTempDirectory("hostmonitor").toFile();
+        mStore = BinaryStatusStore.getInstance(mDirectory);
+        mStore.clear();
+
+        for (int i = 0; i < hosts; i++) {
+            Status status = new Status(true, ConnectionType.WIFI, 20, System.currentTimeMillis());
+            status.setCheckInterval(60000);
+            mAll.set(mTable.put(new Host("host" + i + ".example.com", 443), status));
+        }
+
+        mStore.write(mTable, mAll, Collections.<Host>emptyList());
+
+        mFirst = mTable.getHost(0);
+        mOne.set(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mStore.clear();
+        mTable.clear();
+        mLoadedTable.clear();
+
+        if (!mDirectory.delete()) {
+            mDirectory.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public int load() {
+        mLoadedTable.load(mStore);
+        return mLoadedTable.size();
+    }
+
+    @Benchmark
+    public void writeAll() {
+        mStore.write(mTable, mAll, Collections.<Host>emptyList());
+    }
+
+    @Benchmark
+    public void writeOneChanged() {
+        mReachable = !mReachable;
+        mTable.put(mFirst, new Status(mReachable, ConnectionType.WIFI, 20, 1000));
+        mStore.write(mTable, mOne, Collections.<Host>emptyList());
+    }
+}
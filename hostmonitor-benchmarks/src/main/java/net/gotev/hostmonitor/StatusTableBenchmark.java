@@ -0,0 +1,83 @@
+package net.gotev.hostmonitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the status table with large host sets: updating the status of all the hosts,
+ * querying a single host and taking a snapshot of all of them.
+ * @author gotev (Aleksandar Gotev)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StatusTableBenchmark {
+
+    @Param({"1000", "10000"})
+    public int hosts;
+
+    private final StatusTable mTable = new StatusTable();
+    private Host[] mHosts;
+    private int[] mIds;
+    private Status[][] mRounds;
+    private int mRound;
+    private int mNext;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mHosts = new Host[hosts];
+        mIds = new int[hosts];
+        // two alternating sets of statuses, so that each update changes the table
+        mRounds = new Status[2][hosts];
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < hosts; i++) {
+            mHosts[i] = new Host("host" + i + ".example.com", 443);
+            mRounds[0][i] = new Status(true, ConnectionType.WIFI, 20, now);
+            mRounds[1][i] = new Status(false, ConnectionType.MOBILE, -1, now + 1);
+            mIds[i] = mTable.put(mHosts[i], mRounds[0][i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mTable.clear();
+    }
+
+    @Benchmark
+    public void updateAll() {
+        mRound ^= 1;
+        Status[] statuses = mRounds[mRound];
+
+        for (int i = 0; i < mHosts.length; i++) {
+            mTable.update(mIds[i], mHosts[i], statuses[i]);
+        }
+    }
+
+    @Benchmark
+    public ReachabilityStatus get() {
+        mNext = (mNext + 1) % mHosts.length;
+        return mTable.get(mHosts[mNext]);
+    }
+
+    @Benchmark
+    public int snapshot() {
+        return mTable.snapshot().size();
+    }
+}
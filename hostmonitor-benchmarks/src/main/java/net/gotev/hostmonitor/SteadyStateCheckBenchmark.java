@@ -0,0 +1,134 @@
+package net.gotev.hostmonitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the scheduled check rounds of hosts whose status doesn't change, on persistent
+ * connections. Rounds are run by a {@link CheckRound}, as the service does, so they include
+ * picking the due hosts, the status and probe lookups and the scheduling of the next checks.
+ * Run it with the gc profiler: gc.alloc.rate.norm is the garbage created by each host check,
+ * which has to stay close to 0 B/op.
+ * @author gotev (Aleksandar Gotev)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SteadyStateCheckBenchmark {
+
+    private static final int HOSTS = 64;
+    private static final int CHECK_INTERVAL = 60000;
+
+    /**
+     * Monitored hosts with the same lookups made by HostMonitorConfig, which can't be created
+     * outside of an Android application.
+     */
+    private static class MonitoredHosts implements CheckRound.Hosts {
+        private static final Probe DEFAULT_PROBE = new TcpProbe();
+
+        private final StatusTable mTable;
+
+        MonitoredHosts(StatusTable table) {
+            mTable = table;
+        }
+
+        @Override
+        public Probe getProbe(Host host) {
+            return DEFAULT_PROBE;
+        }
+
+        @Override
+        public int getCheckInterval(int id) {
+            if (mTable.getCheckInterval(id) > 0) {
+                return mTable.getCheckInterval(id);
+            }
+
+            return CHECK_INTERVAL;
+        }
+    }
+
+    private LoopbackHosts mLoopbackHosts;
+    private final StatusTable mTable = new StatusTable();
+    private final MonitoredHosts mHosts = new MonitoredHosts(mTable);
+    private CheckSettings mSettings;
+    private CheckRound.Listener mListener;
+    // time of the scheduler, which is advanced by a check interval on each round
+    private long mNow;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Logger.setLogLevel(Logger.LogLevel.OFF);
+        mLoopbackHosts = LoopbackHosts.create(LoopbackHosts.Kind.HOLD_OPEN, HOSTS);
+
+        for (Host host : mLoopbackHosts.getHosts()) {
+            mTable.put(host, new Status());
+        }
+
+        CheckScheduler.getInstance().clear();
+
+        mSettings = new CheckSettings()
+                .setMaxAttempts(1)
+                .setPersistentConnections(true);
+
+        mListener = new CheckRound.Listener() {
+            @Override
+            public void onStatusChanged(ProbeResult result, Status previousStatus,
+                                        Status newStatus) {
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        };
+
+        // the first round checks all the hosts, opens the connections and changes the
+        // statuses to reachable, from then on nothing changes anymore
+        runRound(false);
+        runRound(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        PersistentConnections.getInstance().closeAll();
+        CheckScheduler.getInstance().clear();
+        mTable.clear();
+        mLoopbackHosts.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(HOSTS)
+    public int check() {
+        return runRound(true);
+    }
+
+    private int runRound(boolean scheduled) {
+        CheckRound round = new CheckRound(mSettings, mTable, mHosts, mListener,
+                                          CheckScheduler.getInstance());
+        Collection<Host> hosts = round.getHostsToCheck(scheduled, mNow);
+
+        round.check(ConnectionType.WIFI, hosts);
+        round.schedule(hosts, mNow);
+        mNow += CHECK_INTERVAL;
+
+        return hosts.size();
+    }
+}
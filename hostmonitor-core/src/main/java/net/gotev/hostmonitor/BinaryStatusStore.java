@@ -0,0 +1,338 @@
+package net.gotev.hostmonitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Status store which keeps each host in a fixed size record of a memory mapped file.
+ * Changed hosts are updated in place and removed hosts only get their record marked as free,
+ * so the cost of a write depends only on the number of changed hosts.
+ * <br><br>
+ * File layout: a header (magic, version, record size, capacity) followed by capacity records.
+ * There is a single instance for each process, so that the index of the records is shared.
+ * @author gotev (Aleksandar Gotev)
+ */
+class BinaryStatusStore implements StatusStore {
+
+    private static final String LOG_TAG = BinaryStatusStore.class.getSimpleName();
+
+    static final String FILE_NAME = "host_monitor_status.bin";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC = 0x484d5354;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 16;
+
+    // maximum length of a host name in bytes. DNS names can't be longer than 253 characters
+    static final int MAX_HOST_LENGTH = 256;
+
+    // record layout
+    private static final int FLAGS = 0;
+    private static final int CONNECTION_TYPE = 1;
+    private static final int HOST_LENGTH = 2;
+    private static final int PORT = 4;
+    private static final int LATENCY = 8;
+    private static final int CHECK_TIME = 16;
+    private static final int CHECK_INTERVAL = 24;
+    private static final int ADAPTIVE_CHECK_INTERVAL = 28;
+    private static final int PENDING_RESULTS = 32;
+    // bytes from 36 to 55 are reserved for future fields
+    private static final int HOST = 56;
+    private static final int RECORD_SIZE = HOST + MAX_HOST_LENGTH;
+
+    private static final int FLAG_USED = 1;
+    private static final int FLAG_REACHABLE = 1 << 1;
+
+    private static BinaryStatusStore instance;
+
+    private final File mFile;
+    private RandomAccessFile mRandomAccessFile;
+    private MappedByteBuffer mBuffer;
+    private int mCapacity;
+    private final BitSet mUsedRecords = new BitSet();
+    private final Map<Host, Integer> mRecords = new HashMap<>();
+    // reused to move the statuses between the records and the status table
+    private final Status mStatus = new Status();
+
+    /**
+     * Creates a store which uses the given file. Only one store at a time must use a file,
+     * so outside of tests use {@link #getInstance(File)}.
+     * @param file file in which the statuses are kept
+     */
+    BinaryStatusStore(File file) {
+        mFile = file;
+    }
+
+    /**
+     * Gets the store instance.
+     * @param directory directory in which the {@link #FILE_NAME} file is kept. Only the
+     *                  directory of the first invocation is used
+     * @return store instance
+     */
+    public static synchronized BinaryStatusStore getInstance(File directory) {
+        if (instance == null) {
+            instance = new BinaryStatusStore(new File(directory, FILE_NAME));
+        }
+
+        return instance;
+    }
+
+    @Override
+    public synchronized void load(StatusTable table) {
+        if (!open()) return;
+
+        for (Map.Entry<Host, Integer> entry : mRecords.entrySet()) {
+            readStatus(entry.getValue(), mStatus);
+            table.put(entry.getKey(), mStatus);
+        }
+    }
+
+    @Override
+    public synchronized void write(StatusTable table, BitSet changed, Collection<Host> removed) {
+        if (!open()) return;
+
+        try {
+            boolean recordsChanged = false;
+
+            for (Host host : removed) {
+                Integer record = mRecords.remove(host);
+
+                if (record != null) {
+                    mBuffer.put(getOffset(record) + FLAGS, (byte) 0);
+                    mUsedRecords.clear(record);
+                    recordsChanged = true;
+                }
+            }
+
+            for (int id = changed.nextSetBit(0); id >= 0; id = changed.nextSetBit(id + 1)) {
+                Host host = table.getHost(id);
+
+                if (host == null || !table.read(id, mStatus)) continue;
+
+                Integer record = mRecords.get(host);
+
+                if (record == null) {
+                    record = allocateRecord(host);
+                    if (record < 0) continue;
+                }
+
+                recordsChanged |= writeStatus(record, mStatus);
+            }
+
+            // a single sync for the whole batch, and none if no record changed
+            if (recordsChanged) {
+                mBuffer.force();
+            }
+
+        } catch (IOException exc) {
+            Logger.error(LOG_TAG, "Error while writing " + mFile, exc);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        close();
+        mRecords.clear();
+        mUsedRecords.clear();
+
+        if (mFile.exists() && !mFile.delete()) {
+            Logger.error(LOG_TAG, "Unable to delete " + mFile);
+        }
+    }
+
+    /**
+     * Opens and maps the file, creating it if it does not exist or it's not valid, and builds
+     * the index of the records.
+     * @return true if the file is ready to be used, false otherwise
+     */
+    private boolean open() {
+        if (mBuffer != null) return true;
+
+        try {
+            mRandomAccessFile = new RandomAccessFile(mFile, "rw");
+
+            if (mRandomAccessFile.length() >= HEADER_SIZE) {
+                map(mRandomAccessFile.length());
+
+                int capacity = mBuffer.getInt(12);
+
+                if (mBuffer.getInt(0) == MAGIC && mBuffer.getInt(4) == VERSION
+                        && mBuffer.getInt(8) == RECORD_SIZE && capacity > 0
+                        && HEADER_SIZE + (long) capacity * RECORD_SIZE <= mBuffer.capacity()) {
+                    mCapacity = capacity;
+                    readIndex();
+                    return true;
+                }
+
+                Logger.error(LOG_TAG, mFile + " is not valid. Discarding its content.");
+            }
+
+            resize(INITIAL_CAPACITY);
+            return true;
+
+        } catch (IOException exc) {
+            Logger.error(LOG_TAG, "Error while opening " + mFile, exc);
+            close();
+            return false;
+        }
+    }
+
+    private void close() {
+        mBuffer = null;
+        mCapacity = 0;
+
+        if (mRandomAccessFile != null) {
+            try {
+                mRandomAccessFile.close();
+            } catch (IOException exc) {
+                Logger.debug(LOG_TAG, "Error while closing %s", mFile);
+            }
+
+            mRandomAccessFile = null;
+        }
+    }
+
+    private void map(long size) throws IOException {
+        mBuffer = mRandomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private void resize(int capacity) throws IOException {
+        mRandomAccessFile.setLength(HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        map(mRandomAccessFile.length());
+
+        mBuffer.putInt(0, MAGIC);
+        mBuffer.putInt(4, VERSION);
+        mBuffer.putInt(8, RECORD_SIZE);
+        mBuffer.putInt(12, capacity);
+        mCapacity = capacity;
+    }
+
+    private void readIndex() {
+        mRecords.clear();
+        mUsedRecords.clear();
+
+        byte[] hostBytes = new byte[MAX_HOST_LENGTH];
+
+        for (int record = 0; record < mCapacity; record++) {
+            int offset = getOffset(record);
+
+            if ((mBuffer.get(offset + FLAGS) & FLAG_USED) == 0) continue;
+
+            int hostLength = mBuffer.getShort(offset + HOST_LENGTH);
+            int port = mBuffer.getInt(offset + PORT);
+
+            if (hostLength <= 0 || hostLength > MAX_HOST_LENGTH || port < 0 || port > 65535) {
+                Logger.error(LOG_TAG, "Record " + record + " of " + mFile
+                        + " is corrupted. Discarding it.");
+                mBuffer.put(offset + FLAGS, (byte) 0);
+                continue;
+            }
+
+            for (int i = 0; i < hostLength; i++) {
+                hostBytes[i] = mBuffer.get(offset + HOST + i);
+            }
+
+            Host host = new Host(new String(hostBytes, 0, hostLength, UTF_8), port);
+
+            if (mRecords.containsKey(host)) {
+                Logger.error(LOG_TAG, "Record " + record + " of " + mFile
+                        + " duplicates host " + host.getKey() + ". Discarding it.");
+                mBuffer.put(offset + FLAGS, (byte) 0);
+                continue;
+            }
+
+            mRecords.put(host, record);
+            mUsedRecords.set(record);
+        }
+    }
+
+    /**
+     * Allocates a free record to a new host, growing the file if needed.
+     * @return record index, or -1 if the host can't be stored
+     */
+    private int allocateRecord(Host host) throws IOException {
+        byte[] hostBytes = host.getHost().getBytes(UTF_8);
+
+        if (hostBytes.length > MAX_HOST_LENGTH) {
+            Logger.error(LOG_TAG, "Host name too long, unable to persist it: " + host.getHost());
+            return -1;
+        }
+
+        int record = mUsedRecords.nextClearBit(0);
+
+        if (record >= mCapacity) {
+            resize(mCapacity * 2);
+        }
+
+        int offset = getOffset(record);
+        mBuffer.putShort(offset + HOST_LENGTH, (short) hostBytes.length);
+        mBuffer.putInt(offset + PORT, host.getPort());
+        for (int i = 0; i < hostBytes.length; i++) {
+            mBuffer.put(offset + HOST + i, hostBytes[i]);
+        }
+
+        mRecords.put(host, record);
+        mUsedRecords.set(record);
+        return record;
+    }
+
+    private void readStatus(int record, Status status) {
+        int offset = getOffset(record);
+        byte flags = mBuffer.get(offset + FLAGS);
+        int connectionType = mBuffer.get(offset + CONNECTION_TYPE);
+
+        status.setReachable((flags & FLAG_REACHABLE) != 0);
+        status.setConnectionType(connectionType >= 0
+                                         && connectionType < ConnectionType.values().length
+                                         ? ConnectionType.values()[connectionType]
+                                         : ConnectionType.NONE);
+        status.setLatency(mBuffer.getLong(offset + LATENCY));
+        status.setCheckTime(mBuffer.getLong(offset + CHECK_TIME));
+        status.setCheckInterval(mBuffer.getInt(offset + CHECK_INTERVAL));
+        status.setAdaptiveCheckInterval(mBuffer.getInt(offset + ADAPTIVE_CHECK_INTERVAL));
+        status.setPendingResults(mBuffer.getInt(offset + PENDING_RESULTS));
+    }
+
+    /**
+     * Writes the status of a host in its record.
+     * @return true if the record changed, false if it already contained the same status
+     */
+    private boolean writeStatus(int record, Status status) {
+        int offset = getOffset(record);
+        byte flags = (byte) (FLAG_USED | (status.isReachable() ? FLAG_REACHABLE : 0));
+        byte connectionType = (byte) status.getConnectionType().ordinal();
+
+        if (mBuffer.get(offset + FLAGS) == flags
+                && mBuffer.get(offset + CONNECTION_TYPE) == connectionType
+                && mBuffer.getLong(offset + LATENCY) == status.getLatency()
+                && mBuffer.getLong(offset + CHECK_TIME) == status.getCheckTime()
+                && mBuffer.getInt(offset + CHECK_INTERVAL) == status.getCheckInterval()
+                && mBuffer.getInt(offset + ADAPTIVE_CHECK_INTERVAL) == status.getAdaptiveCheckInterval()
+                && mBuffer.getInt(offset + PENDING_RESULTS) == status.getPendingResults())
+            return false;
+
+        mBuffer.put(offset + CONNECTION_TYPE, connectionType);
+        mBuffer.putLong(offset + LATENCY, status.getLatency());
+        mBuffer.putLong(offset + CHECK_TIME, status.getCheckTime());
+        mBuffer.putInt(offset + CHECK_INTERVAL, status.getCheckInterval());
+        mBuffer.putInt(offset + ADAPTIVE_CHECK_INTERVAL, status.getAdaptiveCheckInterval());
+        mBuffer.putInt(offset + PENDING_RESULTS, status.getPendingResults());
+        // flags are written last, so the record becomes used only when complete
+        mBuffer.put(offset + FLAGS, flags);
+        return true;
+    }
+
+    private static int getOffset(int record) {
+        return HEADER_SIZE + record * RECORD_SIZE;
+    }
+}
@@ -0,0 +1,205 @@
+package net.gotev.hostmonitor;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Collections;
+
+/**
+ * Checks the reachability of a host with blocking sockets, retrying failed connection attempts
+ * according to the {@link RetryPolicy}. Once connected, the host health is checked with its
+ * {@link Probe}. Instances are immutable and can be shared between threads.
+ * @author gotev (Aleksandar Gotev)
+ */
+class BlockingProbe {
+
+    private static final String LOG_TAG = BlockingProbe.class.getSimpleName();
+
+    // maximum time to wait for the next attempt before checking if the probe has been cancelled
+    private static final long CANCELLATION_CHECK_INTERVAL = 100;
+
+    /**
+     * Tells a probe in progress if it has to stop.
+     */
+    interface CancellationCheck {
+        /**
+         * Checked before each connection attempt and while waiting for the next one.
+         * It may be called from any thread which runs a probe.
+         * @return true if the probe has to stop
+         */
+        boolean isCancelled();
+    }
+
+    private static final CancellationCheck NOT_CANCELLABLE = new CancellationCheck() {
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    private final int connectTimeout;
+    private final int maxAttempts;
+    private final RetryPolicy retryPolicy;
+    private final int timeBudget;
+    private final boolean raceAllAddresses;
+
+    /**
+     * Creates a new blocking probe.
+     * @param connectTimeout maximum time to wait for each connection attempt, in milliseconds
+     * @param maxAttempts maximum number of connection attempts for each host
+     * @param retryPolicy policy which decides the delay between connection attempts
+     * @param timeBudget maximum time to spend on each host in milliseconds (0 means no limit)
+     * @param raceAllAddresses true to race connections to all the addresses of each host,
+     *                         false to connect only to the first one
+     */
+    public BlockingProbe(int connectTimeout, int maxAttempts, RetryPolicy retryPolicy,
+                         int timeBudget, boolean raceAllAddresses) {
+        this.connectTimeout = connectTimeout;
+        this.maxAttempts = maxAttempts;
+        this.retryPolicy = retryPolicy;
+        this.timeBudget = timeBudget;
+        this.raceAllAddresses = raceAllAddresses;
+    }
+
+    /**
+     * Checks the reachability of a host. This method blocks until the host is reachable or
+     * no other connection attempts can be made.
+     * @param host host to check
+     * @return probe result
+     */
+    public ProbeResult probe(Host host) {
+        return probe(host, new TcpProbe());
+    }
+
+    /**
+     * Checks the reachability and the health of a host. This method blocks until the host
+     * is healthy or no other connection attempts can be made.
+     * @param host host to check
+     * @param check probe which checks the host health once connected
+     * @return probe result
+     */
+    public ProbeResult probe(Host host, Probe check) {
+        return probe(host, check, NOT_CANCELLABLE);
+    }
+
+    /**
+     * Checks the reachability and the health of a host. This method blocks until the host
+     * is healthy, no other connection attempts can be made or the probe is cancelled.
+     * @param host host to check
+     * @param check probe which checks the host health once connected
+     * @param cancellation tells if the probe has to stop. The result of a cancelled probe
+     *                     is incomplete and has to be discarded
+     * @return probe result
+     */
+    public ProbeResult probe(Host host, Probe check, CancellationCheck cancellation) {
+        // the winning connection of a race is closed by the selector, so hosts which need
+        // a health check are connected only to their first address
+        if (raceAllAddresses && check instanceof TcpProbe) {
+            return race(host, cancellation);
+        }
+
+        RetryTracker retries = new RetryTracker(retryPolicy, maxAttempts, timeBudget);
+        ProbeResult result = null;
+
+        while (!cancellation.isCancelled()) {
+            result = probe(host, check, retries.onAttemptStarted(connectTimeout),
+                           retries.getAttempts());
+            if (result.isReachable()) break;
+
+            long delay = retries.getNextDelay();
+            if (delay < 0 || !waitNextAttempt(delay, cancellation)) break;
+        }
+
+        return result == null ? new ProbeResult(host, false) : result;
+    }
+
+    /**
+     * Races connections to all the addresses of a host. A single selector probe makes all
+     * the attempts, so it's created once per host and not once per attempt.
+     */
+    private ProbeResult race(Host host, final CancellationCheck cancellation) {
+        final ProbeResult[] result = new ProbeResult[1];
+
+        new SelectorProbe(connectTimeout, maxAttempts, retryPolicy, timeBudget, true)
+                .probe(Collections.singletonList(host), new SelectorProbe.Callback() {
+                    @Override
+                    public void onProbeCompleted(ProbeResult probeResult) {
+                        result[0] = probeResult;
+                    }
+
+                    @Override
+                    public boolean isCancelled() {
+                        return cancellation.isCancelled();
+                    }
+                });
+
+        // no result if the probe has been cancelled
+        return result[0] == null ? new ProbeResult(host, false) : result[0];
+    }
+
+    /**
+     * Waits before the next connection attempt, checking periodically if the probe has been
+     * cancelled.
+     * @return true if the next attempt can be made, false if cancelled or interrupted
+     */
+    private boolean waitNextAttempt(long delay, CancellationCheck cancellation) {
+        long deadline = System.nanoTime() + delay * 1000000;
+        long remaining = delay;
+
+        while (remaining > 0) {
+            if (cancellation.isCancelled()) return false;
+
+            try {
+                Thread.sleep(Math.min(remaining, CANCELLATION_CHECK_INTERVAL));
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+
+            remaining = (deadline - System.nanoTime()) / 1000000;
+        }
+
+        return !cancellation.isCancelled();
+    }
+
+    private ProbeResult probe(Host host, Probe check, int timeout, int attempts) {
+        boolean reachable;
+        ProbeResult.Failure failure = ProbeResult.Failure.UNHEALTHY;
+        Socket socket = null;
+        InetSocketAddress address = null;
+        long start = System.nanoTime();
+        long resolved = start;
+        long connectTime = -1;
+
+        try {
+            address = host.resolve();
+            resolved = System.nanoTime();
+
+            socket = new Socket();
+            socket.connect(address, timeout);
+            connectTime = System.nanoTime() - resolved;
+
+            reachable = check.check(socket, host.getHost(), timeout);
+
+        } catch (Exception exc) {
+            reachable = false;
+            failure = ProbeResult.Failure.of(exc);
+
+        } finally {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (Exception exc) {
+                    Logger.debug(LOG_TAG, "Error while closing socket.");
+                }
+            }
+        }
+
+        // the connect time doesn't include the health check, so latencies are comparable
+        if (connectTime < 0) {
+            connectTime = System.nanoTime() - resolved;
+        }
+
+        return new ProbeResult(host, reachable, resolved - start, connectTime,
+                               reachable ? address.getAddress() : null, attempts, failure);
+    }
+}
@@ -0,0 +1,139 @@
+package net.gotev.hostmonitor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * A check round of the monitored hosts: it picks the hosts to check, checks them, applies the
+ * results to their statuses in the {@link StatusTable}, then schedules their next checks.
+ * The service runs a round on each wake-up. It doesn't know how the hosts are configured nor
+ * how the status changes are delivered, which is up to the {@link Hosts} and the
+ * {@link Listener}.
+ * @author gotev (Aleksandar Gotev)
+ */
+class CheckRound implements ReachabilityCheck.Callback {
+
+    /**
+     * Gives access to the settings of the monitored hosts.
+     */
+    interface Hosts {
+        /**
+         * Gets the probe used to check the health of a host after connecting.
+         * @param host host
+         * @return probe
+         */
+        Probe getProbe(Host host);
+
+        /**
+         * Gets the interval after which a host has to be checked again.
+         * @param id id of the host in the status table
+         * @return check interval in milliseconds, or 0 if the host is not checked periodically
+         */
+        int getCheckInterval(int id);
+    }
+
+    /**
+     * Receives the status changes of the round.
+     */
+    interface Listener {
+        /**
+         * Called when the status of a host changed.
+         * @param result probe result which caused the change
+         * @param previousStatus status before the check
+         * @param newStatus status after the check
+         */
+        void onStatusChanged(ProbeResult result, Status previousStatus, Status newStatus);
+
+        /**
+         * Checks if the round has been cancelled.
+         * @return true if cancelled
+         */
+        boolean isCancelled();
+    }
+
+    private final CheckSettings mSettings;
+    private final StatusTable mTable;
+    private final Hosts mHosts;
+    private final Listener mListener;
+    private final CheckScheduler mScheduler;
+
+    CheckRound(CheckSettings settings, StatusTable table, Hosts hosts, Listener listener,
+               CheckScheduler scheduler) {
+        mSettings = settings;
+        mTable = table;
+        mHosts = hosts;
+        mListener = listener;
+        mScheduler = scheduler;
+    }
+
+    /**
+     * Gets the hosts to check in this round. The persistent connections of the hosts which
+     * are not monitored anymore are closed, or all of them if they are disabled.
+     * @param scheduled true to check only the hosts which are due, false to check all of them
+     * @param now current time in milliseconds, on the clock used by the scheduler
+     * @return hosts to check
+     */
+    Collection<Host> getHostsToCheck(boolean scheduled, long now) {
+        if (mSettings.isPersistentConnections()) {
+            PersistentConnections.getInstance().retainAll(mTable.getHosts());
+        } else {
+            PersistentConnections.getInstance().closeAll();
+        }
+
+        if (scheduled) {
+            return mScheduler.pollDueHosts(mTable.getHosts(), now);
+        }
+
+        // all the hosts are checked, so they're all going to be scheduled again. They're
+        // copied, because the hosts in the table can change while checking
+        mScheduler.clear();
+        return new ArrayList<>(mTable.getHosts());
+    }
+
+    /**
+     * Checks the hosts and applies the results.
+     * @param connectionType current connection type. If it's {@link ConnectionType#NONE},
+     *                       the hosts are set as unreachable without probing them
+     * @param hosts hosts to check
+     */
+    void check(ConnectionType connectionType, Collection<Host> hosts) {
+        ReachabilityCheck check = new ReachabilityCheck(mSettings, mTable, this);
+
+        if (connectionType == ConnectionType.NONE) {
+            check.setAllUnreachable(connectionType, hosts);
+        } else {
+            check.check(connectionType, hosts);
+        }
+    }
+
+    /**
+     * Schedules the next checks of the checked hosts.
+     * @param hosts checked hosts
+     * @param now current time in milliseconds, on the clock used by the scheduler
+     */
+    void schedule(Collection<Host> hosts, long now) {
+        for (Host host : hosts) {
+            int id = mTable.getId(host);
+
+            // hosts removed while checking are not scheduled again
+            if (id >= 0) {
+                mScheduler.schedule(host, mHosts.getCheckInterval(id), now);
+            }
+        }
+    }
+
+    @Override
+    public Probe getProbe(Host host) {
+        return mHosts.getProbe(host);
+    }
+
+    @Override
+    public void onStatusChanged(ProbeResult result, Status previousStatus, Status newStatus) {
+        mListener.onStatusChanged(result, previousStatus, newStatus);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return mListener.isCancelled();
+    }
+}
@@ -0,0 +1,136 @@
+package net.gotev.hostmonitor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Schedules the periodic reachability checks of the monitored hosts.
+ * Hosts are kept in a priority queue ordered by the time at which their next check is due,
+ * so a single wake-up has to be set for the earliest one. On wake-up, only the due hosts
+ * are checked, together with the ones which fall due within {@link #GROUPING_WINDOW}, so
+ * hosts with close due times share the same wake-up.
+ * Each host has a single entry, which is updated in place when the host is scheduled again.
+ * Times are in milliseconds on a monotonic clock chosen by the caller.
+ * @author gotev (Aleksandar Gotev)
+ */
+class CheckScheduler {
+
+    // hosts which fall due within this time from a wake-up are checked in that wake-up
+    static final long GROUPING_WINDOW = 5000; // in milliseconds
+
+    private static class ScheduledHost implements Comparable<ScheduledHost> {
+        private final Host host;
+        private long dueTime;
+        private boolean queued;
+
+        ScheduledHost(Host host) {
+            this.host = host;
+        }
+
+        @Override
+        public int compareTo(ScheduledHost other) {
+            return dueTime < other.dueTime ? -1 : (dueTime == other.dueTime ? 0 : 1);
+        }
+    }
+
+    private static class SingletonHolder {
+        private static final CheckScheduler instance = new CheckScheduler();
+    }
+
+    private final PriorityQueue<ScheduledHost> mQueue = new PriorityQueue<>();
+    private final Map<Host, ScheduledHost> mEntries = new HashMap<>();
+
+    // false until the first hosts are scheduled. The queue lives in memory, so when the
+    // process gets restarted by a scheduled check, the due times are not known anymore
+    private boolean mInitialized;
+
+    /**
+     * Creates a new scheduler. Outside of tests use {@link #getInstance()}, as the service
+     * relies on a single scheduler for the whole process.
+     */
+    CheckScheduler() { }
+
+    static CheckScheduler getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    /**
+     * Removes the due hosts from the queue.
+     * @param hosts hosts which are currently monitored. Scheduled hosts which are not in
+     *              this collection anymore are discarded
+     * @param now current time in milliseconds
+     * @return hosts due now or within {@link #GROUPING_WINDOW}, or all the monitored hosts
+     * if no host has been scheduled yet in this process
+     */
+    synchronized List<Host> pollDueHosts(Collection<Host> hosts, long now) {
+        if (!mInitialized) return new ArrayList<>(hosts);
+
+        long limit = now + GROUPING_WINDOW;
+        List<Host> dueHosts = new ArrayList<>(mQueue.size());
+
+        while (!mQueue.isEmpty() && mQueue.peek().dueTime <= limit) {
+            ScheduledHost entry = mQueue.poll();
+            entry.queued = false;
+
+            if (hosts.contains(entry.host)) {
+                dueHosts.add(entry.host);
+            } else {
+                mEntries.remove(entry.host);
+            }
+        }
+
+        return dueHosts;
+    }
+
+    /**
+     * Schedules the next check of a host.
+     * @param host host to schedule
+     * @param interval check interval in milliseconds. If zero, the host is not scheduled
+     * @param now current time in milliseconds
+     */
+    synchronized void schedule(Host host, long interval, long now) {
+        mInitialized = true;
+
+        ScheduledHost entry = mEntries.get(host);
+
+        if (entry != null && entry.queued) {
+            mQueue.remove(entry);
+            entry.queued = false;
+        }
+
+        if (interval <= 0) {
+            mEntries.remove(host);
+            return;
+        }
+
+        if (entry == null) {
+            entry = new ScheduledHost(host);
+            mEntries.put(host, entry);
+        }
+
+        entry.dueTime = now + interval;
+        entry.queued = true;
+        mQueue.add(entry);
+    }
+
+    /**
+     * Removes all the scheduled hosts.
+     */
+    synchronized void clear() {
+        mQueue.clear();
+        mEntries.clear();
+    }
+
+    /**
+     * Gets the time at which the next check is due.
+     * @return due time in milliseconds, on the same clock used to schedule the hosts,
+     * or -1 if no host is scheduled
+     */
+    synchronized long getNextDueTime() {
+        return mQueue.isEmpty() ? -1 : mQueue.peek().dueTime;
+    }
+}
@@ -0,0 +1,178 @@
+package net.gotev.hostmonitor;
+
+/**
+ * Settings of a {@link ReachabilityCheck}, independent from where they are persisted.
+ * Default values are the same of an empty configuration.
+ * @author gotev (Aleksandar Gotev)
+ */
+class CheckSettings {
+    private int socketTimeout = 2000;
+    private int maxAttempts = 3;
+    private RetryPolicy retryPolicy = new FixedRetryPolicy(0);
+    private int retryTimeBudget;
+    private boolean raceAllAddresses;
+    private ProbeEngine probeEngine = ProbeEngine.BLOCKING;
+    private int parallelism = 1;
+    private int dnsCacheTtl = 60 * 1000;
+    private int dnsNegativeCacheTtl = 10 * 1000;
+    private int latencyChangeThreshold;
+    private int hysteresisUpThreshold = 1;
+    private int hysteresisDownThreshold = 1;
+    private boolean persistentConnections;
+    private int persistentConnectionsRecheckInterval = 5 * 60 * 1000;
+    private int adaptiveMinCheckInterval;
+    private int adaptiveMaxCheckInterval;
+    private float adaptiveGrowthFactor = 2;
+
+    public int getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public CheckSettings setSocketTimeout(int socketTimeout) {
+        this.socketTimeout = socketTimeout;
+        return this;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public CheckSettings setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public CheckSettings setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    public int getRetryTimeBudget() {
+        return retryTimeBudget;
+    }
+
+    public CheckSettings setRetryTimeBudget(int retryTimeBudget) {
+        this.retryTimeBudget = retryTimeBudget;
+        return this;
+    }
+
+    public boolean isRaceAllAddresses() {
+        return raceAllAddresses;
+    }
+
+    public CheckSettings setRaceAllAddresses(boolean raceAllAddresses) {
+        this.raceAllAddresses = raceAllAddresses;
+        return this;
+    }
+
+    public ProbeEngine getProbeEngine() {
+        return probeEngine;
+    }
+
+    public CheckSettings setProbeEngine(ProbeEngine probeEngine) {
+        this.probeEngine = probeEngine;
+        return this;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public CheckSettings setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public int getDnsCacheTtl() {
+        return dnsCacheTtl;
+    }
+
+    public CheckSettings setDnsCacheTtl(int dnsCacheTtl) {
+        this.dnsCacheTtl = dnsCacheTtl;
+        return this;
+    }
+
+    public int getDnsNegativeCacheTtl() {
+        return dnsNegativeCacheTtl;
+    }
+
+    public CheckSettings setDnsNegativeCacheTtl(int dnsNegativeCacheTtl) {
+        this.dnsNegativeCacheTtl = dnsNegativeCacheTtl;
+        return this;
+    }
+
+    public int getLatencyChangeThreshold() {
+        return latencyChangeThreshold;
+    }
+
+    public CheckSettings setLatencyChangeThreshold(int latencyChangeThreshold) {
+        this.latencyChangeThreshold = latencyChangeThreshold;
+        return this;
+    }
+
+    public int getHysteresisUpThreshold() {
+        return hysteresisUpThreshold;
+    }
+
+    public int getHysteresisDownThreshold() {
+        return hysteresisDownThreshold;
+    }
+
+    public CheckSettings setHysteresis(int upThreshold, int downThreshold) {
+        this.hysteresisUpThreshold = upThreshold;
+        this.hysteresisDownThreshold = downThreshold;
+        return this;
+    }
+
+    public boolean isPersistentConnections() {
+        return persistentConnections;
+    }
+
+    public CheckSettings setPersistentConnections(boolean persistentConnections) {
+        this.persistentConnections = persistentConnections;
+        return this;
+    }
+
+    public int getPersistentConnectionsRecheckInterval() {
+        return persistentConnectionsRecheckInterval;
+    }
+
+    public CheckSettings setPersistentConnectionsRecheckInterval(int recheckInterval) {
+        this.persistentConnectionsRecheckInterval = recheckInterval;
+        return this;
+    }
+
+    /**
+     * Sets the adaptive check interval.
+     * @param minInterval minimum interval in milliseconds
+     * @param maxInterval maximum interval in milliseconds (0 to disable)
+     * @param growthFactor factor by which the interval grows after each unchanged check
+     * @return {@link CheckSettings}
+     */
+    public CheckSettings setAdaptiveCheckInterval(int minInterval, int maxInterval,
+                                                  float growthFactor) {
+        this.adaptiveMinCheckInterval = minInterval;
+        this.adaptiveMaxCheckInterval = maxInterval;
+        this.adaptiveGrowthFactor = growthFactor;
+        return this;
+    }
+
+    /**
+     * Calculates the next adaptive check interval of a host.
+     * @param previousStatus status of the host before the check
+     * @param statusChanged true if the check changed the status of the host
+     * @return the next adaptive check interval in milliseconds, or 0 if disabled
+     */
+    public int getNextAdaptiveCheckInterval(Status previousStatus, boolean statusChanged) {
+        if (adaptiveMaxCheckInterval <= 0) return 0;
+
+        return previousStatus.getNextAdaptiveCheckInterval(statusChanged,
+                                                           adaptiveMinCheckInterval,
+                                                           adaptiveMaxCheckInterval,
+                                                           adaptiveGrowthFactor);
+    }
+}
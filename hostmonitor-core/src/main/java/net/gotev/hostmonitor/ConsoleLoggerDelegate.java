@@ -0,0 +1,29 @@
+package net.gotev.hostmonitor;
+
+/**
+ * Logger delegate implementation which logs in the standard output and error streams.
+ * It's the default when the library runs outside Android.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class ConsoleLoggerDelegate implements Logger.LoggerDelegate {
+    @Override
+    public void error(String tag, String message) {
+        System.err.println(tag + ": " + message);
+    }
+
+    @Override
+    public void error(String tag, String message, Throwable exception) {
+        System.err.println(tag + ": " + message);
+        exception.printStackTrace();
+    }
+
+    @Override
+    public void debug(String tag, String message) {
+        System.out.println(tag + ": " + message);
+    }
+
+    @Override
+    public void info(String tag, String message) {
+        System.out.println(tag + ": " + message);
+    }
+}
@@ -0,0 +1,42 @@
+package net.gotev.hostmonitor;
+
+import java.util.Random;
+
+/**
+ * Retry policy which picks a random delay between the base delay and three times the previous
+ * delay, up to a maximum. Clients retrying against the same struggling server spread out
+ * instead of reconnecting in bursts.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class DecorrelatedJitterRetryPolicy implements RetryPolicy {
+
+    private static final Random RANDOM = new Random();
+
+    private final long baseDelay;
+    private final long maxDelay;
+
+    /**
+     * Creates a new decorrelated jitter retry policy.
+     * @param baseDelay minimum milliseconds to wait between connection attempts (must be at
+     *                  least 1)
+     * @param maxDelay maximum milliseconds to wait between connection attempts
+     */
+    public DecorrelatedJitterRetryPolicy(long baseDelay, long maxDelay) {
+        if (baseDelay < 1)
+            throw new IllegalArgumentException("Specify at least one millisecond base delay!");
+
+        if (maxDelay < baseDelay)
+            throw new IllegalArgumentException("Max delay MUST not be less than base delay!");
+
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    @Override
+    public long getDelay(int failedAttempts, long previousDelay) {
+        long upperBound = Math.max(baseDelay, previousDelay) * 3;
+        long delay = baseDelay + (long) (RANDOM.nextDouble() * (upperBound - baseDelay));
+
+        return Math.min(maxDelay, delay);
+    }
+}
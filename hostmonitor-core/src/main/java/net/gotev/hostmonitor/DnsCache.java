@@ -0,0 +1,132 @@
+package net.gotev.hostmonitor;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide cache of host name resolutions.
+ * Successful resolutions are kept for the configured TTL, while failed resolutions are kept
+ * for the negative TTL, so an unknown host does not cost a DNS lookup at every attempt.
+ * The cache is cleared whenever the device connectivity changes.
+ * @author gotev (Aleksandar Gotev)
+ */
+class DnsCache {
+
+    private static final String LOG_TAG = DnsCache.class.getSimpleName();
+
+    private static class Entry {
+        private final InetAddress[] addresses;
+        private final long expiration;
+
+        Entry(InetAddress[] addresses, long expiration) {
+            this.addresses = addresses;
+            this.expiration = expiration;
+        }
+    }
+
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+    private volatile long mTtlNanos;
+    private volatile long mNegativeTtlNanos;
+
+    private DnsCache() { }
+
+    private static class SingletonHolder {
+        private static final DnsCache instance = new DnsCache();
+    }
+
+    public static DnsCache getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    /**
+     * Sets the cache TTLs. Zero disables caching.
+     * @param ttl how long to keep successful resolutions, in milliseconds
+     * @param negativeTtl how long to keep failed resolutions, in milliseconds
+     */
+    public void setTtl(int ttl, int negativeTtl) {
+        mTtlNanos = ttl * 1000000L;
+        mNegativeTtlNanos = negativeTtl * 1000000L;
+    }
+
+    /**
+     * Gets the cached addresses of a host name, without resolving it.
+     * @param hostname host name
+     * @return cached addresses, or null if the host name is not cached or the entry expired
+     * @throws UnknownHostException if a failed resolution of the host name is cached
+     */
+    public InetAddress[] getCached(String hostname) throws UnknownHostException {
+        Entry entry = mEntries.get(hostname);
+
+        if (entry == null || System.nanoTime() - entry.expiration >= 0) return null;
+
+        if (entry.addresses == null)
+            throw new UnknownHostException("Unable to resolve host " + hostname + " (cached)");
+
+        return entry.addresses;
+    }
+
+    /**
+     * Resolves all the addresses of a host name, using the cached value if not expired.
+     * @param hostname host name to resolve
+     * @return resolved addresses
+     * @throws UnknownHostException if the host name can't be resolved
+     */
+    public InetAddress[] resolveAll(String hostname) throws UnknownHostException {
+        long now = System.nanoTime();
+        Entry entry = mEntries.get(hostname);
+
+        if (entry != null && now - entry.expiration < 0) {
+            if (entry.addresses == null)
+                throw new UnknownHostException("Unable to resolve host " + hostname + " (cached)");
+
+            return entry.addresses;
+        }
+
+        try {
+            InetAddress[] addresses = InetAddress.getAllByName(hostname);
+
+            if (mTtlNanos > 0) {
+                mEntries.put(hostname, new Entry(addresses, now + mTtlNanos));
+            }
+
+            return addresses;
+
+        } catch (UnknownHostException exc) {
+            if (mNegativeTtlNanos > 0) {
+                mEntries.put(hostname, new Entry(null, now + mNegativeTtlNanos));
+            }
+
+            throw exc;
+        }
+    }
+
+    /**
+     * Caches the addresses of a host name for the configured TTL, as if it had been resolved.
+     * Used by the tests to control the addresses of a host name.
+     * @param hostname host name
+     * @param addresses addresses of the host name
+     */
+    void put(String hostname, InetAddress[] addresses) {
+        mEntries.put(hostname, new Entry(addresses, System.nanoTime() + mTtlNanos));
+    }
+
+    /**
+     * Resolves the first address of a host name, using the cached value if not expired.
+     * @param hostname host name to resolve
+     * @return resolved address
+     * @throws UnknownHostException if the host name can't be resolved
+     */
+    public InetAddress resolve(String hostname) throws UnknownHostException {
+        return resolveAll(hostname)[0];
+    }
+
+    /**
+     * Removes all the cached resolutions.
+     */
+    public void clear() {
+        Logger.debug(LOG_TAG, "clearing DNS cache");
+        mEntries.clear();
+    }
+}
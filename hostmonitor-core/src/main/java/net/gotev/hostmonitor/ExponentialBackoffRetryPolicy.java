@@ -0,0 +1,41 @@
+package net.gotev.hostmonitor;
+
+/**
+ * Retry policy which multiplies the delay between connection attempts after each failure,
+ * up to a maximum.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+
+    private final long initialDelay;
+    private final long maxDelay;
+    private final double multiplier;
+
+    /**
+     * Creates a new exponential backoff retry policy.
+     * @param initialDelay milliseconds to wait before the first retry (must be at least 1)
+     * @param maxDelay maximum milliseconds to wait between connection attempts
+     * @param multiplier factor applied to the delay after each failure (must be at least 1)
+     */
+    public ExponentialBackoffRetryPolicy(long initialDelay, long maxDelay, double multiplier) {
+        if (initialDelay < 1)
+            throw new IllegalArgumentException("Specify at least one millisecond initial delay!");
+
+        if (maxDelay < initialDelay)
+            throw new IllegalArgumentException("Max delay MUST not be less than initial delay!");
+
+        if (multiplier < 1)
+            throw new IllegalArgumentException("Multiplier MUST be at least 1!");
+
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.multiplier = multiplier;
+    }
+
+    @Override
+    public long getDelay(int failedAttempts, long previousDelay) {
+        if (previousDelay <= 0) return initialDelay;
+
+        return (long) Math.min(maxDelay, previousDelay * multiplier);
+    }
+}
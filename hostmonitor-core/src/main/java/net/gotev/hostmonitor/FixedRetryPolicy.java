@@ -0,0 +1,26 @@
+package net.gotev.hostmonitor;
+
+/**
+ * Retry policy which always waits the same amount of time between connection attempts.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class FixedRetryPolicy implements RetryPolicy {
+
+    private final long delay;
+
+    /**
+     * Creates a new fixed retry policy.
+     * @param delay milliseconds to wait between connection attempts (0 to retry immediately)
+     */
+    public FixedRetryPolicy(long delay) {
+        if (delay < 0)
+            throw new IllegalArgumentException("Specify a zero or positive delay!");
+
+        this.delay = delay;
+    }
+
+    @Override
+    public long getDelay(int failedAttempts, long previousDelay) {
+        return delay;
+    }
+}
@@ -0,0 +1,110 @@
+package net.gotev.hostmonitor;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of durations with fixed buckets, so that recording a value doesn't allocate.
+ * Bucket i counts the values greater than the upper bound of bucket i-1 and less than or
+ * equal to its own upper bound. The last bucket counts all the values above the last bound.
+ * @author gotev (Aleksandar Gotev)
+ */
+public final class Histogram {
+
+    // upper bounds of the buckets, in milliseconds
+    private static final long[] BUCKET_BOUNDS = {
+            1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000
+    };
+
+    private final long[] mCounts;
+    private long mCount;
+    private long mSum;
+    private long mMax;
+
+    Histogram() {
+        mCounts = new long[BUCKET_BOUNDS.length + 1];
+    }
+
+    /**
+     * Creates a copy of another histogram.
+     * @param other histogram to copy
+     */
+    Histogram(Histogram other) {
+        mCounts = Arrays.copyOf(other.mCounts, other.mCounts.length);
+        mCount = other.mCount;
+        mSum = other.mSum;
+        mMax = other.mMax;
+    }
+
+    /**
+     * Records a value.
+     * @param millis value in milliseconds
+     */
+    void record(long millis) {
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS.length && millis > BUCKET_BOUNDS[bucket]) {
+            bucket++;
+        }
+
+        mCounts[bucket]++;
+        mCount++;
+        mSum += millis;
+        if (millis > mMax) mMax = millis;
+    }
+
+    /**
+     * Gets the number of buckets, including the last one without an upper bound.
+     * @return number of buckets
+     */
+    public int getBucketCount() {
+        return mCounts.length;
+    }
+
+    /**
+     * Gets the upper bound of a bucket.
+     * @param bucket bucket index
+     * @return upper bound in milliseconds (inclusive), or {@link Long#MAX_VALUE} for the last
+     * bucket
+     */
+    public long getBucketBound(int bucket) {
+        return bucket < BUCKET_BOUNDS.length ? BUCKET_BOUNDS[bucket] : Long.MAX_VALUE;
+    }
+
+    /**
+     * Gets the number of values recorded in a bucket.
+     * @param bucket bucket index
+     * @return number of values
+     */
+    public long getBucketValues(int bucket) {
+        return mCounts[bucket];
+    }
+
+    /**
+     * Gets the total number of recorded values.
+     * @return number of values
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    /**
+     * Gets the sum of all the recorded values.
+     * @return sum in milliseconds
+     */
+    public long getSum() {
+        return mSum;
+    }
+
+    /**
+     * Gets the maximum recorded value.
+     * @return maximum in milliseconds, or 0 if no values have been recorded
+     */
+    public long getMax() {
+        return mMax;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + mCount + ", sum=" + mSum + "ms, max=" + mMax + "ms, buckets="
+                + Arrays.toString(mCounts);
+    }
+}
@@ -0,0 +1,74 @@
+package net.gotev.hostmonitor;
+
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Represents a host to monitor.
+ * @author gotev (Aleksandar Gotev)
+ */
+class Host {
+    private final String host;
+    private final int port;
+
+    public Host(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Gets the key which identifies this host in persisted key-value maps.
+     * @return key in the form host:port
+     */
+    public String getKey() {
+        return host + ":" + port;
+    }
+
+    /**
+     * Creates a host from its key.
+     * @param key key in the form host:port
+     * @return host
+     */
+    public static Host parseKey(String key) {
+        // the last colon is used, because IPv6 addresses contain colons
+        int separator = key.lastIndexOf(':');
+        return new Host(key.substring(0, separator), Integer.parseInt(key.substring(separator + 1)));
+    }
+
+    /**
+     * Resolves the host address through the {@link DnsCache}.
+     * @return resolved socket address, or an unresolved one if the host name can't be resolved
+     */
+    public InetSocketAddress resolve() {
+        try {
+            return new InetSocketAddress(DnsCache.getInstance().resolve(host), port);
+        } catch (UnknownHostException exc) {
+            return InetSocketAddress.createUnresolved(host, port);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Host host1 = (Host) o;
+
+        return port == host1.port && host.equals(host1.host);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = host.hashCode();
+        result = 31 * result + port;
+        return result;
+    }
+}
@@ -0,0 +1,207 @@
+package net.gotev.hostmonitor;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Interns hosts to dense int ids, which can be used to index primitive arrays instead of
+ * keeping an object per host. The ids of the unregistered hosts are reused by the next ones.
+ * The lookup index is an open addressing table of ids, so it doesn't create any object.
+ * <p>
+ * Writes have to be serialized by the caller. Lookups can be made from any thread, but while
+ * a write is in progress they may return stale results, so the caller has to validate them.
+ * @author gotev (Aleksandar Gotev)
+ */
+class HostRegistry {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // hash of the host -> id + 1, 0 if the slot is empty. It's kept at most half full
+    private volatile AtomicIntegerArray mIndex = new AtomicIntegerArray(INITIAL_CAPACITY * 2);
+    // id -> host, null if the id is not assigned
+    private volatile AtomicReferenceArray<Host> mHosts =
+            new AtomicReferenceArray<>(INITIAL_CAPACITY);
+
+    private int[] mFreeIds = new int[INITIAL_CAPACITY];
+    private int mFreeCount;
+    private volatile int mSize;
+    private volatile int mLimit;
+
+    /**
+     * Gets the number of registered hosts.
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Gets the upper bound of the assigned ids, to iterate over them.
+     * @return all the assigned ids are lower than this value
+     */
+    int getLimit() {
+        return mLimit;
+    }
+
+    /**
+     * Gets the host which has the given id.
+     * @param id id
+     * @return host, or null if the id is not assigned
+     */
+    Host getHost(int id) {
+        AtomicReferenceArray<Host> hosts = mHosts;
+        return (id >= 0 && id < hosts.length()) ? hosts.get(id) : null;
+    }
+
+    /**
+     * Gets the id of a host.
+     * @param host host
+     * @return id, or -1 if the host is not registered
+     */
+    int getId(Host host) {
+        AtomicIntegerArray index = mIndex;
+        int slot = findSlot(index, host);
+        return slot < 0 ? -1 : index.get(slot) - 1;
+    }
+
+    /**
+     * Registers a host, if it's not registered yet.
+     * @param host host
+     * @return id of the host
+     */
+    int register(Host host) {
+        int id = getId(host);
+        if (id >= 0) return id;
+
+        if ((mSize + 1) * 2 > mIndex.length()) {
+            mIndex = rebuildIndex(mIndex.length() * 2);
+        }
+
+        if (mFreeCount > 0) {
+            id = mFreeIds[--mFreeCount];
+        } else {
+            id = mLimit;
+
+            if (id == mHosts.length()) {
+                AtomicReferenceArray<Host> hosts = new AtomicReferenceArray<>(id * 2);
+                for (int i = 0; i < id; i++) {
+                    hosts.set(i, mHosts.get(i));
+                }
+                mHosts = hosts;
+            }
+
+            mLimit = id + 1;
+        }
+
+        mHosts.set(id, host);
+
+        AtomicIntegerArray index = mIndex;
+        int mask = index.length() - 1;
+        int slot = hash(host) & mask;
+        while (index.get(slot) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index.set(slot, id + 1);
+
+        mSize++;
+        return id;
+    }
+
+    /**
+     * Unregisters a host. Its id is going to be assigned to one of the next registered hosts.
+     * @param host host
+     * @return the id the host had, or -1 if it was not registered
+     */
+    int unregister(Host host) {
+        AtomicIntegerArray index = mIndex;
+        int slot = findSlot(index, host);
+        if (slot < 0) return -1;
+
+        int id = index.get(slot) - 1;
+
+        // backward shift deletion, which keeps the probe sequences without tombstones
+        int mask = index.length() - 1;
+        int hole = slot;
+        int next = slot;
+
+        while (true) {
+            next = (next + 1) & mask;
+            int entry = index.get(next);
+            if (entry == 0) break;
+
+            int home = hash(mHosts.get(entry - 1)) & mask;
+            boolean movable = (hole <= next) ? (home <= hole || home > next)
+                                             : (home <= hole && home > next);
+
+            if (movable) {
+                index.set(hole, entry);
+                hole = next;
+            }
+        }
+
+        index.set(hole, 0);
+        mHosts.set(id, null);
+
+        if (mFreeCount == mFreeIds.length) {
+            int[] freeIds = new int[mFreeCount * 2];
+            System.arraycopy(mFreeIds, 0, freeIds, 0, mFreeCount);
+            mFreeIds = freeIds;
+        }
+        mFreeIds[mFreeCount++] = id;
+
+        mSize--;
+        return id;
+    }
+
+    /**
+     * Unregisters all the hosts.
+     */
+    void clear() {
+        mIndex = new AtomicIntegerArray(INITIAL_CAPACITY * 2);
+        mHosts = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+        mFreeIds = new int[INITIAL_CAPACITY];
+        mFreeCount = 0;
+        mSize = 0;
+        mLimit = 0;
+    }
+
+    private int findSlot(AtomicIntegerArray index, Host host) {
+        AtomicReferenceArray<Host> hosts = mHosts;
+        int mask = index.length() - 1;
+        int slot = hash(host) & mask;
+
+        for (int probes = 0; probes <= mask; probes++) {
+            int entry = index.get(slot);
+            if (entry == 0) return -1;
+
+            int id = entry - 1;
+            if (id < hosts.length() && host.equals(hosts.get(id))) return slot;
+
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    private AtomicIntegerArray rebuildIndex(int capacity) {
+        AtomicIntegerArray index = new AtomicIntegerArray(capacity);
+        int mask = capacity - 1;
+
+        for (int id = 0; id < mLimit; id++) {
+            Host host = mHosts.get(id);
+            if (host == null) continue;
+
+            int slot = hash(host) & mask;
+            while (index.get(slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index.set(slot, id + 1);
+        }
+
+        return index;
+    }
+
+    private static int hash(Host host) {
+        int hash = host.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,88 @@
+package net.gotev.hostmonitor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.Charset;
+
+/**
+ * Probe which sends an HTTP HEAD request and considers the host healthy if the response
+ * status code is 2xx or 3xx, so a load balancer which accepts connections while its
+ * backends are down, or a server which doesn't serve the path, is reported as unreachable.
+ * Only the beginning of the status line is read, so the probe costs a single small
+ * request and response even if the server sends long headers.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class HttpHeadProbe implements Probe {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    // "HTTP/1.1 200" is all that's needed from the response
+    private static final int STATUS_LINE_PREFIX_LENGTH = 12;
+    private static final int MIN_HEALTHY_STATUS = 200;
+    private static final int MAX_HEALTHY_STATUS = 399;
+
+    private final String path;
+    private final boolean tls;
+
+    /**
+     * Creates a new HTTP HEAD probe.
+     * @param path path to request, starting with a slash (e.g. /health)
+     * @param tls true to send the request over TLS (HTTPS), false for plain HTTP
+     */
+    public HttpHeadProbe(String path, boolean tls) {
+        if (path == null || !path.startsWith("/"))
+            throw new IllegalArgumentException("Path MUST start with a slash!");
+
+        this.path = path;
+        this.tls = tls;
+    }
+
+    @Override
+    public boolean check(Socket socket, String host, int timeout) throws IOException {
+        Socket connection = socket;
+
+        if (tls) {
+            connection = TlsHandshakeProbe.startHandshake(socket, host, timeout);
+        } else {
+            socket.setSoTimeout(timeout);
+        }
+
+        try {
+            OutputStream output = connection.getOutputStream();
+            output.write(("HEAD " + path + " HTTP/1.1\r\nHost: " + host
+                    + "\r\nConnection: close\r\n\r\n").getBytes(ASCII));
+            output.flush();
+
+            int statusCode = getStatusCode(connection.getInputStream());
+            return statusCode >= MIN_HEALTHY_STATUS && statusCode <= MAX_HEALTHY_STATUS;
+
+        } finally {
+            if (connection != socket) {
+                connection.close();
+            }
+        }
+    }
+
+    private static int getStatusCode(InputStream input) throws IOException {
+        byte[] buffer = new byte[STATUS_LINE_PREFIX_LENGTH];
+        int read = 0;
+
+        while (read < buffer.length) {
+            int count = input.read(buffer, read, buffer.length - read);
+            if (count < 0) throw new IOException("Connection closed before the status line");
+            read += count;
+        }
+
+        String statusLine = new String(buffer, ASCII);
+        if (!statusLine.startsWith("HTTP/") || statusLine.charAt(8) != ' ')
+            throw new IOException("Invalid status line: " + statusLine);
+
+        try {
+            return Integer.parseInt(statusLine.substring(9, 12));
+        } catch (NumberFormatException exc) {
+            throw new IOException("Invalid status code: " + statusLine);
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package net.gotev.hostmonitor;
 
+import java.util.Locale;
+
 /**
  * HostMonitor library logger.
  * You can provide your own logger delegate implementation, to be able to log in a different way.
- * By default the log level is set to DEBUG when the build type is debug, and OFF in release.
- * The default logger implementation logs in Android's LogCat.
+ * By default the log level is set to OFF.
+ * The default logger implementation logs in Android's LogCat when the Android library is
+ * available, otherwise in the standard output and error streams.
  * @author gotev (Aleksandar Gotev)
  */
 public class Logger {
@@ -23,9 +26,12 @@ public class Logger {
         void info(String tag, String message);
     }
 
-    private LogLevel mLogLevel = BuildConfig.DEBUG ? LogLevel.DEBUG : LogLevel.OFF;
+    // LogCat delegate, provided by the Android library
+    private static final String ANDROID_LOGGER_DELEGATE = "net.gotev.hostmonitor.DefaultLoggerDelegate";
+
+    private LogLevel mLogLevel = LogLevel.OFF;
 
-    private LoggerDelegate mDelegate = new DefaultLoggerDelegate();
+    private LoggerDelegate mDelegate = newDefaultLoggerDelegate();
 
     private Logger() { }
 
@@ -35,7 +41,15 @@ public class Logger {
 
     public static void resetLoggerDelegate() {
         synchronized (Logger.class) {
-            SingletonHolder.instance.mDelegate = new DefaultLoggerDelegate();
+            SingletonHolder.instance.mDelegate = newDefaultLoggerDelegate();
+        }
+    }
+
+    private static LoggerDelegate newDefaultLoggerDelegate() {
+        try {
+            return (LoggerDelegate) Class.forName(ANDROID_LOGGER_DELEGATE).newInstance();
+        } catch (Exception exc) {
+            return new ConsoleLoggerDelegate();
         }
     }
 
@@ -54,6 +68,16 @@ public class Logger {
         }
     }
 
+    /**
+     * Checks if messages of the given level are logged. Use it to skip building messages
+     * which are expensive to build on hot paths, when they are not going to be logged.
+     * @param level log level
+     * @return true if the messages of the given level are logged
+     */
+    public static boolean isEnabled(LogLevel level) {
+        return level != LogLevel.OFF && SingletonHolder.instance.mLogLevel.compareTo(level) <= 0;
+    }
+
     public static void error(String tag, String message) {
         if (SingletonHolder.instance.mLogLevel.compareTo(LogLevel.ERROR) <= 0) {
             SingletonHolder.instance.mDelegate.error(tag, message);
@@ -72,9 +96,29 @@ public class Logger {
         }
     }
 
+    /**
+     * Logs an info message, which is formatted with {@link String#format(String, Object...)}
+     * only if info messages are logged.
+     */
+    public static void info(String tag, String format, Object... args) {
+        if (SingletonHolder.instance.mLogLevel.compareTo(LogLevel.INFO) <= 0) {
+            SingletonHolder.instance.mDelegate.info(tag, String.format(Locale.US, format, args));
+        }
+    }
+
     public static void debug(String tag, String message) {
         if (SingletonHolder.instance.mLogLevel.compareTo(LogLevel.DEBUG) <= 0) {
             SingletonHolder.instance.mDelegate.debug(tag, message);
         }
     }
+
+    /**
+     * Logs a debug message, which is formatted with {@link String#format(String, Object...)}
+     * only if debug messages are logged.
+     */
+    public static void debug(String tag, String format, Object... args) {
+        if (SingletonHolder.instance.mLogLevel.compareTo(LogLevel.DEBUG) <= 0) {
+            SingletonHolder.instance.mDelegate.debug(tag, String.format(Locale.US, format, args));
+        }
+    }
 }
@@ -0,0 +1,231 @@
+package net.gotev.hostmonitor;
+
+/**
+ * Counters and latency histograms of the reachability checks, cumulative since the process
+ * started.
+ * @author gotev (Aleksandar Gotev)
+ */
+public final class Metrics {
+
+    private long rounds;
+    private long probes;
+    private long attempts;
+    private long successes;
+    private long timeouts;
+    private long refusals;
+    private long unresolved;
+    private long unhealthy;
+    private long errors;
+    private long broadcasts;
+    private final Histogram dnsTime;
+    private final Histogram connectTime;
+    private final Histogram persistenceWriteTime;
+    private final Histogram wakeLockHoldTime;
+
+    Metrics() {
+        dnsTime = new Histogram();
+        connectTime = new Histogram();
+        persistenceWriteTime = new Histogram();
+        wakeLockHoldTime = new Histogram();
+    }
+
+    /**
+     * Creates a copy of other metrics.
+     * @param other metrics to copy
+     */
+    Metrics(Metrics other) {
+        rounds = other.rounds;
+        probes = other.probes;
+        attempts = other.attempts;
+        successes = other.successes;
+        timeouts = other.timeouts;
+        refusals = other.refusals;
+        unresolved = other.unresolved;
+        unhealthy = other.unhealthy;
+        errors = other.errors;
+        broadcasts = other.broadcasts;
+        dnsTime = new Histogram(other.dnsTime);
+        connectTime = new Histogram(other.connectTime);
+        persistenceWriteTime = new Histogram(other.persistenceWriteTime);
+        wakeLockHoldTime = new Histogram(other.wakeLockHoldTime);
+    }
+
+    void onRound() {
+        rounds++;
+    }
+
+    void onProbe(ProbeResult result) {
+        probes++;
+        attempts += result.getAttempts();
+
+        // results of persistent connections which are still alive come without a new attempt
+        if (result.getAttempts() > 0) {
+            dnsTime.record(result.getResolveTime() / 1000000L);
+        }
+
+        switch (result.getFailure()) {
+            case NONE:
+                successes++;
+                if (result.getAttempts() > 0) {
+                    connectTime.record(result.getConnectTime() / 1000000L);
+                }
+                break;
+
+            case TIMEOUT:
+                timeouts++;
+                break;
+
+            case REFUSED:
+                refusals++;
+                break;
+
+            case UNRESOLVED:
+                unresolved++;
+                break;
+
+            case UNHEALTHY:
+                unhealthy++;
+                break;
+
+            default:
+                errors++;
+                break;
+        }
+    }
+
+    void onPersistenceWrite(long nanos) {
+        persistenceWriteTime.record(nanos / 1000000L);
+    }
+
+    void onWakeLockReleased(long nanos) {
+        wakeLockHoldTime.record(nanos / 1000000L);
+    }
+
+    void onBroadcast() {
+        broadcasts++;
+    }
+
+    /**
+     * Gets the number of check rounds run.
+     * @return number of rounds
+     */
+    public long getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Gets the number of hosts probed. Each probe can make more connection attempts.
+     * @return number of probes
+     */
+    public long getProbes() {
+        return probes;
+    }
+
+    /**
+     * Gets the number of connection attempts made by all the probes.
+     * @return number of attempts
+     */
+    public long getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Gets the number of probes which found the host reachable.
+     * @return number of successful probes
+     */
+    public long getSuccesses() {
+        return successes;
+    }
+
+    /**
+     * Gets the number of probes whose last connection attempt timed out.
+     * @return number of timeouts
+     */
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Gets the number of probes whose last connection attempt has been refused.
+     * @return number of refusals
+     */
+    public long getRefusals() {
+        return refusals;
+    }
+
+    /**
+     * Gets the number of probes which couldn't resolve the host name.
+     * @return number of resolution failures
+     */
+    public long getUnresolved() {
+        return unresolved;
+    }
+
+    /**
+     * Gets the number of probes which connected, but found the host unhealthy.
+     * @return number of unhealthy results
+     */
+    public long getUnhealthy() {
+        return unhealthy;
+    }
+
+    /**
+     * Gets the number of probes which failed for any other reason.
+     * @return number of errors
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Gets the number of status broadcasts sent. A batch counts as a single broadcast.
+     * @return number of broadcasts
+     */
+    public long getBroadcasts() {
+        return broadcasts;
+    }
+
+    /**
+     * Gets the histogram of the host name resolution times.
+     * @return histogram
+     */
+    public Histogram getDnsTime() {
+        return dnsTime;
+    }
+
+    /**
+     * Gets the histogram of the connection times of the successful probes.
+     * @return histogram
+     */
+    public Histogram getConnectTime() {
+        return connectTime;
+    }
+
+    /**
+     * Gets the histogram of the times spent to persist the statuses after the rounds which
+     * changed at least one of them.
+     * @return histogram
+     */
+    public Histogram getPersistenceWriteTime() {
+        return persistenceWriteTime;
+    }
+
+    /**
+     * Gets the histogram of the times for which the wake lock has been held in each round.
+     * @return histogram
+     */
+    public Histogram getWakeLockHoldTime() {
+        return wakeLockHoldTime;
+    }
+
+    @Override
+    public String toString() {
+        return "rounds=" + rounds + ", probes=" + probes + ", attempts=" + attempts
+                + ", successes=" + successes + ", timeouts=" + timeouts
+                + ", refusals=" + refusals + ", unresolved=" + unresolved
+                + ", unhealthy=" + unhealthy + ", errors=" + errors
+                + ", broadcasts=" + broadcasts + ", dnsTime={" + dnsTime
+                + "}, connectTime={" + connectTime + "}, persistenceWriteTime={"
+                + persistenceWriteTime + "}, wakeLockHoldTime={" + wakeLockHoldTime + "}";
+    }
+}
@@ -0,0 +1,16 @@
+package net.gotev.hostmonitor;
+
+/**
+ * Receives the metrics of the reachability checks.
+ * @author gotev (Aleksandar Gotev)
+ */
+public interface MetricsListener {
+
+    /**
+     * Called on the check thread at the end of each check round. Implementations should
+     * return quickly, handing the metrics over to another thread if needed.
+     * @param metrics cumulative metrics since the process started. The object is a copy,
+     *                so it can be kept
+     */
+    void onMetrics(Metrics metrics);
+}
@@ -0,0 +1,71 @@
+package net.gotev.hostmonitor;
+
+/**
+ * Records the metrics of the reachability checks in a process wide {@link Metrics} instance
+ * and delivers them to the {@link MetricsListener}, if any.
+ * Recording only updates primitive fields, so it's always on. Copies of the metrics are made
+ * only when a listener is set.
+ * @author gotev (Aleksandar Gotev)
+ */
+class MetricsRecorder {
+
+    private static final String LOG_TAG = MetricsRecorder.class.getSimpleName();
+
+    private static final Metrics metrics = new Metrics();
+    private static volatile MetricsListener listener;
+
+    private MetricsRecorder() { }
+
+    static void setListener(MetricsListener metricsListener) {
+        listener = metricsListener;
+    }
+
+    static void onRound() {
+        synchronized (metrics) {
+            metrics.onRound();
+        }
+    }
+
+    static void onProbe(ProbeResult result) {
+        synchronized (metrics) {
+            metrics.onProbe(result);
+        }
+    }
+
+    static void onPersistenceWrite(long nanos) {
+        synchronized (metrics) {
+            metrics.onPersistenceWrite(nanos);
+        }
+    }
+
+    static void onWakeLockReleased(long nanos) {
+        synchronized (metrics) {
+            metrics.onWakeLockReleased(nanos);
+        }
+    }
+
+    static void onBroadcast() {
+        synchronized (metrics) {
+            metrics.onBroadcast();
+        }
+    }
+
+    /**
+     * Delivers a copy of the current metrics to the listener, if any.
+     */
+    static void publish() {
+        MetricsListener metricsListener = listener;
+        if (metricsListener == null) return;
+
+        Metrics copy;
+        synchronized (metrics) {
+            copy = new Metrics(metrics);
+        }
+
+        try {
+            metricsListener.onMetrics(copy);
+        } catch (Exception exc) {
+            Logger.error(LOG_TAG, "Error in metrics listener", exc);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package net.gotev.hostmonitor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps one long-lived TCP connection for each host, so hosts can be checked without a new
+ * handshake each time. Connections have TCP keepalive enabled and are checked with a
+ * non-blocking read, which detects when the host closed (EOF) or reset (RST) them.
+ * A new connection is made when the previous one dropped, when the network changed and when
+ * the connection is older than the recheck interval, because TCP keepalive may take hours
+ * to detect a host which silently went away.
+ * A check doesn't send anything to the host, so it can't measure a round trip: while the
+ * connection is alive, the host is reported with the latency of the handshake which opened it.
+ * Connections live in memory, so they are made again if the process gets restarted.
+ * @author gotev (Aleksandar Gotev)
+ */
+class PersistentConnections {
+
+    private static final String LOG_TAG = PersistentConnections.class.getSimpleName();
+
+    private static class Connection {
+        private final SocketChannel channel;
+        // network generation in which the connection has been made
+        private final int generation;
+        private final long connectTime;
+        // result of the checks while the connection is alive, with the handshake latency.
+        // It's the same for all the checks, so that they don't allocate
+        private final ProbeResult aliveResult;
+
+        Connection(SocketChannel channel, int generation, ProbeResult aliveResult) {
+            this.channel = channel;
+            this.generation = generation;
+            this.connectTime = System.nanoTime();
+            this.aliveResult = aliveResult;
+        }
+    }
+
+    private static class SingletonHolder {
+        private static final PersistentConnections instance = new PersistentConnections();
+    }
+
+    private final Map<Host, Connection> mConnections = new HashMap<>();
+
+    // incremented when the network changes, so that the connections made before are not used
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    // data sent by hosts is not used, so it's discarded one byte at a time
+    private final ByteBuffer mReadBuffer = ByteBuffer.allocate(1);
+
+    private PersistentConnections() { }
+
+    static PersistentConnections getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    /**
+     * Checks if the connection to a host is still alive, without blocking.
+     * @param host host to check
+     * @param recheckInterval maximum age of a connection in milliseconds. Older connections
+     *                        are closed, so that the host gets connected again (0 means
+     *                        no limit)
+     * @return a reachable result with the latency of the connection handshake, or null if
+     * there's no connection to the host, it dropped or it has to be made again
+     */
+    synchronized ProbeResult check(Host host, int recheckInterval) {
+        Connection connection = mConnections.get(host);
+        if (connection == null) return null;
+
+        long start = System.nanoTime();
+
+        if (connection.generation != mGeneration.get()) {
+            if (Logger.isEnabled(Logger.LogLevel.DEBUG)) {
+                Logger.debug(LOG_TAG, "Connection to %s made before the last network change",
+                             host.getKey());
+            }
+
+        } else if (recheckInterval > 0
+                && start - connection.connectTime >= recheckInterval * 1000000L) {
+            if (Logger.isEnabled(Logger.LogLevel.DEBUG)) {
+                Logger.debug(LOG_TAG, "Connection to %s older than the recheck interval",
+                             host.getKey());
+            }
+
+        } else {
+            try {
+                int read;
+                do {
+                    mReadBuffer.clear();
+                    read = connection.channel.read(mReadBuffer);
+                } while (read > 0);
+
+                if (read == 0) {
+                    return connection.aliveResult;
+                }
+
+                if (Logger.isEnabled(Logger.LogLevel.DEBUG)) {
+                    Logger.debug(LOG_TAG, "Connection to %s closed by the host", host.getKey());
+                }
+
+            } catch (IOException exc) {
+                if (Logger.isEnabled(Logger.LogLevel.DEBUG)) {
+                    Logger.debug(LOG_TAG, "Connection to %s dropped: %s", host.getKey(),
+                                 exc.getMessage());
+                }
+            }
+        }
+
+        close(host);
+        return null;
+    }
+
+    /**
+     * Connects to a host and keeps the connection open if it succeeds. Failed connection
+     * attempts are retried according to the retry tracker.
+     * @param host host to connect to
+     * @param connectTimeout maximum time to wait for each connection attempt, in milliseconds
+     * @param retries tracker of the connection attempts
+     * @return probe result
+     */
+    ProbeResult connect(Host host, int connectTimeout, RetryTracker retries) {
+        ProbeResult result;
+
+        while (true) {
+            result = connect(host, retries.onAttemptStarted(connectTimeout), retries.getAttempts());
+            if (result.isReachable()) break;
+
+            long delay = retries.getNextDelay();
+            if (delay < 0) break;
+
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private ProbeResult connect(Host host, int timeout, int attempts) {
+        int generation = mGeneration.get();
+        SocketChannel channel = null;
+        long start = System.nanoTime();
+        long resolved = start;
+
+        try {
+            InetSocketAddress address = host.resolve();
+            resolved = System.nanoTime();
+
+            channel = SocketChannel.open();
+            channel.socket().setKeepAlive(true);
+            channel.socket().connect(address, timeout);
+            channel.configureBlocking(false);
+
+            long connectTime = System.nanoTime() - resolved;
+            ProbeResult result = new ProbeResult(host, true, resolved - start, connectTime,
+                                                 address.getAddress(), attempts);
+
+            synchronized (this) {
+                close(host);
+
+                if (generation == mGeneration.get()) {
+                    ProbeResult aliveResult = new ProbeResult(host, true, 0, connectTime,
+                                                              address.getAddress(), 1);
+                    mConnections.put(host, new Connection(channel, generation, aliveResult));
+                } else {
+                    // made on the previous network, it can't be kept
+                    close(channel);
+                }
+            }
+
+            return result;
+
+        } catch (Exception exc) {
+            close(channel);
+            return new ProbeResult(host, false, resolved - start, System.nanoTime() - resolved,
+                                   null, attempts, ProbeResult.Failure.of(exc));
+        }
+    }
+
+    /**
+     * Closes the connections to the hosts which are not in the given collection.
+     * @param hosts hosts whose connections have to be kept
+     */
+    synchronized void retainAll(Collection<Host> hosts) {
+        Iterator<Map.Entry<Host, Connection>> iterator = mConnections.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<Host, Connection> entry = iterator.next();
+
+            if (!hosts.contains(entry.getKey())) {
+                close(entry.getValue().channel);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Notifies that the network changed. The connections made before are closed when checked
+     * and the ones being made are not kept. It doesn't block and doesn't do any I/O, so it
+     * can be called from any thread.
+     */
+    void onNetworkChanged() {
+        mGeneration.incrementAndGet();
+    }
+
+    /**
+     * Closes all the connections.
+     */
+    synchronized void closeAll() {
+        mGeneration.incrementAndGet();
+
+        for (Connection connection : mConnections.values()) {
+            close(connection.channel);
+        }
+
+        mConnections.clear();
+    }
+
+    private void close(Host host) {
+        Connection connection = mConnections.remove(host);
+
+        if (connection != null) {
+            close(connection.channel);
+        }
+    }
+
+    private static void close(SocketChannel channel) {
+        if (channel == null) return;
+
+        try {
+            channel.close();
+        } catch (IOException exc) {
+            Logger.debug(LOG_TAG, "Error while closing connection.");
+        }
+    }
+}
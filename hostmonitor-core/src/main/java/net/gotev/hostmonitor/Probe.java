@@ -0,0 +1,23 @@
+package net.gotev.hostmonitor;
+
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * Checks the health of a host on a TCP connection which has just been established, so hosts
+ * which accept connections without being able to serve them can be reported as unreachable.
+ * Implementations are persisted with the configuration, so they must be serializable with Gson
+ * and should hold only their settings.
+ * @author gotev (Aleksandar Gotev)
+ */
+public interface Probe {
+    /**
+     * Checks the health of a host.
+     * @param socket socket connected to the host. It gets closed by the caller
+     * @param host host name, as configured
+     * @param timeout maximum time to wait for each read, in milliseconds
+     * @return true if the host is healthy, false otherwise
+     * @throws IOException if an I/O error occurs. The host is reported as unreachable
+     */
+    boolean check(Socket socket, String host, int timeout) throws IOException;
+}
@@ -0,0 +1,19 @@
+package net.gotev.hostmonitor;
+
+/**
+ * Enumeration of the engines which can be used to perform reachability checks.
+ * @author gotev (Aleksandar Gotev)
+ */
+public enum ProbeEngine {
+    /**
+     * Each connection attempt is performed with a blocking socket. Hosts are checked one after
+     * another, or by a pool of threads if parallelism is greater than one.
+     */
+    BLOCKING,
+
+    /**
+     * Connection attempts to all the hosts are started together with non-blocking socket
+     * channels and completed from a single selector loop, on the service thread.
+     */
+    SELECTOR
+}
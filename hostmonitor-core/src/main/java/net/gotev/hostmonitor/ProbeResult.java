@@ -0,0 +1,122 @@
+package net.gotev.hostmonitor;
+
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+/**
+ * Result of the reachability probe of a single host.
+ * @author gotev (Aleksandar Gotev)
+ */
+class ProbeResult {
+
+    /**
+     * Reason why a host is not reachable.
+     */
+    enum Failure {
+        NONE,
+        // the host name could not be resolved
+        UNRESOLVED,
+        // the connection attempt timed out
+        TIMEOUT,
+        // the connection has been refused
+        REFUSED,
+        // the connection has been established, but the probe considered the host unhealthy
+        UNHEALTHY,
+        // any other error
+        ERROR;
+
+        /**
+         * Gets the failure corresponding to the exception thrown by a connection attempt.
+         * @param exception exception thrown by the connection attempt
+         * @return failure
+         */
+        static Failure of(Exception exception) {
+            if (exception instanceof UnknownHostException) return UNRESOLVED;
+            if (exception instanceof SocketTimeoutException) return TIMEOUT;
+            if (exception instanceof ConnectException) return REFUSED;
+            return ERROR;
+        }
+    }
+
+    private final Host host;
+    private final boolean reachable;
+    private final long resolveTime;
+    private final long connectTime;
+    private final InetAddress address;
+    private final int attempts;
+    private final Failure failure;
+
+    public ProbeResult(Host host, boolean reachable) {
+        this(host, reachable, 0, 0, null, 0);
+    }
+
+    public ProbeResult(Host host, boolean reachable, long resolveTime, long connectTime,
+                       InetAddress address, int attempts) {
+        this(host, reachable, resolveTime, connectTime, address, attempts,
+             reachable ? Failure.NONE : Failure.ERROR);
+    }
+
+    /**
+     * Creates a new probe result.
+     * @param host probed host
+     * @param reachable true if the host is reachable
+     * @param resolveTime time spent to resolve the host address, in nanoseconds
+     * @param connectTime time spent to connect to the host, in nanoseconds
+     * @param address address to which the connection has been established, or null
+     * @param attempts number of connection attempts made
+     * @param failure reason why the host is not reachable, or {@link Failure#NONE}
+     */
+    public ProbeResult(Host host, boolean reachable, long resolveTime, long connectTime,
+                       InetAddress address, int attempts, Failure failure) {
+        this.host = host;
+        this.reachable = reachable;
+        this.resolveTime = resolveTime;
+        this.connectTime = connectTime;
+        this.address = address;
+        this.attempts = attempts;
+        this.failure = reachable ? Failure.NONE : failure;
+    }
+
+    public Host getHost() {
+        return host;
+    }
+
+    public boolean isReachable() {
+        return reachable;
+    }
+
+    public long getResolveTime() {
+        return resolveTime;
+    }
+
+    public long getConnectTime() {
+        return connectTime;
+    }
+
+    public InetAddress getAddress() {
+        return address;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Gets the reason why the host is not reachable. When more connection attempts have been
+     * made, it's the reason of the last one.
+     * @return failure, or {@link Failure#NONE} if the host is reachable
+     */
+    public Failure getFailure() {
+        return failure;
+    }
+
+    /**
+     * Gets the connection latency of the successful attempt.
+     * @return latency in milliseconds, or -1 if the host is not reachable
+     */
+    public long getLatency() {
+        return reachable ? connectTime / 1000000L : -1;
+    }
+}
@@ -0,0 +1,429 @@
+package net.gotev.hostmonitor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Performs a reachability check round of a set of hosts and applies the results to their
+ * statuses, which are read and written by host id in a {@link StatusTable}. It doesn't know
+ * how the changes are notified, which is up to the {@link Callback}.
+ * @author gotev (Aleksandar Gotev)
+ */
+class ReachabilityCheck {
+
+    private static final String LOG_TAG = ReachabilityCheck.class.getSimpleName();
+
+    // maximum time to wait for a probe result before checking if the check has been cancelled
+    private static final long CANCELLATION_CHECK_INTERVAL = 100;
+
+    /**
+     * Gives access to the probes of the hosts and receives the changes of their statuses.
+     * All the methods are called from the thread which runs the check, except
+     * {@link #isCancelled()} which is called from the probing threads as well.
+     */
+    interface Callback {
+        /**
+         * Gets the probe used to check the health of a host after connecting.
+         * @param host host
+         * @return probe
+         */
+        Probe getProbe(Host host);
+
+        /**
+         * Called when the status of a host changed, after it has been written in the table.
+         * @param result probe result which caused the change
+         * @param previousStatus status before the check
+         * @param newStatus status after the check
+         */
+        void onStatusChanged(ProbeResult result, Status previousStatus, Status newStatus);
+
+        /**
+         * Checks if the check has been cancelled. A cancelled check stops probing and
+         * discards the results of the probes still in progress.
+         * @return true if cancelled
+         */
+        boolean isCancelled();
+    }
+
+    private final CheckSettings mSettings;
+    private final StatusTable mTable;
+    private final Callback mCallback;
+
+    // the results are applied from a single thread, so the statuses are read in this one
+    // instead of creating a status for each host in each round
+    private final Status mStatus = new Status();
+
+    // stops the blocking probes before their next connection attempt once cancelled
+    private final BlockingProbe.CancellationCheck mCancellation =
+            new BlockingProbe.CancellationCheck() {
+                @Override
+                public boolean isCancelled() {
+                    return mCallback.isCancelled();
+                }
+            };
+
+    /**
+     * Creates a check.
+     * @param settings check settings
+     * @param table table with the statuses of the hosts. Hosts removed from it while checking
+     *              are skipped, so that they are not added back
+     * @param callback callback
+     */
+    public ReachabilityCheck(CheckSettings settings, StatusTable table, Callback callback) {
+        mSettings = settings;
+        mTable = table;
+        mCallback = callback;
+    }
+
+    /**
+     * Sets all the hosts as unreachable, without probing them.
+     * @param connectionType current connection type
+     * @param hosts hosts to update
+     */
+    public void setAllUnreachable(ConnectionType connectionType, Collection<Host> hosts) {
+        Logger.debug(LOG_TAG, "No active connection. Notifying that all the hosts are unreachable");
+        MetricsRecorder.onRound();
+
+        for (Host host : hosts) {
+            if (mCallback.isCancelled()) break;
+
+            int id = mTable.getId(host);
+            if (id < 0 || !mTable.read(id, mStatus)) continue;
+
+            Status previousStatus = mStatus;
+
+            boolean statusChanged = isChanged(previousStatus, false, connectionType);
+            int adaptiveCheckInterval = mSettings.getNextAdaptiveCheckInterval(previousStatus,
+                                                                               statusChanged);
+
+            if (statusChanged) {
+                if (Logger.isEnabled(Logger.LogLevel.DEBUG)) {
+                    Logger.debug(LOG_TAG, "Host %s is currently unreachable on port %d",
+                                 host.getHost(), host.getPort());
+                }
+
+                Status newStatus = new Status(false, connectionType);
+                newStatus.setCheckInterval(previousStatus.getCheckInterval());
+                newStatus.setAdaptiveCheckInterval(adaptiveCheckInterval);
+
+                applyChange(id, new ProbeResult(host, false), previousStatus, newStatus);
+            } else {
+                keepStatus(id, host, previousStatus, adaptiveCheckInterval, 0);
+            }
+        }
+    }
+
+    /**
+     * Probes the hosts and updates their statuses.
+     * @param connectionType current connection type
+     * @param hosts hosts to check
+     */
+    public void check(ConnectionType connectionType, Collection<Host> hosts) {
+        if (Logger.isEnabled(Logger.LogLevel.DEBUG)) {
+            Logger.debug(LOG_TAG, "Starting reachability check of %d hosts", hosts.size());
+        }
+        MetricsRecorder.onRound();
+
+        DnsCache.getInstance().setTtl(mSettings.getDnsCacheTtl(),
+                                      mSettings.getDnsNegativeCacheTtl());
+
+        Collection<Host> probedHosts = hosts;
+
+        if (mSettings.isPersistentConnections()) {
+            probedHosts = checkPersistentConnections(connectionType, hosts);
+        }
+
+        if (!probedHosts.isEmpty()) {
+            probe(connectionType, probedHosts);
+        }
+
+        Logger.debug(LOG_TAG, "Reachability check finished!");
+    }
+
+    private void probe(ConnectionType connectionType, Collection<Host> hosts) {
+        if (mSettings.getProbeEngine() == ProbeEngine.SELECTOR) {
+            checkWithSelector(connectionType, hosts);
+        } else if (mSettings.getParallelism() > 1 && hosts.size() > 1) {
+            checkInParallel(connectionType, hosts);
+        } else {
+            BlockingProbe probe = newBlockingProbe();
+
+            for (Host host : hosts) {
+                if (mCallback.isCancelled()) break;
+
+                updateStatus(probe.probe(host, mCallback.getProbe(host), mCancellation),
+                             connectionType);
+            }
+        }
+    }
+
+    /**
+     * Checks the hosts which use a {@link TcpProbe} on their persistent connections,
+     * connecting again only to the hosts whose connection dropped.
+     * @return the hosts which have to be checked as usual
+     */
+    private Collection<Host> checkPersistentConnections(ConnectionType connectionType,
+                                                        Collection<Host> hosts) {
+        PersistentConnections connections = PersistentConnections.getInstance();
+        // created only if needed, so that rounds on persistent connections don't allocate
+        List<Host> otherHosts = null;
+
+        for (Host host : hosts) {
+            if (mCallback.isCancelled()) break;
+
+            if (!(mCallback.getProbe(host) instanceof TcpProbe)) {
+                if (otherHosts == null) {
+                    otherHosts = new ArrayList<>();
+                }
+                otherHosts.add(host);
+                continue;
+            }
+
+            ProbeResult result = connections.check(host,
+                    mSettings.getPersistentConnectionsRecheckInterval());
+
+            if (result == null) {
+                if (Logger.isEnabled(Logger.LogLevel.DEBUG)) {
+                    Logger.debug(LOG_TAG, "Opening persistent connection to %s", host.getKey());
+                }
+                result = connections.connect(host, mSettings.getSocketTimeout(),
+                        new RetryTracker(mSettings.getRetryPolicy(), mSettings.getMaxAttempts(),
+                                         mSettings.getRetryTimeBudget()));
+            }
+
+            updateStatus(result, connectionType);
+        }
+
+        return otherHosts == null ? Collections.<Host>emptyList() : otherHosts;
+    }
+
+    private void checkWithSelector(final ConnectionType connectionType, Collection<Host> hosts) {
+        // the selector only establishes connections, so hosts which need a health check
+        // are checked afterwards with blocking sockets
+        Set<Host> selectorHosts = new HashSet<>();
+        List<Host> checkedHosts = new ArrayList<>();
+
+        for (Host host : hosts) {
+            if (mCallback.getProbe(host) instanceof TcpProbe) {
+                selectorHosts.add(host);
+            } else {
+                checkedHosts.add(host);
+            }
+        }
+
+        SelectorProbe probe = new SelectorProbe(mSettings.getSocketTimeout(),
+                                                mSettings.getMaxAttempts(),
+                                                mSettings.getRetryPolicy(),
+                                                mSettings.getRetryTimeBudget(),
+                                                mSettings.isRaceAllAddresses());
+
+        probe.probe(selectorHosts, new SelectorProbe.Callback() {
+            @Override
+            public void onProbeCompleted(ProbeResult result) {
+                updateStatus(result, connectionType);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return mCallback.isCancelled();
+            }
+        });
+
+        BlockingProbe blockingProbe = newBlockingProbe();
+
+        for (Host host : checkedHosts) {
+            if (mCallback.isCancelled()) break;
+
+            updateStatus(blockingProbe.probe(host, mCallback.getProbe(host), mCancellation),
+                         connectionType);
+        }
+    }
+
+    private void checkInParallel(ConnectionType connectionType, Collection<Host> hosts) {
+        final BlockingProbe probe = newBlockingProbe();
+        int threads = Math.min(mSettings.getParallelism(), hosts.size());
+
+        if (Logger.isEnabled(Logger.LogLevel.DEBUG)) {
+            Logger.debug(LOG_TAG, "Checking %d hosts with %d threads", hosts.size(), threads);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CompletionService<ProbeResult> completionService = new ExecutorCompletionService<>(executor);
+
+        try {
+            for (final Host host : hosts) {
+                final Probe check = mCallback.getProbe(host);
+
+                completionService.submit(new Callable<ProbeResult>() {
+                    @Override
+                    public ProbeResult call() throws Exception {
+                        return probe.probe(host, check, mCancellation);
+                    }
+                });
+            }
+
+            // status changes are applied and notified from this thread only, in the order
+            // in which the checks complete
+            int remaining = hosts.size();
+            while (remaining > 0 && !mCallback.isCancelled()) {
+                Future<ProbeResult> future = completionService.poll(CANCELLATION_CHECK_INTERVAL,
+                                                                    TimeUnit.MILLISECONDS);
+                if (future == null) continue;
+
+                remaining--;
+                updateStatus(future.get(), connectionType);
+            }
+
+        } catch (InterruptedException exc) {
+            Logger.error(LOG_TAG, "Interrupted while waiting for reachability checks", exc);
+            Thread.currentThread().interrupt();
+
+        } catch (ExecutionException exc) {
+            Logger.error(LOG_TAG, "Error while performing reachability check", exc);
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private BlockingProbe newBlockingProbe() {
+        return new BlockingProbe(mSettings.getSocketTimeout(), mSettings.getMaxAttempts(),
+                                 mSettings.getRetryPolicy(), mSettings.getRetryTimeBudget(),
+                                 mSettings.isRaceAllAddresses());
+    }
+
+    private void updateStatus(ProbeResult result, ConnectionType connectionType) {
+        MetricsRecorder.onProbe(result);
+
+        // results of a cancelled check refer to a connection which doesn't exist anymore
+        if (mCallback.isCancelled()) return;
+
+        // this runs for each host in each round, so when nothing changes it must not
+        // allocate: no status is created and messages are built only if logged
+        boolean debug = Logger.isEnabled(Logger.LogLevel.DEBUG);
+        Host host = result.getHost();
+        boolean reachable = result.isReachable();
+
+        if (debug) {
+            Logger.debug(LOG_TAG, "Host %s on port %d resolved in %dms, connection %s in %dms",
+                         host.getHost(), host.getPort(), result.getResolveTime() / 1000000,
+                         reachable ? "established" : "failed",
+                         result.getConnectTime() / 1000000);
+        }
+
+        int id = mTable.getId(host);
+        if (id < 0 || !mTable.read(id, mStatus)) return;
+
+        Status previousStatus = mStatus;
+
+        if (reachable != previousStatus.isReachable()) {
+            int threshold = reachable ? mSettings.getHysteresisUpThreshold()
+                                      : mSettings.getHysteresisDownThreshold();
+            int pendingResults = previousStatus.getNextPendingResults(threshold);
+
+            if (pendingResults > 0) {
+                if (debug) {
+                    Logger.debug(LOG_TAG, "Host %s on port %d is %s for %d of %d "
+                                 + "consecutive checks", host.getHost(), host.getPort(),
+                                 reachable ? "reachable" : "unreachable", pendingResults,
+                                 threshold);
+                }
+
+                // checked again soon, to confirm or discard the transition quickly
+                int adaptiveCheckInterval = mSettings.getNextAdaptiveCheckInterval(
+                        previousStatus, true);
+
+                if (connectionType == previousStatus.getConnectionType()) {
+                    keepStatus(id, host, previousStatus, adaptiveCheckInterval,
+                               pendingResults);
+                    return;
+                }
+
+                // the connection type comes from the device, so it's committed immediately,
+                // while the reachability transition stays pending
+                Status pendingStatus = new Status(previousStatus.isReachable(), connectionType,
+                                                  previousStatus.getLatency(),
+                                                  System.currentTimeMillis());
+                pendingStatus.setCheckInterval(previousStatus.getCheckInterval());
+                pendingStatus.setAdaptiveCheckInterval(adaptiveCheckInterval);
+                pendingStatus.setPendingResults(pendingResults);
+
+                applyChange(id, result, previousStatus, pendingStatus);
+                return;
+            }
+        }
+
+        boolean statusChanged = isChanged(previousStatus, reachable, connectionType);
+        int adaptiveCheckInterval = mSettings.getNextAdaptiveCheckInterval(previousStatus,
+                                                                           statusChanged);
+        long latency = result.getLatency();
+
+        // the persisted latency is the last notified one, so that slow drifts are notified
+        // as well once they exceed the threshold
+        if (statusChanged || previousStatus.latencyChanged(reachable, latency,
+                                                           mSettings.getLatencyChangeThreshold())) {
+            if (debug) {
+                Logger.debug(LOG_TAG, "Host %s is currently %s on port %d via %s "
+                             + "with latency %dms", host.getHost(),
+                             reachable ? "reachable" : "unreachable", host.getPort(),
+                             connectionType, latency);
+            }
+
+            Status newStatus = new Status(reachable, connectionType, latency,
+                                          System.currentTimeMillis());
+            newStatus.setCheckInterval(previousStatus.getCheckInterval());
+            newStatus.setAdaptiveCheckInterval(adaptiveCheckInterval);
+
+            applyChange(id, result, previousStatus, newStatus);
+        } else {
+            keepStatus(id, host, previousStatus, adaptiveCheckInterval, 0);
+        }
+    }
+
+    /**
+     * Checks if a status differs from the given values, as {@link Status#equals(Object)} does.
+     */
+    private static boolean isChanged(Status status, boolean reachable,
+                                     ConnectionType connectionType) {
+        return status.isReachable() != reachable || status.getConnectionType() != connectionType;
+    }
+
+    /**
+     * Writes the changed status of a host and notifies it, unless the host has been removed
+     * while checking.
+     */
+    private void applyChange(int id, ProbeResult result, Status previousStatus,
+                             Status newStatus) {
+        if (mTable.update(id, result.getHost(), newStatus)) {
+            // the previous status is the reused one, so the callback gets a copy of it
+            mCallback.onStatusChanged(result, new Status(previousStatus), newStatus);
+        }
+    }
+
+    /**
+     * Keeps the previous status of a host, updating only its adaptive check interval and
+     * the number of results pending a transition. It's updated only if they changed.
+     */
+    private void keepStatus(int id, Host host, Status previousStatus, int adaptiveCheckInterval,
+                            int pendingResults) {
+        if (adaptiveCheckInterval == previousStatus.getAdaptiveCheckInterval()
+                && pendingResults == previousStatus.getPendingResults())
+            return;
+
+        previousStatus.setAdaptiveCheckInterval(adaptiveCheckInterval);
+        previousStatus.setPendingResults(pendingResults);
+        mTable.update(id, host, previousStatus);
+    }
+}
@@ -0,0 +1,67 @@
+package net.gotev.hostmonitor;
+
+/**
+ * Immutable reachability status of a monitored host and port, as known after the last check.
+ * @author gotev (Aleksandar Gotev)
+ */
+public final class ReachabilityStatus {
+
+    private final String host;
+    private final int port;
+    private final boolean reachable;
+    private final ConnectionType connectionType;
+    private final long latency;
+    private final long checkTime;
+
+    ReachabilityStatus(Host host, boolean reachable, ConnectionType connectionType,
+                       long latency, long checkTime) {
+        this.host = host.getHost();
+        this.port = host.getPort();
+        this.reachable = reachable;
+        this.connectionType = connectionType;
+        this.latency = latency;
+        this.checkTime = checkTime;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public boolean isReachable() {
+        return reachable;
+    }
+
+    /**
+     * Gets the connection type used to check the host.
+     * @return connection type
+     */
+    public ConnectionType getConnectionType() {
+        return connectionType;
+    }
+
+    /**
+     * Gets the connection latency of the last check which notified a change.
+     * @return latency in milliseconds, or -1 if the host is not reachable
+     */
+    public long getLatency() {
+        return latency;
+    }
+
+    /**
+     * Gets the time of the last check which notified a change.
+     * @return time in milliseconds since epoch, or 0 if the host has not been checked yet
+     */
+    public long getCheckTime() {
+        return checkTime;
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + port + " reachable=" + reachable + " via " + connectionType
+                + ", latency=" + latency + "ms, checkTime=" + checkTime;
+    }
+}
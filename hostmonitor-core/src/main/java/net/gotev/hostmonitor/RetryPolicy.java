@@ -0,0 +1,17 @@
+package net.gotev.hostmonitor;
+
+/**
+ * Decides how long to wait before retrying a failed connection attempt.
+ * Implementations are persisted with the configuration, so they must be serializable with Gson
+ * and should hold only their settings.
+ * @author gotev (Aleksandar Gotev)
+ */
+public interface RetryPolicy {
+    /**
+     * Gets how long to wait before the next connection attempt.
+     * @param failedAttempts number of connection attempts failed so far (starts from 1)
+     * @param previousDelay delay returned for the previous retry, or 0 for the first retry
+     * @return delay in milliseconds (0 means retry immediately)
+     */
+    long getDelay(int failedAttempts, long previousDelay);
+}
@@ -0,0 +1,71 @@
+package net.gotev.hostmonitor;
+
+/**
+ * Keeps track of the connection attempts made to a single host and decides, through the
+ * {@link RetryPolicy}, if and when the next attempt should be made. Attempts stop when the
+ * maximum number of attempts is reached or when the time budget for the host is exhausted.
+ * @author gotev (Aleksandar Gotev)
+ */
+class RetryTracker {
+
+    private final RetryPolicy retryPolicy;
+    private final int maxAttempts;
+    private final long timeBudgetNanos;
+
+    private int attempts;
+    private long start;
+    private long previousDelay;
+
+    /**
+     * Creates a new retry tracker.
+     * @param retryPolicy policy which decides the delay between attempts
+     * @param maxAttempts maximum number of connection attempts
+     * @param timeBudget maximum time to spend on the host in milliseconds (0 means no limit)
+     */
+    public RetryTracker(RetryPolicy retryPolicy, int maxAttempts, int timeBudget) {
+        this.retryPolicy = retryPolicy;
+        this.maxAttempts = maxAttempts;
+        this.timeBudgetNanos = timeBudget * 1000000L;
+    }
+
+    /**
+     * Records that a new connection attempt is being started.
+     * @param connectTimeout configured connection timeout in milliseconds
+     * @return connection timeout to use for this attempt, in milliseconds, so that the attempt
+     * does not exceed the time budget
+     */
+    public int onAttemptStarted(int connectTimeout) {
+        long now = System.nanoTime();
+
+        if (attempts == 0) {
+            start = now;
+        }
+
+        attempts++;
+
+        if (timeBudgetNanos <= 0) return connectTimeout;
+
+        long remaining = (start + timeBudgetNanos - now) / 1000000L;
+        return (int) Math.max(1, Math.min(connectTimeout, remaining));
+    }
+
+    /**
+     * Gets how long to wait before the next connection attempt, after a failed one.
+     * @return delay in milliseconds, or -1 if no other attempts should be made
+     */
+    public long getNextDelay() {
+        if (attempts >= maxAttempts) return -1;
+
+        long delay = Math.max(0, retryPolicy.getDelay(attempts, previousDelay));
+        previousDelay = delay;
+
+        if (timeBudgetNanos > 0 && System.nanoTime() + delay * 1000000L - start >= timeBudgetNanos)
+            return -1;
+
+        return delay;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+}
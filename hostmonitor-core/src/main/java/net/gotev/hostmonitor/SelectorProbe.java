@@ -0,0 +1,575 @@
+package net.gotev.hostmonitor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Checks the reachability of many hosts from a single thread, by starting non-blocking
+ * connections to all of them and completing them from a {@link Selector} loop.
+ * Each connection attempt has its own deadline. Failed attempts are retried according to the
+ * {@link RetryPolicy}, without blocking the other hosts while waiting.
+ * Host names which are not in the {@link DnsCache} are resolved on a small pool of resolver
+ * threads, so that lookups never block the selector thread.
+ * <br><br>
+ * When racing all addresses, each connection attempt resolves all the addresses of the host
+ * and connects to them in turn, alternating between IPv6 and IPv4 and starting a new connection
+ * every {@link #CONNECTION_ATTEMPT_DELAY} milliseconds or as soon as the previous one fails
+ * (RFC 8305, Happy Eyeballs). The first connection which succeeds wins and the others are
+ * closed.
+ * @author gotev (Aleksandar Gotev)
+ */
+class SelectorProbe {
+
+    private static final String LOG_TAG = SelectorProbe.class.getSimpleName();
+
+    /**
+     * Milliseconds to wait before connecting to the next address of a host, when racing
+     * all the addresses. This is the value recommended by RFC 8305.
+     */
+    static final long CONNECTION_ATTEMPT_DELAY = 250;
+
+    // maximum time to wait in the selector before checking if the probe has been cancelled
+    private static final long CANCELLATION_CHECK_INTERVAL = 100;
+
+    // maximum number of concurrent host name lookups
+    private static final int RESOLVER_THREADS = 4;
+
+    /**
+     * Receives the result of each host as soon as it's available.
+     */
+    interface Callback {
+        void onProbeCompleted(ProbeResult result);
+
+        /**
+         * Checked periodically while probing. When it returns true, the pending connections
+         * are closed and the probe returns without completing the pending hosts.
+         */
+        boolean isCancelled();
+    }
+
+    private static class PendingConnection {
+        private final Host host;
+        private final RetryTracker retries;
+        private final List<SocketChannel> channels = new ArrayList<>(1);
+        // addresses of the current attempt, in connection order
+        private InetAddress[] addresses;
+        private int nextAddress;
+        // true while waiting for the next attempt
+        private boolean waiting;
+        // true while the host name is being resolved, with the id of the current lookup
+        private boolean resolving;
+        private int resolution;
+        private long attemptStart;
+        private int timeout;
+        // deadline of the current attempt, or time of the next attempt if waiting
+        private long deadline;
+        private long nextAddressTime;
+        private long resolveTime;
+        private long connectStart;
+        // reason of the last failed connection
+        private ProbeResult.Failure failure = ProbeResult.Failure.ERROR;
+
+        PendingConnection(Host host, RetryTracker retries) {
+            this.host = host;
+            this.retries = retries;
+        }
+
+        boolean hasMoreAddresses() {
+            return addresses != null && nextAddress < addresses.length;
+        }
+    }
+
+    private static class Resolution {
+        private final PendingConnection connection;
+        private final int id;
+        // null if the host name can't be resolved
+        private final InetAddress[] addresses;
+
+        Resolution(PendingConnection connection, int id, InetAddress[] addresses) {
+            this.connection = connection;
+            this.id = id;
+            this.addresses = addresses;
+        }
+    }
+
+    /**
+     * Resolves host names on a thread pool, which is created only if needed. Completed
+     * resolutions are queued and the selector gets woken up to process them.
+     */
+    private static class Resolver {
+        private final Selector selector;
+        private final int threads;
+        private final Queue<Resolution> completed = new ConcurrentLinkedQueue<>();
+        private ExecutorService executor;
+
+        Resolver(Selector selector, int threads) {
+            this.selector = selector;
+            this.threads = threads;
+        }
+
+        void resolve(final PendingConnection connection) {
+            final int id = ++connection.resolution;
+            final String hostname = connection.host.getHost();
+
+            if (executor == null) {
+                executor = Executors.newFixedThreadPool(threads);
+            }
+
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    InetAddress[] addresses;
+
+                    try {
+                        addresses = DnsCache.getInstance().resolveAll(hostname);
+                    } catch (UnknownHostException exc) {
+                        addresses = null;
+                    }
+
+                    completed.add(new Resolution(connection, id, addresses));
+                    selector.wakeup();
+                }
+            });
+        }
+
+        Resolution poll() {
+            return completed.poll();
+        }
+
+        void shutdown() {
+            if (executor != null) {
+                // lookups in progress can't be interrupted, their results are discarded
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private final int connectTimeout;
+    private final int maxAttempts;
+    private final RetryPolicy retryPolicy;
+    private final int timeBudget;
+    private final boolean raceAllAddresses;
+
+    /**
+     * Creates a new selector probe.
+     * @param connectTimeout maximum time to wait for each connection attempt, in milliseconds
+     * @param maxAttempts maximum number of connection attempts for each host
+     * @param retryPolicy policy which decides the delay between connection attempts
+     * @param timeBudget maximum time to spend on each host in milliseconds (0 means no limit)
+     * @param raceAllAddresses true to race connections to all the addresses of each host,
+     *                         false to connect only to the first one
+     */
+    public SelectorProbe(int connectTimeout, int maxAttempts, RetryPolicy retryPolicy,
+                         int timeBudget, boolean raceAllAddresses) {
+        this.connectTimeout = connectTimeout;
+        this.maxAttempts = maxAttempts;
+        this.retryPolicy = retryPolicy;
+        this.timeBudget = timeBudget;
+        this.raceAllAddresses = raceAllAddresses;
+    }
+
+    /**
+     * Checks the reachability of a single host.
+     * @param host host to check
+     * @return probe result
+     */
+    public ProbeResult probe(Host host) {
+        final ProbeResult[] result = new ProbeResult[1];
+
+        probe(Collections.singletonList(host), new Callback() {
+            @Override
+            public void onProbeCompleted(ProbeResult probeResult) {
+                result[0] = probeResult;
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        });
+
+        return result[0];
+    }
+
+    /**
+     * Checks the reachability of the given hosts. This method returns when all the hosts have
+     * been completed, or when the callback reports that the probe has been cancelled.
+     * The callback is invoked on the calling thread.
+     * @param hosts hosts to check
+     * @param callback callback which receives the result of each host
+     */
+    public void probe(Collection<Host> hosts, Callback callback) {
+        Selector selector;
+
+        try {
+            selector = Selector.open();
+        } catch (IOException exc) {
+            Logger.error(LOG_TAG, "Error while opening selector. Hosts will be reported as unreachable", exc);
+            for (Host host : hosts) {
+                callback.onProbeCompleted(new ProbeResult(host, false));
+            }
+            return;
+        }
+
+        Set<PendingConnection> pending = new HashSet<>();
+        Resolver resolver = new Resolver(selector, Math.max(1, Math.min(RESOLVER_THREADS,
+                                                                        hosts.size())));
+
+        try {
+            for (Host host : hosts) {
+                PendingConnection connection = new PendingConnection(host,
+                        new RetryTracker(retryPolicy, maxAttempts, timeBudget));
+                if (connect(selector, resolver, connection, callback)) {
+                    pending.add(connection);
+                }
+            }
+
+            while (!pending.isEmpty()) {
+                if (callback.isCancelled()) {
+                    if (Logger.isEnabled(Logger.LogLevel.DEBUG)) {
+                        Logger.debug(LOG_TAG, "Probe cancelled with %d pending hosts",
+                                     pending.size());
+                    }
+                    break;
+                }
+
+                selector.select(Math.min(CANCELLATION_CHECK_INTERVAL,
+                                         getMillisToNearestDeadline(pending)));
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    PendingConnection connection = (PendingConnection) key.attachment();
+                    SocketChannel channel = (SocketChannel) key.channel();
+
+                    if (!pending.contains(connection) || !channel.isOpen()) continue;
+
+                    if (finishConnect(connection, channel)) {
+                        complete(connection, channel.socket().getInetAddress(), callback);
+                        pending.remove(connection);
+
+                    } else if (!channel.isOpen() && !onConnectionFailed(selector, resolver,
+                                                                        connection, channel,
+                                                                        callback)) {
+                        pending.remove(connection);
+                    }
+                }
+
+                Resolution resolution;
+                while ((resolution = resolver.poll()) != null) {
+                    PendingConnection connection = resolution.connection;
+
+                    // results of lookups of attempts which already timed out are discarded
+                    if (!pending.contains(connection) || !connection.resolving
+                            || resolution.id != connection.resolution) continue;
+
+                    if (!onResolved(selector, resolver, resolution, callback)) {
+                        pending.remove(connection);
+                    }
+                }
+
+                long now = System.nanoTime();
+                Iterator<PendingConnection> iterator = pending.iterator();
+                while (iterator.hasNext()) {
+                    PendingConnection connection = iterator.next();
+                    boolean stillPending = true;
+
+                    if (connection.waiting) {
+                        if (now - connection.deadline >= 0) {
+                            stillPending = connect(selector, resolver, connection, callback);
+                        }
+
+                    } else if (now - connection.deadline >= 0) {
+                        connection.failure = ProbeResult.Failure.TIMEOUT;
+                        stillPending = retry(selector, resolver, connection, callback);
+
+                    } else if (connection.hasMoreAddresses()
+                            && now - connection.nextAddressTime >= 0) {
+                        stillPending = connectNextAddress(selector, resolver, connection,
+                                                          callback);
+                    }
+
+                    if (!stillPending) {
+                        iterator.remove();
+                    }
+                }
+            }
+
+        } catch (IOException exc) {
+            Logger.error(LOG_TAG, "Error in selector loop. Pending hosts will be reported as unreachable", exc);
+            for (PendingConnection connection : pending) {
+                callback.onProbeCompleted(new ProbeResult(connection.host, false));
+            }
+
+        } finally {
+            resolver.shutdown();
+            for (PendingConnection connection : pending) {
+                closeChannels(connection);
+            }
+            close(selector);
+        }
+    }
+
+    /**
+     * Starts a connection attempt to the host. If the host name is not cached, the attempt
+     * starts when it has been resolved, and the lookup counts against the attempt timeout.
+     * If the attempt fails immediately, a retry gets scheduled.
+     * The callback gets invoked if the host has been completed.
+     * @return true if the host is still pending, false if it has been completed
+     */
+    private boolean connect(Selector selector, Resolver resolver, PendingConnection connection,
+                            Callback callback) {
+        connection.timeout = connection.retries.onAttemptStarted(connectTimeout);
+        connection.waiting = false;
+        connection.attemptStart = System.nanoTime();
+        connection.addresses = null;
+
+        try {
+            InetAddress[] addresses = DnsCache.getInstance().getCached(connection.host.getHost());
+
+            if (addresses == null) {
+                connection.resolving = true;
+                connection.connectStart = connection.attemptStart;
+                connection.resolveTime = 0;
+                connection.deadline = connection.attemptStart + connection.timeout * 1000000L;
+                resolver.resolve(connection);
+                return true;
+            }
+
+            connection.addresses = getAddressesToConnect(addresses);
+        } catch (UnknownHostException exc) {
+            connection.failure = ProbeResult.Failure.UNRESOLVED;
+        }
+
+        return startConnecting(selector, resolver, connection, callback);
+    }
+
+    /**
+     * Starts the connection attempt to a host whose name has been resolved.
+     * @return true if the host is still pending, false if it has been completed
+     */
+    private boolean onResolved(Selector selector, Resolver resolver, Resolution resolution,
+                               Callback callback) {
+        PendingConnection connection = resolution.connection;
+        connection.resolving = false;
+
+        if (resolution.addresses == null) {
+            connection.failure = ProbeResult.Failure.UNRESOLVED;
+        } else {
+            connection.addresses = getAddressesToConnect(resolution.addresses);
+        }
+
+        return startConnecting(selector, resolver, connection, callback);
+    }
+
+    private InetAddress[] getAddressesToConnect(InetAddress[] addresses) {
+        return raceAllAddresses ? interleave(addresses) : new InetAddress[] {addresses[0]};
+    }
+
+    private boolean startConnecting(Selector selector, Resolver resolver,
+                                    PendingConnection connection, Callback callback) {
+        connection.connectStart = System.nanoTime();
+        connection.resolveTime = connection.connectStart - connection.attemptStart;
+        connection.deadline = connection.connectStart + connection.timeout * 1000000L;
+        connection.nextAddress = 0;
+
+        return connectNextAddress(selector, resolver, connection, callback);
+    }
+
+    /**
+     * Starts a connection to the next address of the host. Addresses which fail immediately
+     * are skipped. If there are no more addresses and no pending connections, a retry gets
+     * scheduled. The callback gets invoked if the host has been completed.
+     * @return true if the host is still pending, false if it has been completed
+     */
+    private boolean connectNextAddress(Selector selector, Resolver resolver,
+                                       PendingConnection connection, Callback callback) {
+        while (connection.hasMoreAddresses()) {
+            InetAddress address = connection.addresses[connection.nextAddress++];
+            SocketChannel channel = null;
+
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+
+                if (channel.connect(new InetSocketAddress(address, connection.host.getPort()))) {
+                    close(channel);
+                    complete(connection, address, callback);
+                    return false;
+                }
+
+                channel.register(selector, SelectionKey.OP_CONNECT, connection);
+                connection.channels.add(channel);
+                connection.nextAddressTime = System.nanoTime()
+                                             + CONNECTION_ATTEMPT_DELAY * 1000000L;
+                return true;
+
+            } catch (Exception exc) {
+                connection.failure = ProbeResult.Failure.of(exc);
+                close(channel);
+            }
+        }
+
+        return !connection.channels.isEmpty() || retry(selector, resolver, connection, callback);
+    }
+
+    /**
+     * Handles a failed connection to one of the addresses of the host. The next address is
+     * tried immediately, without waiting for the connection attempt delay.
+     * @return true if the host is still pending, false if it has been completed
+     */
+    private boolean onConnectionFailed(Selector selector, Resolver resolver,
+                                       PendingConnection connection, SocketChannel channel,
+                                       Callback callback) {
+        connection.channels.remove(channel);
+
+        if (connection.hasMoreAddresses()) {
+            return connectNextAddress(selector, resolver, connection, callback);
+        }
+
+        return !connection.channels.isEmpty() || retry(selector, resolver, connection, callback);
+    }
+
+    /**
+     * Schedules the next connection attempt to the host, after a failed one. If no other
+     * attempts can be made, the host is completed as unreachable.
+     * @return true if the host is still pending, false if it has been completed
+     */
+    private boolean retry(Selector selector, Resolver resolver, PendingConnection connection,
+                          Callback callback) {
+        closeChannels(connection);
+        connection.addresses = null;
+        connection.resolving = false;
+        long delay = connection.retries.getNextDelay();
+
+        if (delay < 0) {
+            callback.onProbeCompleted(getResult(connection, null));
+            return false;
+        }
+
+        if (delay == 0) {
+            return connect(selector, resolver, connection, callback);
+        }
+
+        connection.waiting = true;
+        connection.deadline = System.nanoTime() + delay * 1000000L;
+        return true;
+    }
+
+    private void complete(PendingConnection connection, InetAddress address, Callback callback) {
+        closeChannels(connection);
+        callback.onProbeCompleted(getResult(connection, address));
+    }
+
+    private ProbeResult getResult(PendingConnection connection, InetAddress address) {
+        return new ProbeResult(connection.host, address != null, connection.resolveTime,
+                               System.nanoTime() - connection.connectStart, address,
+                               connection.retries.getAttempts(), connection.failure);
+    }
+
+    /**
+     * Orders addresses alternating between address families, starting with the family of the
+     * first address returned by the resolver.
+     */
+    static InetAddress[] interleave(InetAddress[] addresses) {
+        if (addresses.length < 2) return addresses;
+
+        boolean firstIsIPv6 = addresses[0] instanceof Inet6Address;
+        List<InetAddress> preferred = new ArrayList<>(addresses.length);
+        List<InetAddress> other = new ArrayList<>(addresses.length);
+
+        for (InetAddress address : addresses) {
+            if ((address instanceof Inet6Address) == firstIsIPv6) {
+                preferred.add(address);
+            } else {
+                other.add(address);
+            }
+        }
+
+        InetAddress[] interleaved = new InetAddress[addresses.length];
+        int index = 0;
+
+        for (int i = 0; i < Math.max(preferred.size(), other.size()); i++) {
+            if (i < preferred.size()) interleaved[index++] = preferred.get(i);
+            if (i < other.size()) interleaved[index++] = other.get(i);
+        }
+
+        return interleaved;
+    }
+
+    /**
+     * Completes a pending connection. If the connection attempt failed, the channel gets closed.
+     * @return true if the connection has been established
+     */
+    private boolean finishConnect(PendingConnection connection, SocketChannel channel) {
+        try {
+            return channel.finishConnect();
+        } catch (Exception exc) {
+            connection.failure = ProbeResult.Failure.of(exc);
+            close(channel);
+            return false;
+        }
+    }
+
+    private long getMillisToNearestDeadline(Set<PendingConnection> pending) {
+        long now = System.nanoTime();
+        long nearest = Long.MAX_VALUE;
+
+        for (PendingConnection connection : pending) {
+            nearest = Math.min(nearest, connection.deadline - now);
+
+            if (!connection.waiting && connection.hasMoreAddresses()) {
+                nearest = Math.min(nearest, connection.nextAddressTime - now);
+            }
+        }
+
+        // zero means wait forever for a selector, so wait at least one millisecond
+        return Math.max(1, nearest / 1000000L);
+    }
+
+    private void closeChannels(PendingConnection connection) {
+        for (SocketChannel channel : connection.channels) {
+            close(channel);
+        }
+
+        connection.channels.clear();
+    }
+
+    private void close(Selector selector) {
+        try {
+            selector.close();
+        } catch (Exception exc) {
+            Logger.debug(LOG_TAG, "Error while closing selector.");
+        }
+    }
+
+    private void close(Closeable closeable) {
+        if (closeable == null) return;
+
+        try {
+            closeable.close();
+        } catch (Exception exc) {
+            Logger.debug(LOG_TAG, "Error while closing channel.");
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package net.gotev.hostmonitor;
+
+/**
+ * Represents the status of a monitored host. Statuses are kept in the {@link StatusTable},
+ * so objects of this class are only used to pass them around.
+ * @author gotev (Aleksandar Gotev)
+ */
+class Status {
+    private boolean reachable;
+    private ConnectionType connectionType;
+    private long latency;
+    private long checkTime;
+    private int checkInterval;
+    private int adaptiveCheckInterval;
+    private int pendingResults;
+
+    public Status() {
+        reachable = true;
+        connectionType = ConnectionType.NONE;
+        latency = -1;
+    }
+
+    public Status(boolean reachable, ConnectionType connectionType) {
+        this(reachable, connectionType, -1, System.currentTimeMillis());
+    }
+
+    /**
+     * Creates a copy of another status.
+     * @param other status to copy
+     */
+    public Status(Status other) {
+        this(other.reachable, other.connectionType, other.latency, other.checkTime);
+        this.checkInterval = other.checkInterval;
+        this.adaptiveCheckInterval = other.adaptiveCheckInterval;
+        this.pendingResults = other.pendingResults;
+    }
+
+    /**
+     * Creates a new status.
+     * @param reachable true if the host is reachable
+     * @param connectionType connection type used to check the host
+     * @param latency connection latency in milliseconds, or -1 if the host is not reachable
+     * @param checkTime time of the check, in milliseconds since epoch
+     */
+    public Status(boolean reachable, ConnectionType connectionType, long latency, long checkTime) {
+        this.reachable = reachable;
+        this.connectionType = connectionType;
+        this.latency = latency;
+        this.checkTime = checkTime;
+    }
+
+    public boolean isReachable() {
+        return reachable;
+    }
+
+    public void setReachable(boolean reachable) {
+        this.reachable = reachable;
+    }
+
+    public ConnectionType getConnectionType() {
+        return connectionType;
+    }
+
+    public void setConnectionType(ConnectionType connectionType) {
+        this.connectionType = connectionType;
+    }
+
+    public long getLatency() {
+        return latency;
+    }
+
+    public void setLatency(long latency) {
+        this.latency = latency;
+    }
+
+    public long getCheckTime() {
+        return checkTime;
+    }
+
+    public void setCheckTime(long checkTime) {
+        this.checkTime = checkTime;
+    }
+
+    /**
+     * Gets the check interval of the host.
+     * @return check interval in milliseconds, or 0 if the global check interval is used
+     */
+    public int getCheckInterval() {
+        return checkInterval;
+    }
+
+    public void setCheckInterval(int checkInterval) {
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * Gets the current adaptive check interval of the host.
+     * @return check interval in milliseconds, or 0 if the adaptive check interval is not used
+     */
+    public int getAdaptiveCheckInterval() {
+        return adaptiveCheckInterval;
+    }
+
+    public void setAdaptiveCheckInterval(int adaptiveCheckInterval) {
+        this.adaptiveCheckInterval = adaptiveCheckInterval;
+    }
+
+    /**
+     * Gets the number of consecutive check results which disagree with the reachability of
+     * this status, but are not enough yet to commit the transition.
+     * @return number of pending results
+     */
+    public int getPendingResults() {
+        return pendingResults;
+    }
+
+    public void setPendingResults(int pendingResults) {
+        this.pendingResults = pendingResults;
+    }
+
+    /**
+     * Counts a check result which disagrees with the reachability of this status.
+     * @param threshold number of consecutive disagreeing results needed to commit the transition
+     * @return the number of results pending the transition, or 0 if the transition has to be
+     * committed
+     */
+    public int getNextPendingResults(int threshold) {
+        return pendingResults + 1 < threshold ? pendingResults + 1 : 0;
+    }
+
+    /**
+     * Calculates the adaptive check interval which follows this status. It restarts from the
+     * minimum when the status changes, and otherwise grows by the growth factor up to the
+     * maximum.
+     * @param statusChanged true if the check changed this status
+     * @param minInterval minimum check interval in milliseconds
+     * @param maxInterval maximum check interval in milliseconds
+     * @param growthFactor factor by which the interval grows after each stable check
+     * @return the next adaptive check interval in milliseconds
+     */
+    public int getNextAdaptiveCheckInterval(boolean statusChanged, int minInterval,
+                                            int maxInterval, float growthFactor) {
+        if (statusChanged || adaptiveCheckInterval <= 0) return minInterval;
+
+        double next = Math.ceil(adaptiveCheckInterval * (double) growthFactor);
+        return (int) Math.max(minInterval, Math.min(maxInterval, next));
+    }
+
+    /**
+     * Checks if the latency differs from the one of another status by at least the given
+     * threshold. Latencies are compared only if the host is reachable in both statuses.
+     * @param other status to compare with
+     * @param threshold threshold in milliseconds (0 means latency changes are ignored)
+     * @return true if the latency changed beyond the threshold
+     */
+    public boolean latencyChanged(Status other, int threshold) {
+        return other != null && latencyChanged(other.reachable, other.latency, threshold);
+    }
+
+    /**
+     * Checks if the latency differs from the given one by at least the given threshold,
+     * without the need to create a status to compare with.
+     * @param otherReachable reachability to compare with
+     * @param otherLatency latency to compare with, in milliseconds
+     * @param threshold threshold in milliseconds (0 means latency changes are ignored)
+     * @return true if the latency changed beyond the threshold
+     */
+    public boolean latencyChanged(boolean otherReachable, long otherLatency, int threshold) {
+        return threshold > 0 && reachable && otherReachable && latency >= 0 && otherLatency >= 0
+                && Math.abs(latency - otherLatency) >= threshold;
+    }
+
+    /**
+     * Two statuses are equal if they have the same reachability and connection type.
+     * Latency, check time, check intervals and pending results are not considered.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Status status = (Status) o;
+
+        return reachable == status.reachable && connectionType == status.connectionType;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (reachable ? 1 : 0);
+        result = 27 * result + connectionType.hashCode();
+        return result;
+    }
+}
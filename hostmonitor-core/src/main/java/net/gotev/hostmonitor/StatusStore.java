@@ -0,0 +1,33 @@
+package net.gotev.hostmonitor;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Persists the monitored hosts and their last known status, which are kept in a
+ * {@link StatusTable}. Implementations receive only the entries which changed since the
+ * last write.
+ * @author gotev (Aleksandar Gotev)
+ */
+interface StatusStore {
+
+    /**
+     * Loads all the persisted hosts and their status, by putting them in the given table.
+     * @param table table to fill
+     */
+    void load(StatusTable table);
+
+    /**
+     * Removes the given hosts and then persists the statuses of the given ids, which are read
+     * from the table. A host can be in both, if it has been removed and added again.
+     * @param table table with the statuses
+     * @param changed ids of the hosts which have been added or changed
+     * @param removed hosts which are not monitored anymore
+     */
+    void write(StatusTable table, BitSet changed, Collection<Host> removed);
+
+    /**
+     * Removes all the persisted hosts.
+     */
+    void clear();
+}
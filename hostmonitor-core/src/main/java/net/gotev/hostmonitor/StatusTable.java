@@ -0,0 +1,571 @@
+package net.gotev.hostmonitor;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide table of the monitored hosts and their status. It's the only copy of the
+ * statuses kept in memory: the check reads and writes it by host id, the queries read it from
+ * any thread without locking and the {@link StatusStore} persists its changes.
+ * <p>
+ * Hosts are interned to int ids by a {@link HostRegistry} and their statuses are packed in
+ * primitive arrays indexed by id, so the table has no objects per host other than the host
+ * itself. {@link Status} and {@link ReachabilityStatus} objects are created only when needed,
+ * and the check reads the statuses into a reused {@link Status}.
+ * Writers are serialized and bump a version before and after changing an entry, so readers
+ * never block and retry if they have read an entry while it was being changed.
+ * <p>
+ * The ids of the changed hosts and the removed hosts are tracked until the changes are
+ * persisted with {@link #flush(StatusStore)}.
+ * @author gotev (Aleksandar Gotev)
+ */
+class StatusTable {
+
+    private static final String LOG_TAG = StatusTable.class.getSimpleName();
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // layout of the packed state of a host: latency + 1 in the low 32 bits, then the
+    // connection type ordinal + 1 in the next 8 bits, the reachable flag and the pending
+    // results in the high 15 bits. A state of 0 means that the id is not used
+    private static final long LATENCY_MASK = 0xFFFFFFFFL;
+    private static final int CONNECTION_TYPE_SHIFT = 32;
+    private static final long CONNECTION_TYPE_MASK = 0xFFL;
+    private static final long REACHABLE_FLAG = 1L << 40;
+    private static final int PENDING_RESULTS_SHIFT = 48;
+    private static final int MAX_PENDING_RESULTS = 0x7FFF;
+
+    // layout of the packed check intervals of a host: the check interval in the high 32 bits
+    // and the adaptive check interval in the low 32 bits
+    private static final int CHECK_INTERVAL_SHIFT = 32;
+    private static final long ADAPTIVE_CHECK_INTERVAL_MASK = 0xFFFFFFFFL;
+
+    private static final ConnectionType[] CONNECTION_TYPES = ConnectionType.values();
+
+    private static class SingletonHolder {
+        private static final StatusTable instance = new StatusTable();
+    }
+
+    private final HostRegistry mRegistry = new HostRegistry();
+    private volatile AtomicLongArray mStates = new AtomicLongArray(INITIAL_CAPACITY);
+    private volatile AtomicLongArray mCheckTimes = new AtomicLongArray(INITIAL_CAPACITY);
+    private volatile AtomicLongArray mCheckIntervals = new AtomicLongArray(INITIAL_CAPACITY);
+
+    // odd while a writer is changing an entry
+    private volatile int mVersion;
+
+    // true once the table has been filled with the persisted statuses
+    private volatile boolean mLoaded;
+
+    // changes not persisted yet, guarded by this
+    private final BitSet mChangedIds = new BitSet();
+    private final Set<Host> mRemovedHosts = new HashSet<>();
+
+    private final Collection<Host> mHosts = new AbstractCollection<Host>() {
+        @Override
+        public Iterator<Host> iterator() {
+            return new HostIterator();
+        }
+
+        @Override
+        public int size() {
+            return mRegistry.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Host && getId((Host) o) >= 0;
+        }
+    };
+
+    /**
+     * Creates an empty table. Outside of tests use {@link #getInstance()}.
+     */
+    StatusTable() { }
+
+    static StatusTable getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    /**
+     * Checks if the table has been filled with the persisted statuses.
+     * @return true if loaded
+     */
+    boolean isLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * Gets the number of hosts in the table.
+     */
+    int size() {
+        return mRegistry.size();
+    }
+
+    /**
+     * Gets the upper bound of the host ids, to iterate over them.
+     * @return all the host ids are lower than this value
+     */
+    int getLimit() {
+        return mRegistry.getLimit();
+    }
+
+    /**
+     * Gets the monitored hosts.
+     * @return unmodifiable live view of the hosts. Like a concurrent collection, its iterators
+     * may or may not reflect the changes made while iterating
+     */
+    Collection<Host> getHosts() {
+        return mHosts;
+    }
+
+    /**
+     * Gets the id of a host.
+     * @param host host
+     * @return id, or -1 if the host is not monitored
+     */
+    int getId(Host host) {
+        while (true) {
+            int version = mVersion;
+
+            if ((version & 1) == 0) {
+                int id = mRegistry.getId(host);
+
+                if (version == mVersion) {
+                    return id;
+                }
+            }
+
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Gets the host which has the given id.
+     * @param id id
+     * @return host, or null if the id is not used
+     */
+    Host getHost(int id) {
+        return mRegistry.getHost(id);
+    }
+
+    /**
+     * Fills the table with the statuses persisted in a store, replacing all its entries.
+     * @param store store which calls {@link #put(Host, Status)} for each persisted host
+     */
+    synchronized void load(StatusStore store) {
+        reset();
+        store.load(this);
+
+        mChangedIds.clear();
+        mRemovedHosts.clear();
+        mLoaded = true;
+    }
+
+    /**
+     * Empties the table. It has to be loaded again before being used.
+     */
+    synchronized void clear() {
+        mLoaded = false;
+        reset();
+    }
+
+    /**
+     * Adds a host or replaces all the fields of its status.
+     * @param host host
+     * @param status status
+     * @return id of the host
+     */
+    synchronized int put(Host host, Status status) {
+        int id = mRegistry.getId(host);
+
+        if (id < 0) {
+            mVersion++;
+
+            id = mRegistry.register(host);
+
+            if (id >= mStates.length()) {
+                int capacity = mStates.length() * 2;
+                mStates = grow(mStates, capacity);
+                mCheckTimes = grow(mCheckTimes, capacity);
+                mCheckIntervals = grow(mCheckIntervals, capacity);
+            }
+
+            mVersion++;
+        }
+
+        write(id, status);
+        return id;
+    }
+
+    /**
+     * Replaces all the fields of the status of a host, if the id still belongs to it.
+     * @param id id of the host
+     * @param host host
+     * @param status status
+     * @return true if updated, false if the host has been removed in the meantime
+     */
+    synchronized boolean update(int id, Host host, Status status) {
+        if (!host.equals(mRegistry.getHost(id))) return false;
+
+        write(id, status);
+        return true;
+    }
+
+    /**
+     * Removes a host.
+     * @param host host
+     */
+    synchronized void remove(Host host) {
+        mVersion++;
+
+        int id = mRegistry.unregister(host);
+
+        if (id >= 0) {
+            mStates.set(id, 0);
+            mCheckTimes.set(id, 0);
+            mCheckIntervals.set(id, 0);
+        }
+
+        mVersion++;
+
+        if (id >= 0) {
+            mChangedIds.clear(id);
+            mRemovedHosts.add(host);
+        }
+    }
+
+    /**
+     * Reads the status of a host, without creating any object.
+     * @param id id of the host
+     * @param status status in which all the fields are copied
+     * @return true if read, false if the id is not used
+     */
+    boolean read(int id, Status status) {
+        while (true) {
+            int version = mVersion;
+
+            if ((version & 1) == 0) {
+                AtomicLongArray states = mStates;
+                AtomicLongArray checkTimes = mCheckTimes;
+                AtomicLongArray checkIntervals = mCheckIntervals;
+                long state = 0;
+                long checkTime = 0;
+                long intervals = 0;
+
+                if (id >= 0 && id < states.length() && id < checkTimes.length()
+                        && id < checkIntervals.length()) {
+                    state = states.get(id);
+                    checkTime = checkTimes.get(id);
+                    intervals = checkIntervals.get(id);
+                }
+
+                if (version == mVersion) {
+                    if (state == 0) return false;
+
+                    unpack(state, checkTime, intervals, status);
+                    return true;
+                }
+            }
+
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Gets the check interval of a host, without reading all its status.
+     * @param id id of the host
+     * @return check interval in milliseconds, or 0 if the global check interval is used
+     */
+    int getCheckInterval(int id) {
+        return (int) (readCheckIntervals(id) >>> CHECK_INTERVAL_SHIFT);
+    }
+
+    /**
+     * Gets the current adaptive check interval of a host, without reading all its status.
+     * @param id id of the host
+     * @return check interval in milliseconds, or 0 if the adaptive check interval is not used
+     */
+    int getAdaptiveCheckInterval(int id) {
+        return (int) (readCheckIntervals(id) & ADAPTIVE_CHECK_INTERVAL_MASK);
+    }
+
+    private long readCheckIntervals(int id) {
+        while (true) {
+            int version = mVersion;
+
+            if ((version & 1) == 0) {
+                AtomicLongArray checkIntervals = mCheckIntervals;
+                long intervals = id >= 0 && id < checkIntervals.length()
+                                 ? checkIntervals.get(id) : 0;
+
+                if (version == mVersion) {
+                    return intervals;
+                }
+            }
+
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Gets a copy of the status of a host.
+     * @param host host
+     * @return status, or null if the host is not monitored
+     */
+    Status getStatus(Host host) {
+        Status status = new Status();
+        int id = getId(host);
+        return id >= 0 && read(id, status) ? status : null;
+    }
+
+    /**
+     * Checks if there are changes which have not been persisted yet.
+     * @return true if there are changes to flush
+     */
+    synchronized boolean hasChanges() {
+        return !mChangedIds.isEmpty() || !mRemovedHosts.isEmpty();
+    }
+
+    /**
+     * Persists the hosts added, updated and removed since the last flush.
+     * @param store store
+     * @return true if there were changes to persist
+     */
+    synchronized boolean flush(StatusStore store) {
+        if (!hasChanges()) return false;
+
+        if (Logger.isEnabled(Logger.LogLevel.DEBUG)) {
+            Logger.debug(LOG_TAG, "saving %d changed and %d removed hosts",
+                         mChangedIds.cardinality(), mRemovedHosts.size());
+        }
+
+        store.write(this, mChangedIds, mRemovedHosts);
+        mChangedIds.clear();
+        mRemovedHosts.clear();
+        return true;
+    }
+
+    /**
+     * Persists all the hosts, for example to fill a new store.
+     * @param store store
+     */
+    synchronized void flushAll(StatusStore store) {
+        BitSet ids = new BitSet();
+
+        for (int id = 0; id < mRegistry.getLimit(); id++) {
+            if (mRegistry.getHost(id) != null) {
+                ids.set(id);
+            }
+        }
+
+        store.write(this, ids, Collections.<Host>emptySet());
+        mChangedIds.clear();
+        mRemovedHosts.clear();
+    }
+
+    /**
+     * Gets the status of a host.
+     * @param host host
+     * @return status, or null if the host is not monitored
+     */
+    ReachabilityStatus get(Host host) {
+        while (true) {
+            int version = mVersion;
+
+            if ((version & 1) == 0) {
+                int id = mRegistry.getId(host);
+                long state = 0;
+                long checkTime = 0;
+
+                if (id >= 0) {
+                    AtomicLongArray states = mStates;
+                    AtomicLongArray checkTimes = mCheckTimes;
+
+                    if (id < states.length() && id < checkTimes.length()) {
+                        state = states.get(id);
+                        checkTime = checkTimes.get(id);
+                    }
+                }
+
+                if (version == mVersion) {
+                    return state == 0 ? null : unpack(host, state, checkTime);
+                }
+            }
+
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Gets the statuses of all the monitored hosts. Like a concurrent map iteration, each
+     * status is consistent, but changes made while iterating may or may not be included.
+     * @return unmodifiable list of the statuses
+     */
+    List<ReachabilityStatus> snapshot() {
+        int limit = mRegistry.getLimit();
+        List<ReachabilityStatus> statuses = new ArrayList<>(mRegistry.size());
+
+        for (int id = 0; id < limit; id++) {
+            ReachabilityStatus status = get(id);
+
+            if (status != null) {
+                statuses.add(status);
+            }
+        }
+
+        return Collections.unmodifiableList(statuses);
+    }
+
+    private ReachabilityStatus get(int id) {
+        while (true) {
+            int version = mVersion;
+
+            if ((version & 1) == 0) {
+                Host host = mRegistry.getHost(id);
+                AtomicLongArray states = mStates;
+                AtomicLongArray checkTimes = mCheckTimes;
+                long state = 0;
+                long checkTime = 0;
+
+                if (host != null && id < states.length() && id < checkTimes.length()) {
+                    state = states.get(id);
+                    checkTime = checkTimes.get(id);
+                }
+
+                if (version == mVersion) {
+                    return state == 0 ? null : unpack(host, state, checkTime);
+                }
+            }
+
+            Thread.yield();
+        }
+    }
+
+    private void write(int id, Status status) {
+        long state = pack(status);
+        long checkTime = status.getCheckTime();
+        long intervals = packCheckIntervals(status);
+
+        if (mStates.get(id) == state && mCheckTimes.get(id) == checkTime
+                && mCheckIntervals.get(id) == intervals) return;
+
+        mVersion++;
+        mStates.set(id, state);
+        mCheckTimes.set(id, checkTime);
+        mCheckIntervals.set(id, intervals);
+        mVersion++;
+
+        mChangedIds.set(id);
+    }
+
+    private void reset() {
+        mVersion++;
+        mRegistry.clear();
+        mStates = new AtomicLongArray(INITIAL_CAPACITY);
+        mCheckTimes = new AtomicLongArray(INITIAL_CAPACITY);
+        mCheckIntervals = new AtomicLongArray(INITIAL_CAPACITY);
+        mVersion++;
+
+        mChangedIds.clear();
+        mRemovedHosts.clear();
+    }
+
+    private static long pack(Status status) {
+        // latencies which don't fit in 32 bits are capped, -1 means unreachable
+        long latency = Math.min(Math.max(status.getLatency(), -1), LATENCY_MASK - 1);
+        ConnectionType connectionType = status.getConnectionType() == null
+                                        ? ConnectionType.NONE : status.getConnectionType();
+        long pendingResults = Math.min(Math.max(status.getPendingResults(), 0),
+                                       MAX_PENDING_RESULTS);
+        long state = (latency + 1)
+                | ((long) (connectionType.ordinal() + 1) << CONNECTION_TYPE_SHIFT)
+                | (pendingResults << PENDING_RESULTS_SHIFT);
+
+        return status.isReachable() ? state | REACHABLE_FLAG : state;
+    }
+
+    private static long packCheckIntervals(Status status) {
+        return ((long) Math.max(status.getCheckInterval(), 0) << CHECK_INTERVAL_SHIFT)
+                | (Math.max(status.getAdaptiveCheckInterval(), 0) & ADAPTIVE_CHECK_INTERVAL_MASK);
+    }
+
+    private static ConnectionType unpackConnectionType(long state) {
+        int connectionType = (int) ((state >>> CONNECTION_TYPE_SHIFT) & CONNECTION_TYPE_MASK);
+        return CONNECTION_TYPES[connectionType - 1];
+    }
+
+    private static void unpack(long state, long checkTime, long intervals, Status status) {
+        status.setReachable((state & REACHABLE_FLAG) != 0);
+        status.setConnectionType(unpackConnectionType(state));
+        status.setLatency((state & LATENCY_MASK) - 1);
+        status.setCheckTime(checkTime);
+        status.setPendingResults((int) (state >>> PENDING_RESULTS_SHIFT) & MAX_PENDING_RESULTS);
+        status.setCheckInterval((int) (intervals >>> CHECK_INTERVAL_SHIFT));
+        status.setAdaptiveCheckInterval((int) (intervals & ADAPTIVE_CHECK_INTERVAL_MASK));
+    }
+
+    private static ReachabilityStatus unpack(Host host, long state, long checkTime) {
+        return new ReachabilityStatus(host, (state & REACHABLE_FLAG) != 0,
+                                      unpackConnectionType(state),
+                                      (state & LATENCY_MASK) - 1, checkTime);
+    }
+
+    private static AtomicLongArray grow(AtomicLongArray array, int capacity) {
+        AtomicLongArray grown = new AtomicLongArray(capacity);
+
+        for (int i = 0; i < array.length(); i++) {
+            grown.set(i, array.get(i));
+        }
+
+        return grown;
+    }
+
+    private class HostIterator implements Iterator<Host> {
+
+        private int mNextId;
+        private Host mNext = advance();
+
+        private Host advance() {
+            int limit = mRegistry.getLimit();
+
+            while (mNextId < limit) {
+                Host host = mRegistry.getHost(mNextId++);
+
+                if (host != null) {
+                    return host;
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mNext != null;
+        }
+
+        @Override
+        public Host next() {
+            if (mNext == null) throw new NoSuchElementException();
+
+            Host next = mNext;
+            mNext = advance();
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
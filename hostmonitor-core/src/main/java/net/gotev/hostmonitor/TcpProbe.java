@@ -0,0 +1,16 @@
+package net.gotev.hostmonitor;
+
+import java.net.Socket;
+
+/**
+ * Probe which considers a host healthy as soon as the TCP connection is established.
+ * It's the default probe.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class TcpProbe implements Probe {
+
+    @Override
+    public boolean check(Socket socket, String host, int timeout) {
+        return true;
+    }
+}
@@ -0,0 +1,68 @@
+package net.gotev.hostmonitor;
+
+import java.io.IOException;
+import java.net.Socket;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Probe which considers a host healthy if it completes a TLS handshake with a certificate
+ * trusted by the device and valid for the host name. No application data is exchanged.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class TlsHandshakeProbe implements Probe {
+
+    @Override
+    public boolean check(Socket socket, String host, int timeout) throws IOException {
+        SSLSocket sslSocket = startHandshake(socket, host, timeout);
+        sslSocket.close();
+        return true;
+    }
+
+    /**
+     * Performs a TLS handshake on a connected socket, verifying that the certificate is
+     * valid for the host name. The host name is verified by the handshake itself, with HTTPS
+     * endpoint identification. Platforms which don't support it (Android before 7.0) use
+     * the default hostname verifier instead, which on a plain JVM rejects every host.
+     * @param socket connected socket
+     * @param host host name
+     * @param timeout maximum time to wait for each read, in milliseconds
+     * @return TLS socket layered over the given one. Closing it closes the given socket too
+     * @throws IOException if the handshake fails or the certificate is not valid for the host
+     */
+    static SSLSocket startHandshake(Socket socket, String host, int timeout) throws IOException {
+        SSLSocketFactory factory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+        SSLSocket sslSocket = (SSLSocket) factory.createSocket(socket, host, socket.getPort(), true);
+        sslSocket.setSoTimeout(timeout);
+
+        boolean endpointIdentification = setEndpointIdentification(sslSocket);
+        sslSocket.startHandshake();
+
+        if (!endpointIdentification
+                && !HttpsURLConnection.getDefaultHostnameVerifier().verify(host, sslSocket.getSession())) {
+            sslSocket.close();
+            throw new IOException("Certificate not valid for " + host);
+        }
+
+        return sslSocket;
+    }
+
+    /**
+     * Enables HTTPS endpoint identification, so that the handshake fails if the certificate
+     * is not valid for the host name.
+     * @return true if enabled, false if not supported by the platform
+     */
+    private static boolean setEndpointIdentification(SSLSocket sslSocket) {
+        try {
+            SSLParameters parameters = sslSocket.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            sslSocket.setSSLParameters(parameters);
+            return true;
+        } catch (NoSuchMethodError error) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package net.gotev.hostmonitor;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the statuses written by a {@link BinaryStatusStore} are read back by a new store
+ * on the same file, as happens when the process is restarted.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class BinaryStatusStoreTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+
+    @Before
+    public void setUp() {
+        Logger.setLogLevel(Logger.LogLevel.OFF);
+        mFile = new File(mFolder.getRoot(), BinaryStatusStore.FILE_NAME);
+    }
+
+    @Test
+    public void writtenStatusesAreLoadedByANewStore() {
+        Map<Host, Status> statuses = new HashMap<>();
+        statuses.put(new Host("example.com", 443), newStatus(true, ConnectionType.WIFI, 42));
+        statuses.put(new Host("10.0.0.1", 8080), newStatus(false, ConnectionType.MOBILE, -1));
+
+        write(new BinaryStatusStore(mFile), statuses, Collections.<Host>emptySet());
+
+        assertStatuses(statuses, load(new BinaryStatusStore(mFile)));
+    }
+
+    @Test
+    public void updatedAndRemovedHostsArePersisted() {
+        Host updated = new Host("example.com", 443);
+        Host removed = new Host("example.org", 80);
+
+        Map<Host, Status> statuses = new HashMap<>();
+        statuses.put(updated, newStatus(true, ConnectionType.WIFI, 42));
+        statuses.put(removed, newStatus(true, ConnectionType.WIFI, 10));
+
+        BinaryStatusStore store = new BinaryStatusStore(mFile);
+        write(store, statuses, Collections.<Host>emptySet());
+
+        Map<Host, Status> changes = new HashMap<>();
+        changes.put(updated, newStatus(false, ConnectionType.MOBILE, -1));
+        write(store, changes, Collections.singleton(removed));
+
+        assertStatuses(changes, load(new BinaryStatusStore(mFile)));
+    }
+
+    @Test
+    public void fileGrowsBeyondItsInitialCapacity() {
+        Map<Host, Status> statuses = new HashMap<>();
+
+        for (int i = 0; i < 100; i++) {
+            statuses.put(new Host("host" + i + ".example.com", 1000 + i),
+                         newStatus(i % 2 == 0, ConnectionType.WIFI, i));
+        }
+
+        write(new BinaryStatusStore(mFile), statuses, Collections.<Host>emptySet());
+
+        assertStatuses(statuses, load(new BinaryStatusStore(mFile)));
+    }
+
+    @Test
+    public void corruptedRecordIsDiscarded() throws Exception {
+        Host valid = new Host("example.com", 443);
+        Host corrupted = new Host("example.org", 80);
+
+        Map<Host, Status> statuses = new HashMap<>();
+        statuses.put(valid, newStatus(true, ConnectionType.WIFI, 42));
+
+        BinaryStatusStore store = new BinaryStatusStore(mFile);
+        write(store, statuses, Collections.<Host>emptySet());
+        write(store, Collections.singletonMap(corrupted, newStatus(true, ConnectionType.WIFI, 1)),
+              Collections.<Host>emptySet());
+
+        // overwrites the host length of the second record. The record size is in the header,
+        // which is 16 bytes long, and the host length follows the flags and connection type
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.seek(8);
+            int recordSize = file.readInt();
+            file.seek(16 + recordSize + 2);
+            file.writeShort(-1);
+        } finally {
+            file.close();
+        }
+
+        assertStatuses(statuses, load(new BinaryStatusStore(mFile)));
+    }
+
+    @Test
+    public void clearDeletesTheFile() {
+        BinaryStatusStore store = new BinaryStatusStore(mFile);
+        write(store, Collections.singletonMap(new Host("example.com", 443),
+                                              newStatus(true, ConnectionType.WIFI, 42)),
+              Collections.<Host>emptySet());
+        assertTrue(mFile.exists());
+
+        store.clear();
+
+        assertFalse(mFile.exists());
+        assertTrue(load(new BinaryStatusStore(mFile)).isEmpty());
+    }
+
+    private static Status newStatus(boolean reachable, ConnectionType connectionType,
+                                    long latency) {
+        Status status = new Status(reachable, connectionType, latency, 1450000000000L + latency);
+        status.setCheckInterval(60000);
+        status.setAdaptiveCheckInterval(120000);
+        status.setPendingResults(1);
+        return status;
+    }
+
+    /**
+     * Writes the given statuses through a status table, as the engine does.
+     */
+    private static void write(BinaryStatusStore store, Map<Host, Status> updated,
+                              Collection<Host> removed) {
+        StatusTable table = new StatusTable();
+        BitSet changed = new BitSet();
+
+        for (Map.Entry<Host, Status> entry : updated.entrySet()) {
+            changed.set(table.put(entry.getKey(), entry.getValue()));
+        }
+
+        store.write(table, changed, removed);
+    }
+
+    private static Map<Host, Status> load(BinaryStatusStore store) {
+        StatusTable table = new StatusTable();
+        table.load(store);
+
+        Map<Host, Status> statuses = new HashMap<>();
+        for (Host host : table.getHosts()) {
+            statuses.put(host, table.getStatus(host));
+        }
+
+        return statuses;
+    }
+
+    private static void assertStatuses(Map<Host, Status> expected, Map<Host, Status> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+
+        for (Map.Entry<Host, Status> entry : expected.entrySet()) {
+            Status expectedStatus = entry.getValue();
+            Status actualStatus = actual.get(entry.getKey());
+
+            assertNotNull(actualStatus);
+            assertEquals(expectedStatus.isReachable(), actualStatus.isReachable());
+            assertEquals(expectedStatus.getConnectionType(), actualStatus.getConnectionType());
+            assertEquals(expectedStatus.getLatency(), actualStatus.getLatency());
+            assertEquals(expectedStatus.getCheckTime(), actualStatus.getCheckTime());
+            assertEquals(expectedStatus.getCheckInterval(), actualStatus.getCheckInterval());
+            assertEquals(expectedStatus.getAdaptiveCheckInterval(),
+                         actualStatus.getAdaptiveCheckInterval());
+            assertEquals(expectedStatus.getPendingResults(), actualStatus.getPendingResults());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package net.gotev.hostmonitor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the retries and the cancellation of {@link BlockingProbe} against loopback hosts:
+ * one port accepts connections and the other one refuses them.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class BlockingProbeTest {
+
+    private static final int CONNECT_TIMEOUT = 1000;
+    private static final long RETRY_DELAY = 5000;
+
+    private ServerSocket mServerSocket;
+    private Host mOpenHost;
+    private Host mRefusedHost;
+
+    @Before
+    public void setUp() throws IOException {
+        Logger.setLogLevel(Logger.LogLevel.OFF);
+
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        mServerSocket = new ServerSocket(0, 50, loopback);
+        mOpenHost = new Host(loopback.getHostAddress(), mServerSocket.getLocalPort());
+
+        // a port which has just been released refuses the connections
+        ServerSocket closedSocket = new ServerSocket(0, 50, loopback);
+        mRefusedHost = new Host(loopback.getHostAddress(), closedSocket.getLocalPort());
+        closedSocket.close();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServerSocket.close();
+    }
+
+    @Test
+    public void openHostIsReachable() {
+        ProbeResult result = newProbe(3, false).probe(mOpenHost);
+
+        assertTrue(result.isReachable());
+        assertEquals(1, result.getAttempts());
+    }
+
+    @Test
+    public void refusedHostIsRetried() {
+        ProbeResult result = new BlockingProbe(CONNECT_TIMEOUT, 3, new FixedRetryPolicy(10), 0,
+                                               false).probe(mRefusedHost);
+
+        assertFalse(result.isReachable());
+        assertEquals(3, result.getAttempts());
+        assertEquals(ProbeResult.Failure.REFUSED, result.getFailure());
+    }
+
+    @Test
+    public void cancelledProbeMakesNoAttempts() {
+        ProbeResult result = newProbe(3, false).probe(mOpenHost, new TcpProbe(), cancelAfter(0));
+
+        assertFalse(result.isReachable());
+        assertEquals(0, result.getAttempts());
+    }
+
+    @Test
+    public void cancellationStopsTheBackoffSleep() {
+        long start = System.nanoTime();
+
+        // not cancelled before the first attempt, then cancelled while waiting for the next one
+        ProbeResult result = newProbe(3, false).probe(mRefusedHost, new TcpProbe(),
+                                                      cancelAfter(2));
+
+        assertFalse(result.isReachable());
+        assertEquals(1, result.getAttempts());
+        assertTrue((System.nanoTime() - start) / 1000000 < RETRY_DELAY);
+    }
+
+    @Test
+    public void raceMakesAllTheAttempts() {
+        ProbeResult result = new BlockingProbe(CONNECT_TIMEOUT, 3, new FixedRetryPolicy(10), 0,
+                                               true).probe(mRefusedHost);
+
+        assertFalse(result.isReachable());
+        assertEquals(3, result.getAttempts());
+    }
+
+    @Test
+    public void raceIsCancelledWhileWaitingForTheNextAttempt() {
+        long start = System.nanoTime();
+
+        ProbeResult result = newProbe(3, true).probe(mRefusedHost, new TcpProbe(),
+                                                     cancelAfter(1));
+
+        assertFalse(result.isReachable());
+        assertTrue((System.nanoTime() - start) / 1000000 < RETRY_DELAY);
+    }
+
+    @Test
+    public void raceReachesOpenHost() {
+        ProbeResult result = newProbe(3, true).probe(mOpenHost);
+
+        assertTrue(result.isReachable());
+        assertEquals(1, result.getAttempts());
+    }
+
+    private static BlockingProbe newProbe(int maxAttempts, boolean raceAllAddresses) {
+        return new BlockingProbe(CONNECT_TIMEOUT, maxAttempts, new FixedRetryPolicy(RETRY_DELAY),
+                                 0, raceAllAddresses);
+    }
+
+    /**
+     * Creates a cancellation check which reports the probe as cancelled from the given check on.
+     */
+    private static BlockingProbe.CancellationCheck cancelAfter(final int checks) {
+        return new BlockingProbe.CancellationCheck() {
+            private int mChecks;
+
+            @Override
+            public boolean isCancelled() {
+                return mChecks++ >= checks;
+            }
+        };
+    }
+}
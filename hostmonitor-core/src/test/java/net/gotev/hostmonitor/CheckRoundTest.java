@@ -0,0 +1,114 @@
+package net.gotev.hostmonitor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that a {@link CheckRound} doesn't add back the hosts removed while checking.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class CheckRoundTest {
+
+    private ServerSocket mServerSocket;
+    private Host mHost;
+
+    private final StatusTable mTable = new StatusTable();
+    private final List<Status> mNotifiedStatuses = new ArrayList<>();
+    private final CheckScheduler mScheduler = new CheckScheduler();
+
+    private final CheckRound.Hosts mHosts = new CheckRound.Hosts() {
+        @Override
+        public Probe getProbe(Host host) {
+            return new TcpProbe();
+        }
+
+        @Override
+        public int getCheckInterval(int id) {
+            return 60000;
+        }
+    };
+
+    private final CheckRound.Listener mListener = new CheckRound.Listener() {
+        @Override
+        public void onStatusChanged(ProbeResult result, Status previousStatus, Status newStatus) {
+            mNotifiedStatuses.add(newStatus);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        Logger.setLogLevel(Logger.LogLevel.OFF);
+
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        mServerSocket = new ServerSocket(0, 50, loopback);
+        mHost = new Host(loopback.getHostAddress(), mServerSocket.getLocalPort());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServerSocket.close();
+    }
+
+    @Test
+    public void removedHostIsNotAddedBack() {
+        CheckRound round = newRound();
+        Collection<Host> hosts = Collections.singletonList(mHost);
+
+        // the host has been removed by another configuration before its result is applied
+        round.check(ConnectionType.WIFI, hosts);
+        round.schedule(hosts, 0);
+
+        assertEquals(0, mTable.size());
+        assertTrue(mNotifiedStatuses.isEmpty());
+        assertNull(mTable.get(mHost));
+        assertEquals(-1, mScheduler.getNextDueTime());
+    }
+
+    @Test
+    public void removedHostIsNotSetUnreachable() {
+        newRound().check(ConnectionType.NONE, Collections.singletonList(mHost));
+
+        assertEquals(0, mTable.size());
+        assertTrue(mNotifiedStatuses.isEmpty());
+        assertNull(mTable.get(mHost));
+    }
+
+    @Test
+    public void monitoredHostIsUpdatedAndScheduled() {
+        mTable.put(mHost, new Status(false, ConnectionType.WIFI));
+        CheckRound round = newRound();
+        Collection<Host> hosts = Collections.singletonList(mHost);
+
+        round.check(ConnectionType.WIFI, hosts);
+        round.schedule(hosts, 0);
+
+        assertTrue(mTable.getStatus(mHost).isReachable());
+        assertEquals(1, mNotifiedStatuses.size());
+        assertNotNull(mTable.get(mHost));
+        assertEquals(60000, mScheduler.getNextDueTime());
+    }
+
+    private CheckRound newRound() {
+        return new CheckRound(new CheckSettings().setMaxAttempts(1).setSocketTimeout(1000),
+                              mTable, mHosts, mListener, mScheduler);
+    }
+}
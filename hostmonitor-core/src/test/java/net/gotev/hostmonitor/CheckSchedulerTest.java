@@ -0,0 +1,103 @@
+package net.gotev.hostmonitor;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests how {@link CheckScheduler} groups the hosts with close due times in the same wake-up.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class CheckSchedulerTest {
+
+    private static final Host FIRST = new Host("first.example.com", 80);
+    private static final Host SECOND = new Host("second.example.com", 80);
+    private static final Host THIRD = new Host("third.example.com", 80);
+    private static final List<Host> HOSTS = Arrays.asList(FIRST, SECOND, THIRD);
+
+    private final CheckScheduler mScheduler = new CheckScheduler();
+
+    @Test
+    public void allHostsAreDueBeforeTheFirstSchedule() {
+        assertHosts(HOSTS, mScheduler.pollDueHosts(HOSTS, 0));
+    }
+
+    @Test
+    public void nextDueTimeIsTheEarliestOne() {
+        mScheduler.schedule(FIRST, 60000, 0);
+        mScheduler.schedule(SECOND, 30000, 0);
+
+        assertEquals(30000, mScheduler.getNextDueTime());
+    }
+
+    @Test
+    public void hostsDueWithinTheGroupingWindowShareTheWakeUp() {
+        mScheduler.schedule(FIRST, 10000, 0);
+        mScheduler.schedule(SECOND, 10000 + CheckScheduler.GROUPING_WINDOW, 0);
+        mScheduler.schedule(THIRD, 10000 + CheckScheduler.GROUPING_WINDOW + 1, 0);
+
+        assertHosts(Arrays.asList(FIRST, SECOND), mScheduler.pollDueHosts(HOSTS, 10000));
+        assertEquals(10000 + CheckScheduler.GROUPING_WINDOW + 1, mScheduler.getNextDueTime());
+    }
+
+    @Test
+    public void noHostIsDueBeforeTheWindow() {
+        mScheduler.schedule(FIRST, 60000, 0);
+
+        assertTrue(mScheduler.pollDueHosts(HOSTS, 60000 - CheckScheduler.GROUPING_WINDOW - 1)
+                             .isEmpty());
+        assertEquals(60000, mScheduler.getNextDueTime());
+    }
+
+    @Test
+    public void schedulingAgainMovesTheHost() {
+        mScheduler.schedule(FIRST, 10000, 0);
+        mScheduler.schedule(FIRST, 60000, 0);
+
+        assertEquals(60000, mScheduler.getNextDueTime());
+        assertHosts(Collections.singletonList(FIRST), mScheduler.pollDueHosts(HOSTS, 60000));
+        assertEquals(-1, mScheduler.getNextDueTime());
+    }
+
+    @Test
+    public void hostsWithZeroIntervalAreNotScheduled() {
+        mScheduler.schedule(FIRST, 10000, 0);
+        mScheduler.schedule(FIRST, 0, 0);
+
+        assertEquals(-1, mScheduler.getNextDueTime());
+        assertTrue(mScheduler.pollDueHosts(HOSTS, 10000).isEmpty());
+    }
+
+    @Test
+    public void hostsNotMonitoredAnymoreAreDiscarded() {
+        mScheduler.schedule(FIRST, 10000, 0);
+        mScheduler.schedule(SECOND, 10000, 0);
+
+        assertHosts(Collections.singletonList(SECOND),
+                    mScheduler.pollDueHosts(Collections.singletonList(SECOND), 10000));
+        assertEquals(-1, mScheduler.getNextDueTime());
+    }
+
+    @Test
+    public void clearRemovesAllTheScheduledHosts() {
+        mScheduler.schedule(FIRST, 10000, 0);
+        mScheduler.schedule(SECOND, 20000, 0);
+
+        mScheduler.clear();
+
+        assertEquals(-1, mScheduler.getNextDueTime());
+        assertTrue(mScheduler.pollDueHosts(HOSTS, 20000).isEmpty());
+    }
+
+    private static void assertHosts(Collection<Host> expected, Collection<Host> actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+    }
+}
@@ -0,0 +1,106 @@
+package net.gotev.hostmonitor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the TTLs of the {@link DnsCache}. IP literals are used for the successful resolutions
+ * and a host in the reserved .invalid domain for the failed ones, so no DNS server is needed.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class DnsCacheTest {
+
+    private static final String LITERAL = "127.0.0.1";
+    private static final String UNKNOWN = "unknown-host.invalid";
+    private static final int TTL = 100; // in milliseconds
+
+    private final DnsCache mCache = DnsCache.getInstance();
+
+    @Before
+    public void setUp() {
+        Logger.setLogLevel(Logger.LogLevel.OFF);
+        mCache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        mCache.setTtl(0, 0);
+        mCache.clear();
+    }
+
+    @Test
+    public void resolutionIsCachedUntilTtlExpires() throws Exception {
+        mCache.setTtl(TTL, 0);
+
+        InetAddress[] addresses = mCache.resolveAll(LITERAL);
+
+        assertSame(addresses, mCache.resolveAll(LITERAL));
+
+        Thread.sleep(TTL * 2);
+
+        assertNotSame(addresses, mCache.resolveAll(LITERAL));
+    }
+
+    @Test
+    public void zeroTtlDisablesCaching() throws Exception {
+        mCache.setTtl(0, 0);
+
+        assertNotSame(mCache.resolveAll(LITERAL), mCache.resolveAll(LITERAL));
+    }
+
+    @Test
+    public void failedResolutionIsCachedUntilNegativeTtlExpires() throws Exception {
+        mCache.setTtl(0, TTL);
+
+        assertFalse(isCachedFailure(resolveUnknown()));
+        assertTrue(isCachedFailure(resolveUnknown()));
+
+        Thread.sleep(TTL * 2);
+
+        assertFalse(isCachedFailure(resolveUnknown()));
+    }
+
+    @Test
+    public void failedResolutionIsNotCachedWithZeroNegativeTtl() throws Exception {
+        mCache.setTtl(TTL, 0);
+
+        resolveUnknown();
+
+        assertFalse(isCachedFailure(resolveUnknown()));
+    }
+
+    @Test
+    public void clearRemovesCachedResolutions() throws Exception {
+        mCache.setTtl(TTL, 0);
+        InetAddress[] addresses = mCache.resolveAll(LITERAL);
+
+        mCache.clear();
+
+        assertNotSame(addresses, mCache.resolveAll(LITERAL));
+    }
+
+    private UnknownHostException resolveUnknown() {
+        try {
+            mCache.resolveAll(UNKNOWN);
+        } catch (UnknownHostException exc) {
+            return exc;
+        }
+
+        fail("The host should not be resolved");
+        return null;
+    }
+
+    private static boolean isCachedFailure(UnknownHostException exc) {
+        return exc.getMessage() != null && exc.getMessage().endsWith("(cached)");
+    }
+}
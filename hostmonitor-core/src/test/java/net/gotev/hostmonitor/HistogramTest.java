@@ -0,0 +1,96 @@
+package net.gotev.hostmonitor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the bucket boundaries and the counters of a {@link Histogram}.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class HistogramTest {
+
+    @Test
+    public void emptyHistogramHasNoValues() {
+        Histogram histogram = new Histogram();
+
+        assertEquals(14, histogram.getBucketCount());
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getSum());
+        assertEquals(0, histogram.getMax());
+
+        for (int bucket = 0; bucket < histogram.getBucketCount(); bucket++) {
+            assertEquals(0, histogram.getBucketValues(bucket));
+        }
+    }
+
+    @Test
+    public void lastBucketHasNoUpperBound() {
+        Histogram histogram = new Histogram();
+
+        assertEquals(1, histogram.getBucketBound(0));
+        assertEquals(10000, histogram.getBucketBound(histogram.getBucketCount() - 2));
+        assertEquals(Long.MAX_VALUE, histogram.getBucketBound(histogram.getBucketCount() - 1));
+    }
+
+    @Test
+    public void upperBoundIsInclusive() {
+        Histogram histogram = new Histogram();
+
+        for (int bucket = 0; bucket < histogram.getBucketCount() - 1; bucket++) {
+            histogram.record(histogram.getBucketBound(bucket));
+        }
+
+        for (int bucket = 0; bucket < histogram.getBucketCount() - 1; bucket++) {
+            assertEquals("bucket " + bucket, 1, histogram.getBucketValues(bucket));
+        }
+
+        assertEquals(0, histogram.getBucketValues(histogram.getBucketCount() - 1));
+    }
+
+    @Test
+    public void valueAboveABoundGoesInTheNextBucket() {
+        Histogram histogram = new Histogram();
+
+        histogram.record(0);
+        histogram.record(2);
+        histogram.record(3);
+        histogram.record(251);
+        histogram.record(10001);
+
+        assertEquals(1, histogram.getBucketValues(0));  // <= 1
+        assertEquals(1, histogram.getBucketValues(1));  // <= 2
+        assertEquals(1, histogram.getBucketValues(2));  // <= 5
+        assertEquals(1, histogram.getBucketValues(8));  // <= 500
+        assertEquals(1, histogram.getBucketValues(13)); // > 10000
+    }
+
+    @Test
+    public void countSumAndMaxIncludeAllTheValues() {
+        Histogram histogram = new Histogram();
+
+        histogram.record(10);
+        histogram.record(40);
+        histogram.record(20000);
+        histogram.record(5);
+
+        assertEquals(4, histogram.getCount());
+        assertEquals(20055, histogram.getSum());
+        assertEquals(20000, histogram.getMax());
+    }
+
+    @Test
+    public void copyIsIndependentOfTheOriginal() {
+        Histogram histogram = new Histogram();
+        histogram.record(10);
+
+        Histogram copy = new Histogram(histogram);
+        histogram.record(1000);
+
+        assertEquals(1, copy.getCount());
+        assertEquals(10, copy.getSum());
+        assertEquals(10, copy.getMax());
+        assertEquals(1, copy.getBucketValues(3));
+        assertEquals(0, copy.getBucketValues(9));
+    }
+}
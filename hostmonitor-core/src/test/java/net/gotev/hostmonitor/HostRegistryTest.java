@@ -0,0 +1,112 @@
+package net.gotev.hostmonitor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the ids assigned by {@link HostRegistry} and the lookups after hosts are unregistered,
+ * which move the entries of the open addressing index.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class HostRegistryTest {
+
+    private final HostRegistry mRegistry = new HostRegistry();
+
+    @Test
+    public void registeredHostsGetDenseIds() {
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, mRegistry.register(newHost(i)));
+        }
+
+        assertEquals(100, mRegistry.size());
+        assertEquals(100, mRegistry.getLimit());
+        assertEquals(42, mRegistry.register(newHost(42)));
+        assertEquals(100, mRegistry.size());
+    }
+
+    @Test
+    public void unregisteredHostIsNotFound() {
+        Host host = newHost(1);
+        int id = mRegistry.register(host);
+
+        assertEquals(id, mRegistry.unregister(host));
+
+        assertEquals(-1, mRegistry.getId(host));
+        assertNull(mRegistry.getHost(id));
+        assertEquals(-1, mRegistry.unregister(host));
+        assertEquals(0, mRegistry.size());
+    }
+
+    @Test
+    public void idsOfUnregisteredHostsAreReused() {
+        for (int i = 0; i < 10; i++) {
+            mRegistry.register(newHost(i));
+        }
+
+        int id = mRegistry.unregister(newHost(3));
+
+        assertEquals(id, mRegistry.register(newHost(10)));
+        assertEquals(10, mRegistry.getLimit());
+    }
+
+    @Test
+    public void lookupsAreConsistentAfterRandomDeletes() {
+        Random random = new Random(42);
+        Map<Host, Integer> expected = new HashMap<>();
+        List<Host> registered = new ArrayList<>();
+
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 100; i++) {
+                Host host = newHost(round * 100 + i);
+                expected.put(host, mRegistry.register(host));
+                registered.add(host);
+            }
+
+            Collections.shuffle(registered, random);
+
+            for (int i = 0; i < 60; i++) {
+                Host host = registered.remove(registered.size() - 1);
+                assertEquals((int) expected.remove(host), mRegistry.unregister(host));
+                assertEquals(-1, mRegistry.getId(host));
+            }
+
+            assertEquals(expected.size(), mRegistry.size());
+
+            for (Map.Entry<Host, Integer> entry : expected.entrySet()) {
+                assertEquals((int) entry.getValue(), mRegistry.getId(entry.getKey()));
+                assertEquals(entry.getKey(), mRegistry.getHost(entry.getValue()));
+            }
+        }
+
+        // freed ids are reused, so ids never grow beyond the most hosts registered at once
+        assertTrue(mRegistry.getLimit() <= expected.size() + 60);
+    }
+
+    @Test
+    public void clearUnregistersAllTheHosts() {
+        for (int i = 0; i < 100; i++) {
+            mRegistry.register(newHost(i));
+        }
+
+        mRegistry.clear();
+
+        assertEquals(0, mRegistry.size());
+        assertEquals(0, mRegistry.getLimit());
+        assertEquals(-1, mRegistry.getId(newHost(1)));
+        assertEquals(0, mRegistry.register(newHost(1)));
+    }
+
+    private static Host newHost(int index) {
+        return new Host("host" + index + ".example.com", 1000 + index % 7);
+    }
+}
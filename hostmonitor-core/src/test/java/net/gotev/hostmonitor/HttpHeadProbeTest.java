@@ -0,0 +1,155 @@
+package net.gotev.hostmonitor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests how {@link HttpHeadProbe} parses the status line sent by a loopback server.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class HttpHeadProbeTest {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final String LOOPBACK = "127.0.0.1";
+    private static final int TIMEOUT = 2000;
+
+    private ServerSocket mServerSocket;
+    private Thread mServer;
+    private volatile String mRequest;
+
+    @Before
+    public void setUp() throws IOException {
+        mServerSocket = new ServerSocket(0, 1, InetAddress.getByName(LOOPBACK));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServerSocket.close();
+
+        if (mServer != null) {
+            mServer.join(TIMEOUT);
+        }
+    }
+
+    @Test
+    public void successfulStatusIsHealthy() throws Exception {
+        assertTrue(check("HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n"));
+        assertEquals("HEAD /health HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n",
+                     mRequest);
+    }
+
+    @Test
+    public void redirectStatusIsHealthy() throws Exception {
+        assertTrue(check("HTTP/1.1 301 Moved Permanently\r\nLocation: /\r\n\r\n"));
+    }
+
+    @Test
+    public void clientErrorStatusIsUnhealthy() throws Exception {
+        assertFalse(check("HTTP/1.1 404 Not Found\r\n\r\n"));
+    }
+
+    @Test
+    public void serverErrorStatusIsUnhealthy() throws Exception {
+        assertFalse(check("HTTP/1.0 503 Service Unavailable\r\n\r\n"));
+    }
+
+    @Test
+    public void informationalStatusIsUnhealthy() throws Exception {
+        assertFalse(check("HTTP/1.1 100 Continue\r\n\r\n"));
+    }
+
+    @Test
+    public void malformedStatusLineIsRejected() throws Exception {
+        assertRejected("SSH-2.0-OpenSSH_7.4\r\n");
+    }
+
+    @Test
+    public void malformedStatusCodeIsRejected() throws Exception {
+        assertRejected("HTTP/1.1 2x0 OK\r\n\r\n");
+    }
+
+    @Test
+    public void connectionClosedBeforeTheStatusLineIsRejected() throws Exception {
+        assertRejected("HTTP/1.1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pathWithoutLeadingSlashIsRejected() {
+        new HttpHeadProbe("health", false);
+    }
+
+    private void assertRejected(String response) throws Exception {
+        try {
+            check(response);
+            fail("The response should be rejected");
+        } catch (IOException exc) {
+            // expected
+        }
+    }
+
+    /**
+     * Checks a loopback server which answers to the first request with the given response
+     * and then closes the connection.
+     */
+    private boolean check(String response) throws Exception {
+        serve(response);
+
+        Socket socket = new Socket(LOOPBACK, mServerSocket.getLocalPort());
+
+        try {
+            return new HttpHeadProbe("/health", false).check(socket, "localhost", TIMEOUT);
+        } finally {
+            socket.close();
+        }
+    }
+
+    private void serve(final String response) {
+        mServer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = mServerSocket.accept();
+
+                    try {
+                        mRequest = readRequest(socket.getInputStream());
+                        OutputStream output = socket.getOutputStream();
+                        output.write(response.getBytes(ASCII));
+                        output.flush();
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException exc) {
+                    // server socket closed
+                }
+            }
+        });
+        mServer.start();
+    }
+
+    private static String readRequest(InputStream input) throws IOException {
+        StringBuilder request = new StringBuilder();
+        int read;
+
+        while ((read = input.read()) >= 0) {
+            request.append((char) read);
+
+            if (request.toString().endsWith("\r\n\r\n")) break;
+        }
+
+        return request.toString();
+    }
+}
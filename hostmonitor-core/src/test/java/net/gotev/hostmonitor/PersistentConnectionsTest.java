@@ -0,0 +1,148 @@
+package net.gotev.hostmonitor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests how {@link PersistentConnections} detects dropped connections, against a loopback
+ * server which closes or resets the accepted connections.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class PersistentConnectionsTest {
+
+    private static final int CONNECT_TIMEOUT = 1000;
+
+    // maximum time to wait for the host to close or reset a connection
+    private static final long DROP_TIMEOUT = 2000;
+
+    private final PersistentConnections mConnections = PersistentConnections.getInstance();
+    private ServerSocket mServerSocket;
+    private Host mHost;
+
+    @Before
+    public void setUp() throws IOException {
+        Logger.setLogLevel(Logger.LogLevel.OFF);
+
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        mServerSocket = new ServerSocket(0, 50, loopback);
+        mHost = new Host(loopback.getHostAddress(), mServerSocket.getLocalPort());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mConnections.closeAll();
+        mServerSocket.close();
+    }
+
+    @Test
+    public void aliveConnectionReportsTheHandshakeLatency() throws IOException {
+        ProbeResult connected = connect();
+        Socket accepted = mServerSocket.accept();
+
+        try {
+            ProbeResult first = mConnections.check(mHost, 0);
+            ProbeResult second = mConnections.check(mHost, 0);
+
+            assertNotNull(first);
+            assertTrue(first.isReachable());
+            assertEquals(connected.getLatency(), first.getLatency());
+            assertEquals(connected.getAddress(), first.getAddress());
+            // checks of an alive connection don't allocate
+            assertSame(first, second);
+        } finally {
+            accepted.close();
+        }
+    }
+
+    @Test
+    public void connectionClosedByTheHostIsDropped() throws Exception {
+        connect();
+        mServerSocket.accept().close();
+
+        assertTrue(isDropped());
+        // the connection has been discarded, so the host has to be connected again
+        assertNull(mConnections.check(mHost, 0));
+    }
+
+    @Test
+    public void connectionResetByTheHostIsDropped() throws Exception {
+        connect();
+        Socket accepted = mServerSocket.accept();
+
+        // closing with a zero linger timeout sends a RST instead of a FIN
+        accepted.setSoLinger(true, 0);
+        accepted.close();
+
+        assertTrue(isDropped());
+    }
+
+    @Test
+    public void connectionMadeBeforeANetworkChangeIsDropped() throws IOException {
+        connect();
+        Socket accepted = mServerSocket.accept();
+
+        try {
+            mConnections.onNetworkChanged();
+
+            assertNull(mConnections.check(mHost, 0));
+        } finally {
+            accepted.close();
+        }
+    }
+
+    @Test
+    public void connectionOlderThanTheRecheckIntervalIsDropped() throws Exception {
+        connect();
+        Socket accepted = mServerSocket.accept();
+
+        try {
+            Thread.sleep(5);
+
+            assertNull(mConnections.check(mHost, 1));
+        } finally {
+            accepted.close();
+        }
+    }
+
+    @Test
+    public void refusedHostIsNotKept() throws IOException {
+        mServerSocket.close();
+
+        ProbeResult result = connect();
+
+        assertEquals(ProbeResult.Failure.REFUSED, result.getFailure());
+        assertNull(mConnections.check(mHost, 0));
+    }
+
+    private ProbeResult connect() {
+        return mConnections.connect(mHost, CONNECT_TIMEOUT,
+                                    new RetryTracker(new FixedRetryPolicy(0), 1, 0));
+    }
+
+    /**
+     * Checks the connection until it's reported as dropped, as the FIN or RST of the host
+     * may not have been received yet.
+     */
+    private boolean isDropped() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DROP_TIMEOUT;
+
+        while (System.currentTimeMillis() < deadline) {
+            if (mConnections.check(mHost, 0) == null) return true;
+            Thread.sleep(10);
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,260 @@
+package net.gotev.hostmonitor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests how {@link ReachabilityCheck} applies the hysteresis thresholds and the adaptive
+ * check interval. Hosts are checked on the loopback interface: one port accepts connections
+ * and the other one refuses them.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class ReachabilityCheckTest {
+
+    private ServerSocket mServerSocket;
+    private Host mReachableHost;
+    private Host mUnreachableHost;
+
+    // discards the changes, so that the ones made by a check can be told apart
+    private static final StatusStore DISCARDING_STORE = new StatusStore() {
+        @Override
+        public void load(StatusTable table) { }
+
+        @Override
+        public void write(StatusTable table, BitSet changed, Collection<Host> removed) { }
+
+        @Override
+        public void clear() { }
+    };
+
+    private final StatusTable mTable = new StatusTable();
+    private final List<Status> mPreviousStatuses = new ArrayList<>();
+    private final List<Status> mNotifiedStatuses = new ArrayList<>();
+
+    private final ReachabilityCheck.Callback mCallback = new ReachabilityCheck.Callback() {
+        private final Probe mProbe = new TcpProbe();
+
+        @Override
+        public Probe getProbe(Host host) {
+            return mProbe;
+        }
+
+        @Override
+        public void onStatusChanged(ProbeResult result, Status previousStatus,
+                                    Status newStatus) {
+            mPreviousStatuses.add(previousStatus);
+            mNotifiedStatuses.add(newStatus);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        Logger.setLogLevel(Logger.LogLevel.OFF);
+
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        mServerSocket = new ServerSocket(0, 50, loopback);
+        mReachableHost = new Host(loopback.getHostAddress(), mServerSocket.getLocalPort());
+
+        // a port which has just been released refuses the connections
+        ServerSocket closedSocket = new ServerSocket(0, 50, loopback);
+        mUnreachableHost = new Host(loopback.getHostAddress(), closedSocket.getLocalPort());
+        closedSocket.close();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServerSocket.close();
+    }
+
+    @Test
+    public void reachabilityChangeIsCommittedAfterTheDownThreshold() {
+        mTable.put(mUnreachableHost, new Status(true, ConnectionType.WIFI));
+        ReachabilityCheck check = newCheck(newSettings().setHysteresis(1, 3));
+
+        for (int pending = 1; pending < 3; pending++) {
+            check.check(ConnectionType.WIFI, Collections.singleton(mUnreachableHost));
+
+            Status status = mTable.getStatus(mUnreachableHost);
+            assertTrue(status.isReachable());
+            assertEquals(pending, status.getPendingResults());
+            assertTrue(mNotifiedStatuses.isEmpty());
+        }
+
+        check.check(ConnectionType.WIFI, Collections.singleton(mUnreachableHost));
+
+        Status status = mTable.getStatus(mUnreachableHost);
+        assertFalse(status.isReachable());
+        assertEquals(0, status.getPendingResults());
+        assertEquals(1, mNotifiedStatuses.size());
+    }
+
+    @Test
+    public void reachabilityChangeIsCommittedAfterTheUpThreshold() {
+        mTable.put(mReachableHost, new Status(false, ConnectionType.WIFI));
+        ReachabilityCheck check = newCheck(newSettings().setHysteresis(2, 1));
+
+        check.check(ConnectionType.WIFI, Collections.singleton(mReachableHost));
+
+        assertFalse(mTable.getStatus(mReachableHost).isReachable());
+        assertEquals(1, mTable.getStatus(mReachableHost).getPendingResults());
+        assertTrue(mNotifiedStatuses.isEmpty());
+
+        check.check(ConnectionType.WIFI, Collections.singleton(mReachableHost));
+
+        assertTrue(mTable.getStatus(mReachableHost).isReachable());
+        assertEquals(0, mTable.getStatus(mReachableHost).getPendingResults());
+        assertEquals(1, mNotifiedStatuses.size());
+    }
+
+    @Test
+    public void pendingTransitionIsDiscardedWhenTheHostIsBack() {
+        Status pendingStatus = new Status(true, ConnectionType.WIFI);
+        pendingStatus.setPendingResults(2);
+        mTable.put(mReachableHost, pendingStatus);
+
+        newCheck(newSettings().setHysteresis(1, 3))
+                .check(ConnectionType.WIFI, Collections.singleton(mReachableHost));
+
+        assertTrue(mTable.getStatus(mReachableHost).isReachable());
+        assertEquals(0, mTable.getStatus(mReachableHost).getPendingResults());
+        assertTrue(mNotifiedStatuses.isEmpty());
+    }
+
+    @Test
+    public void connectionTypeChangeIsCommittedWhileTransitionIsPending() {
+        mTable.put(mUnreachableHost, new Status(true, ConnectionType.WIFI));
+
+        newCheck(newSettings().setHysteresis(1, 3))
+                .check(ConnectionType.MOBILE, Collections.singleton(mUnreachableHost));
+
+        Status status = mTable.getStatus(mUnreachableHost);
+        assertTrue(status.isReachable());
+        assertEquals(ConnectionType.MOBILE, status.getConnectionType());
+        assertEquals(1, status.getPendingResults());
+        assertEquals(1, mNotifiedStatuses.size());
+    }
+
+    @Test
+    public void adaptiveIntervalGrowsWhileTheStatusIsStable() {
+        mTable.put(mReachableHost, new Status(true, ConnectionType.WIFI));
+        ReachabilityCheck check = newCheck(newSettings().setAdaptiveCheckInterval(1000, 8000, 2));
+
+        int[] expectedIntervals = {1000, 2000, 4000, 8000, 8000};
+
+        for (int expectedInterval : expectedIntervals) {
+            check.check(ConnectionType.WIFI, Collections.singleton(mReachableHost));
+            assertEquals(expectedInterval,
+                         mTable.getStatus(mReachableHost).getAdaptiveCheckInterval());
+        }
+
+        assertTrue(mNotifiedStatuses.isEmpty());
+    }
+
+    @Test
+    public void adaptiveIntervalIsResetWhenTheStatusChanges() {
+        Status status = new Status(true, ConnectionType.WIFI);
+        status.setAdaptiveCheckInterval(8000);
+        mTable.put(mUnreachableHost, status);
+
+        newCheck(newSettings().setAdaptiveCheckInterval(1000, 8000, 2))
+                .check(ConnectionType.WIFI, Collections.singleton(mUnreachableHost));
+
+        assertFalse(mTable.getStatus(mUnreachableHost).isReachable());
+        assertEquals(1000, mTable.getStatus(mUnreachableHost).getAdaptiveCheckInterval());
+        assertEquals(1, mNotifiedStatuses.size());
+    }
+
+    @Test
+    public void adaptiveIntervalIsResetWhileTransitionIsPending() {
+        Status status = new Status(true, ConnectionType.WIFI);
+        status.setAdaptiveCheckInterval(8000);
+        mTable.put(mUnreachableHost, status);
+
+        newCheck(newSettings().setAdaptiveCheckInterval(1000, 8000, 2).setHysteresis(1, 3))
+                .check(ConnectionType.WIFI, Collections.singleton(mUnreachableHost));
+
+        assertTrue(mTable.getStatus(mUnreachableHost).isReachable());
+        assertEquals(1000, mTable.getStatus(mUnreachableHost).getAdaptiveCheckInterval());
+    }
+
+    @Test
+    public void unchangedStatusIsNotUpdatedWithoutAdaptiveInterval() {
+        mTable.put(mReachableHost, new Status(true, ConnectionType.WIFI));
+        mTable.flush(DISCARDING_STORE);
+
+        newCheck(newSettings())
+                .check(ConnectionType.WIFI, Collections.singleton(mReachableHost));
+
+        assertFalse(mTable.hasChanges());
+        assertTrue(mNotifiedStatuses.isEmpty());
+    }
+
+    @Test
+    public void notifiedStatusesAreNotReused() {
+        mTable.put(mReachableHost, new Status(false, ConnectionType.WIFI));
+        mTable.put(mUnreachableHost, new Status(true, ConnectionType.WIFI));
+
+        newCheck(newSettings())
+                .check(ConnectionType.WIFI, Arrays.asList(mReachableHost, mUnreachableHost));
+
+        assertEquals(2, mPreviousStatuses.size());
+        assertFalse(mPreviousStatuses.get(0).isReachable());
+        assertTrue(mPreviousStatuses.get(1).isReachable());
+        assertTrue(mNotifiedStatuses.get(0).isReachable());
+        assertFalse(mNotifiedStatuses.get(1).isReachable());
+    }
+
+    @Test
+    public void removedHostIsNotAddedBack() {
+        mTable.put(mReachableHost, new Status(false, ConnectionType.WIFI));
+
+        // the unreachable host has been removed while checking
+        newCheck(newSettings())
+                .check(ConnectionType.WIFI, Arrays.asList(mReachableHost, mUnreachableHost));
+
+        assertEquals(-1, mTable.getId(mUnreachableHost));
+        assertTrue(mTable.getStatus(mReachableHost).isReachable());
+        assertEquals(1, mNotifiedStatuses.size());
+    }
+
+    @Test
+    public void removedHostIsNotSetUnreachable() {
+        mTable.put(mReachableHost, new Status(true, ConnectionType.WIFI));
+
+        newCheck(newSettings())
+                .setAllUnreachable(ConnectionType.NONE,
+                                   Arrays.asList(mReachableHost, mUnreachableHost));
+
+        assertEquals(-1, mTable.getId(mUnreachableHost));
+        assertFalse(mTable.getStatus(mReachableHost).isReachable());
+        assertEquals(1, mNotifiedStatuses.size());
+    }
+
+    private static CheckSettings newSettings() {
+        return new CheckSettings().setMaxAttempts(1).setSocketTimeout(1000);
+    }
+
+    private ReachabilityCheck newCheck(CheckSettings settings) {
+        return new ReachabilityCheck(settings, mTable, mCallback);
+    }
+}
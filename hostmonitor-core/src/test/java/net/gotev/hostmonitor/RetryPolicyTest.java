@@ -0,0 +1,130 @@
+package net.gotev.hostmonitor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the delays of the retry policies and how {@link RetryTracker} clips the attempts to
+ * the maximum number of attempts and to the time budget.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class RetryPolicyTest {
+
+    @Test
+    public void fixedPolicyAlwaysReturnsTheSameDelay() {
+        RetryPolicy policy = new FixedRetryPolicy(250);
+
+        assertEquals(250, policy.getDelay(1, 0));
+        assertEquals(250, policy.getDelay(5, 250));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fixedPolicyRejectsNegativeDelay() {
+        new FixedRetryPolicy(-1);
+    }
+
+    @Test
+    public void exponentialBackoffGrowsUpToTheMaximum() {
+        RetryPolicy policy = new ExponentialBackoffRetryPolicy(100, 1000, 2);
+
+        long delay = policy.getDelay(1, 0);
+        assertEquals(100, delay);
+
+        delay = policy.getDelay(2, delay);
+        assertEquals(200, delay);
+
+        delay = policy.getDelay(3, delay);
+        assertEquals(400, delay);
+
+        delay = policy.getDelay(4, delay);
+        assertEquals(800, delay);
+
+        delay = policy.getDelay(5, delay);
+        assertEquals(1000, delay);
+
+        assertEquals(1000, policy.getDelay(6, delay));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void exponentialBackoffRejectsMaxDelayLowerThanInitialDelay() {
+        new ExponentialBackoffRetryPolicy(100, 50, 2);
+    }
+
+    @Test
+    public void decorrelatedJitterStaysWithinBounds() {
+        RetryPolicy policy = new DecorrelatedJitterRetryPolicy(100, 1000);
+        long delay = 0;
+
+        for (int attempt = 1; attempt <= 1000; attempt++) {
+            long upperBound = Math.min(1000, Math.max(100, delay) * 3);
+            delay = policy.getDelay(attempt, delay);
+
+            assertTrue("delay " + delay + " lower than the base delay", delay >= 100);
+            assertTrue("delay " + delay + " higher than " + upperBound, delay <= upperBound);
+        }
+    }
+
+    @Test
+    public void trackerStopsAfterMaxAttempts() {
+        RetryTracker tracker = new RetryTracker(new FixedRetryPolicy(0), 3, 0);
+
+        for (int attempt = 1; attempt < 3; attempt++) {
+            tracker.onAttemptStarted(1000);
+            assertEquals(0, tracker.getNextDelay());
+        }
+
+        tracker.onAttemptStarted(1000);
+        assertEquals(-1, tracker.getNextDelay());
+        assertEquals(3, tracker.getAttempts());
+    }
+
+    @Test
+    public void trackerWithoutBudgetUsesTheConnectTimeout() {
+        RetryTracker tracker = new RetryTracker(new FixedRetryPolicy(0), 1, 0);
+
+        assertEquals(1000, tracker.onAttemptStarted(1000));
+    }
+
+    @Test
+    public void trackerClipsTheConnectTimeoutToTheRemainingBudget() throws Exception {
+        RetryTracker tracker = new RetryTracker(new FixedRetryPolicy(0), 5, 500);
+
+        int timeout = tracker.onAttemptStarted(2000);
+        assertTrue("timeout " + timeout + " exceeds the budget", timeout <= 500);
+
+        Thread.sleep(200);
+
+        timeout = tracker.onAttemptStarted(2000);
+        assertTrue("timeout " + timeout + " exceeds the remaining budget", timeout <= 300);
+    }
+
+    @Test
+    public void trackerGivesAtLeastOneMillisecondOnceTheBudgetIsExhausted() throws Exception {
+        RetryTracker tracker = new RetryTracker(new FixedRetryPolicy(0), 5, 10);
+
+        tracker.onAttemptStarted(1000);
+        Thread.sleep(50);
+
+        assertEquals(1, tracker.onAttemptStarted(1000));
+    }
+
+    @Test
+    public void trackerStopsWhenTheDelayExceedsTheBudget() {
+        RetryTracker tracker = new RetryTracker(new FixedRetryPolicy(1000), 5, 500);
+
+        tracker.onAttemptStarted(100);
+
+        assertEquals(-1, tracker.getNextDelay());
+    }
+
+    @Test
+    public void trackerRetriesWhenTheDelayFitsTheBudget() {
+        RetryTracker tracker = new RetryTracker(new FixedRetryPolicy(10), 5, 60000);
+
+        tracker.onAttemptStarted(100);
+
+        assertEquals(10, tracker.getNextDelay());
+    }
+}
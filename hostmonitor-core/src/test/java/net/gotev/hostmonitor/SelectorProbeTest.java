@@ -0,0 +1,284 @@
+package net.gotev.hostmonitor;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link SelectorProbe} against loopback hosts. An open host is a listener which never
+ * accepts, as the kernel completes the connections anyway, while a blackholed host is a
+ * listener with a full backlog, so the connection attempts to it time out. Dual stack hosts
+ * are seeded in the {@link DnsCache}, so no DNS server is needed.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class SelectorProbeTest {
+
+    private static final String LOOPBACK = "127.0.0.1";
+    private static final String LOOPBACK_IPV6 = "::1";
+    private static final String DUAL_STACK_HOST = "dual-stack.test";
+    private static final int CONNECT_TIMEOUT = 200;
+
+    // timeout used while filling the backlog of a blackholed listener
+    private static final int FILL_TIMEOUT = 100;
+    private static final int MAX_FILL_CONNECTIONS = 16;
+
+    private final List<Closeable> mResources = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        DnsCache.getInstance().setTtl(0, 0);
+        DnsCache.getInstance().clear();
+
+        for (Closeable resource : mResources) {
+            try {
+                resource.close();
+            } catch (IOException exc) {
+                // ignored
+            }
+        }
+    }
+
+    @Test
+    public void openHostIsReachable() throws Exception {
+        Host host = openHost();
+
+        Map<Host, ProbeResult> results = probe(newProbe(1), host);
+
+        assertTrue(results.get(host).isReachable());
+    }
+
+    @Test
+    public void refusedHostIsUnreachable() throws Exception {
+        Host host = refusedHost();
+
+        Map<Host, ProbeResult> results = probe(newProbe(1), host);
+
+        assertFalse(results.get(host).isReachable());
+    }
+
+    @Test
+    public void blackholedHostIsUnreachableOnceEveryAttemptTimedOut() throws Exception {
+        Host host = blackholedHost();
+
+        long start = System.nanoTime();
+        Map<Host, ProbeResult> results = probe(newProbe(2), host);
+        long elapsed = (System.nanoTime() - start) / 1000000L;
+
+        assertFalse(results.get(host).isReachable());
+        assertTrue("finished after " + elapsed + "ms", elapsed >= 2 * CONNECT_TIMEOUT - 10);
+        assertTrue("finished after " + elapsed + "ms", elapsed < 2 * CONNECT_TIMEOUT + 1000);
+    }
+
+    @Test
+    public void blackholedHostDoesNotDelayTheOtherHosts() throws Exception {
+        Host open = openHost();
+        Host refused = refusedHost();
+        Host blackholed = blackholedHost();
+        final Map<Host, Long> completionTimes = new HashMap<>();
+        final long start = System.nanoTime();
+
+        final Map<Host, ProbeResult> results = new HashMap<>();
+
+        newProbe(1).probe(Arrays.asList(blackholed, open, refused),
+                new SelectorProbe.Callback() {
+                    @Override
+                    public void onProbeCompleted(ProbeResult result) {
+                        assertFalse("host completed twice", results.containsKey(result.getHost()));
+                        results.put(result.getHost(), result);
+                        completionTimes.put(result.getHost(),
+                                (System.nanoTime() - start) / 1000000L);
+                    }
+
+                    @Override
+                    public boolean isCancelled() {
+                        return false;
+                    }
+                });
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(open).isReachable());
+        assertFalse(results.get(refused).isReachable());
+        assertFalse(results.get(blackholed).isReachable());
+        assertTrue(completionTimes.get(open) < CONNECT_TIMEOUT);
+        assertTrue(completionTimes.get(refused) < CONNECT_TIMEOUT);
+        assertTrue(completionTimes.get(blackholed) >= CONNECT_TIMEOUT - 10);
+    }
+
+    @Test
+    public void retriesStopWhenTheTimeBudgetIsExhausted() throws Exception {
+        Host host = blackholedHost();
+        SelectorProbe probe = new SelectorProbe(CONNECT_TIMEOUT, 10, new FixedRetryPolicy(0),
+                                                CONNECT_TIMEOUT * 2, false);
+
+        long start = System.nanoTime();
+        Map<Host, ProbeResult> results = probe(probe, host);
+        long elapsed = (System.nanoTime() - start) / 1000000L;
+
+        assertFalse(results.get(host).isReachable());
+        assertTrue("finished after " + elapsed + "ms", elapsed < CONNECT_TIMEOUT * 2 + 500);
+    }
+
+    @Test
+    public void raceConnectsToTheFirstAddressWhichAccepts() throws Exception {
+        Host host = dualStackHost();
+
+        // the attempt must outlast the delay before connecting to the next address
+        ProbeResult result = new SelectorProbe(1000, 1, new FixedRetryPolicy(0), 0, true)
+                .probe(host);
+
+        assertTrue(result.isReachable());
+        assertEquals(InetAddress.getByName(LOOPBACK), result.getAddress());
+        assertTrue("connected after " + result.getConnectTime() / 1000000L + "ms",
+                   result.getConnectTime() >= SelectorProbe.CONNECTION_ATTEMPT_DELAY * 1000000L);
+    }
+
+    @Test
+    public void withoutRaceOnlyTheFirstAddressIsTried() throws Exception {
+        Host host = dualStackHost();
+
+        assertFalse(new SelectorProbe(1000, 1, new FixedRetryPolicy(0), 0, false)
+                .probe(host).isReachable());
+    }
+
+    @Test
+    public void hostNameWhichIsNotCachedIsResolved() throws Exception {
+        Host open = openHost();
+        Host host = new Host("localhost", open.getPort());
+
+        assertTrue(newProbe(1).probe(host).isReachable());
+    }
+
+    @Test
+    public void addressesAreInterleavedByFamily() throws Exception {
+        InetAddress v6a = InetAddress.getByName("2001:db8::1");
+        InetAddress v6b = InetAddress.getByName("2001:db8::2");
+        InetAddress v4a = InetAddress.getByName("192.0.2.1");
+        InetAddress v4b = InetAddress.getByName("192.0.2.2");
+
+        assertArrayEquals(new InetAddress[] {v6a, v4a, v6b, v4b},
+                          SelectorProbe.interleave(new InetAddress[] {v6a, v6b, v4a, v4b}));
+        assertArrayEquals(new InetAddress[] {v4a, v6a, v4b},
+                          SelectorProbe.interleave(new InetAddress[] {v4a, v4b, v6a}));
+    }
+
+    @Test
+    public void cancelledProbeStopsWithoutCompletingThePendingHosts() throws Exception {
+        Host host = blackholedHost();
+        final List<ProbeResult> results = new ArrayList<>();
+        final long start = System.nanoTime();
+
+        newProbe(1).probe(Collections.singletonList(host), new SelectorProbe.Callback() {
+            @Override
+            public void onProbeCompleted(ProbeResult result) {
+                results.add(result);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return System.nanoTime() - start >= CONNECT_TIMEOUT / 4 * 1000000L;
+            }
+        });
+        long elapsed = (System.nanoTime() - start) / 1000000L;
+
+        assertTrue(results.isEmpty());
+        assertTrue("finished after " + elapsed + "ms", elapsed < CONNECT_TIMEOUT);
+    }
+
+    private static SelectorProbe newProbe(int maxAttempts) {
+        return new SelectorProbe(CONNECT_TIMEOUT, maxAttempts, new FixedRetryPolicy(0), 0, false);
+    }
+
+    private Map<Host, ProbeResult> probe(SelectorProbe probe, Host... hosts) {
+        final Map<Host, ProbeResult> results = new HashMap<>();
+
+        probe.probe(Arrays.asList(hosts), new SelectorProbe.Callback() {
+            @Override
+            public void onProbeCompleted(ProbeResult result) {
+                results.put(result.getHost(), result);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        });
+
+        assertEquals(hosts.length, results.size());
+        return results;
+    }
+
+    private Host openHost() throws IOException {
+        ServerSocket listener = new ServerSocket(0, 50, InetAddress.getByName(LOOPBACK));
+        mResources.add(listener);
+        return new Host(LOOPBACK, listener.getLocalPort());
+    }
+
+    /**
+     * Creates a host name which resolves to a blackholed IPv6 address first and to an open
+     * IPv4 address then, both on the same port.
+     */
+    private Host dualStackHost() throws IOException {
+        ServerSocket listener = new ServerSocket(0, 50, InetAddress.getByName(LOOPBACK));
+        mResources.add(listener);
+        int port = listener.getLocalPort();
+        blackhole(LOOPBACK_IPV6, port);
+
+        DnsCache.getInstance().setTtl(60000, 0);
+        DnsCache.getInstance().put(DUAL_STACK_HOST, new InetAddress[] {
+                InetAddress.getByName(LOOPBACK_IPV6), InetAddress.getByName(LOOPBACK)});
+
+        return new Host(DUAL_STACK_HOST, port);
+    }
+
+    private Host refusedHost() throws IOException {
+        ServerSocket socket = new ServerSocket(0, 1, InetAddress.getByName(LOOPBACK));
+        socket.close();
+        return new Host(LOOPBACK, socket.getLocalPort());
+    }
+
+    private Host blackholedHost() throws IOException {
+        return new Host(LOOPBACK, blackhole(LOOPBACK, 0));
+    }
+
+    /**
+     * Opens a listener which never accepts and fills its backlog.
+     * @return port of the listener
+     */
+    private int blackhole(String address, int port) throws IOException {
+        ServerSocket listener = new ServerSocket(port, 1, InetAddress.getByName(address));
+        mResources.add(listener);
+
+        for (int i = 0; i < MAX_FILL_CONNECTIONS; i++) {
+            Socket socket = new Socket();
+            mResources.add(socket);
+
+            try {
+                socket.connect(new InetSocketAddress(address, listener.getLocalPort()),
+                               FILL_TIMEOUT);
+            } catch (SocketTimeoutException exc) {
+                // backlog full, the next connection attempts are going to be dropped
+                return listener.getLocalPort();
+            }
+        }
+
+        throw new IOException("Unable to fill the backlog of port " + listener.getLocalPort());
+    }
+}
@@ -0,0 +1,363 @@
+package net.gotev.hostmonitor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the queries, the updates and the persistence of the changes of the {@link StatusTable}.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class StatusTableTest {
+
+    private static final Host FIRST = new Host("first.example.com", 80);
+    private static final Host SECOND = new Host("second.example.com", 443);
+
+    private StatusTable table;
+    private MemoryStatusStore store;
+
+    @Before
+    public void setUp() {
+        table = new StatusTable();
+        store = new MemoryStatusStore();
+
+        store.statuses.put(FIRST, new Status(true, ConnectionType.WIFI, 20, 1000));
+        store.statuses.put(SECOND, new Status(false, ConnectionType.WIFI, -1, 2000));
+        table.load(store);
+    }
+
+    @Test
+    public void getReturnsTheLoadedStatus() {
+        assertTrue(table.isLoaded());
+
+        ReachabilityStatus status = table.get(FIRST);
+        assertEquals("first.example.com", status.getHost());
+        assertEquals(80, status.getPort());
+        assertTrue(status.isReachable());
+        assertEquals(ConnectionType.WIFI, status.getConnectionType());
+        assertEquals(20, status.getLatency());
+        assertEquals(1000, status.getCheckTime());
+    }
+
+    @Test
+    public void getReturnsNullForUnknownHosts() {
+        assertNull(table.get(new Host("unknown.example.com", 80)));
+        assertNull(table.getStatus(new Host("unknown.example.com", 80)));
+        assertEquals(-1, table.getId(new Host("unknown.example.com", 80)));
+    }
+
+    @Test
+    public void loadedStatusesAreNotChanges() {
+        assertFalse(table.hasChanges());
+        assertFalse(table.flush(store));
+    }
+
+    @Test
+    public void hostsAreALiveView() {
+        Collection<Host> hosts = table.getHosts();
+
+        assertEquals(2, hosts.size());
+        assertTrue(hosts.contains(FIRST));
+        assertTrue(hosts.contains(SECOND));
+        assertFalse(hosts.contains(new Host("unknown.example.com", 80)));
+
+        table.remove(SECOND);
+
+        assertEquals(1, hosts.size());
+        assertFalse(hosts.contains(SECOND));
+        assertEquals(FIRST, hosts.iterator().next());
+    }
+
+    @Test
+    public void snapshotContainsAllTheHosts() {
+        List<ReachabilityStatus> snapshot = table.snapshot();
+
+        assertEquals(2, snapshot.size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshotIsUnmodifiable() {
+        table.snapshot().clear();
+    }
+
+    @Test
+    public void snapshotIsNotAffectedByLaterUpdates() {
+        List<ReachabilityStatus> snapshot = table.snapshot();
+
+        table.put(FIRST, new Status(false, ConnectionType.MOBILE, -1, 3000));
+
+        for (ReachabilityStatus status : snapshot) {
+            if (status.getHost().equals(FIRST.getHost())) {
+                assertTrue(status.isReachable());
+            }
+        }
+        assertFalse(table.get(FIRST).isReachable());
+    }
+
+    @Test
+    public void putReplacesTheStatus() {
+        table.put(FIRST, new Status(true, ConnectionType.WIFI, 35, 4000));
+
+        assertEquals(35, table.get(FIRST).getLatency());
+        assertEquals(4000, table.get(FIRST).getCheckTime());
+    }
+
+    @Test
+    public void packedStateKeepsAllTheValues() {
+        table.put(FIRST, new Status(false, ConnectionType.MOBILE, -1, 5000));
+        table.put(SECOND, new Status(true, ConnectionType.NONE, Long.MAX_VALUE, 6000));
+
+        ReachabilityStatus first = table.get(FIRST);
+        assertFalse(first.isReachable());
+        assertEquals(ConnectionType.MOBILE, first.getConnectionType());
+        assertEquals(-1, first.getLatency());
+        assertEquals(5000, first.getCheckTime());
+
+        // latencies which don't fit in 32 bits are capped
+        ReachabilityStatus second = table.get(SECOND);
+        assertTrue(second.isReachable());
+        assertEquals(ConnectionType.NONE, second.getConnectionType());
+        assertEquals(0xFFFFFFFEL, second.getLatency());
+        assertEquals(6000, second.getCheckTime());
+    }
+
+    @Test
+    public void readKeepsAllTheFields() {
+        Status status = new Status(true, ConnectionType.MOBILE, 123, 8000);
+        status.setCheckInterval(60000);
+        status.setAdaptiveCheckInterval(15000);
+        status.setPendingResults(2);
+        int id = table.put(FIRST, status);
+
+        Status read = new Status();
+        assertTrue(table.read(id, read));
+        assertTrue(read.isReachable());
+        assertEquals(ConnectionType.MOBILE, read.getConnectionType());
+        assertEquals(123, read.getLatency());
+        assertEquals(8000, read.getCheckTime());
+        assertEquals(60000, read.getCheckInterval());
+        assertEquals(15000, read.getAdaptiveCheckInterval());
+        assertEquals(2, read.getPendingResults());
+        assertEquals(60000, table.getCheckInterval(id));
+        assertEquals(15000, table.getAdaptiveCheckInterval(id));
+    }
+
+    @Test
+    public void updateIsIgnoredOnceTheHostIsRemoved() {
+        Host third = new Host("third.example.com", 8080);
+        int id = table.getId(FIRST);
+
+        table.remove(FIRST);
+        // the id of the removed host is given to the next one
+        assertEquals(id, table.put(third, new Status(true, ConnectionType.WIFI, 5, 7000)));
+
+        assertFalse(table.update(id, FIRST, new Status(false, ConnectionType.WIFI, -1, 9000)));
+        assertNull(table.get(FIRST));
+        assertEquals(7000, table.get(third).getCheckTime());
+    }
+
+    @Test
+    public void flushWritesOnlyTheChanges() {
+        Host third = new Host("third.example.com", 8080);
+
+        table.put(FIRST, new Status(true, ConnectionType.WIFI, 20, 1000));
+        assertFalse(table.hasChanges());
+
+        table.put(third, new Status(true, ConnectionType.WIFI, 5, 7000));
+        table.remove(SECOND);
+        assertTrue(table.hasChanges());
+
+        assertTrue(table.flush(store));
+        assertEquals(1, store.writtenIds);
+        assertEquals(2, store.statuses.size());
+        assertEquals(7000, store.statuses.get(third).getCheckTime());
+        assertFalse(store.statuses.containsKey(SECOND));
+
+        assertFalse(table.hasChanges());
+        assertFalse(table.flush(store));
+    }
+
+    @Test
+    public void hostRemovedAndAddedAgainIsRemovedAndWritten() {
+        table.remove(SECOND);
+        table.put(SECOND, new Status());
+
+        table.flush(store);
+
+        assertEquals(1, store.writtenIds);
+        assertEquals(0, store.statuses.get(SECOND).getCheckTime());
+    }
+
+    @Test
+    public void flushAllWritesAllTheHosts() {
+        MemoryStatusStore newStore = new MemoryStatusStore();
+        table.put(FIRST, new Status(true, ConnectionType.WIFI, 35, 4000));
+
+        table.flushAll(newStore);
+
+        assertEquals(2, newStore.statuses.size());
+        assertEquals(35, newStore.statuses.get(FIRST).getLatency());
+        assertFalse(table.hasChanges());
+    }
+
+    @Test
+    public void tableGrowsBeyondItsInitialCapacity() {
+        for (int i = 0; i < 100; i++) {
+            table.put(new Host("host" + i + ".example.com", 80),
+                      new Status(true, ConnectionType.WIFI, i, i));
+        }
+
+        assertEquals(102, table.size());
+        assertEquals(102, table.snapshot().size());
+        assertEquals(42, table.get(new Host("host42.example.com", 80)).getLatency());
+        assertEquals(20, table.get(FIRST).getLatency());
+    }
+
+    @Test
+    public void removedIdsAreReused() {
+        Host third = new Host("third.example.com", 8080);
+
+        table.remove(SECOND);
+        table.put(third, new Status(true, ConnectionType.WIFI, 5, 7000));
+
+        assertEquals(2, table.size());
+        assertNull(table.get(SECOND));
+        assertEquals(7000, table.get(third).getCheckTime());
+    }
+
+    @Test
+    public void readersNeverSeeAPartiallyWrittenStatus() throws Exception {
+        // the writer alternates between two statuses, so a reader which mixed the state of
+        // one with the check time of the other would see an inconsistent pair
+        final Status reachable = new Status(true, ConnectionType.WIFI, 10, 1000);
+        final Status unreachable = new Status(false, ConnectionType.MOBILE, -1, 2000);
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final MemoryStatusStore reachableStore = new MemoryStatusStore();
+        reachableStore.statuses.put(FIRST, reachable);
+        table.load(reachableStore);
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 200000; i++) {
+                    table.put(FIRST, i % 2 == 0 ? unreachable : reachable);
+
+                    // the arrays are replaced while growing and emptied by clear
+                    if (i % 1000 == 0) {
+                        table.clear();
+                        table.load(reachableStore);
+                    }
+                }
+                done.set(true);
+            }
+        });
+
+        Runnable reader = new Runnable() {
+            @Override
+            public void run() {
+                while (!done.get() && failure.get() == null) {
+                    ReachabilityStatus status = table.get(FIRST);
+
+                    if (status != null && !isConsistent(status)) {
+                        failure.set("inconsistent status: " + status);
+                    }
+
+                    for (ReachabilityStatus snapshotStatus : table.snapshot()) {
+                        if (snapshotStatus.getHost().equals(FIRST.getHost())
+                                && !isConsistent(snapshotStatus)) {
+                            failure.set("inconsistent snapshot status: " + snapshotStatus);
+                        }
+                    }
+                }
+            }
+        };
+
+        Thread[] readers = new Thread[3];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(reader);
+            readers[i].start();
+        }
+
+        writer.start();
+        writer.join();
+
+        for (Thread thread : readers) {
+            thread.join();
+        }
+
+        assertNull(failure.get(), failure.get());
+    }
+
+    private static boolean isConsistent(ReachabilityStatus status) {
+        if (status.isReachable()) {
+            return status.getConnectionType() == ConnectionType.WIFI
+                    && status.getLatency() == 10 && status.getCheckTime() == 1000;
+        }
+
+        return status.getConnectionType() == ConnectionType.MOBILE
+                && status.getLatency() == -1 && status.getCheckTime() == 2000;
+    }
+
+    @Test
+    public void clearEmptiesTheTableUntilLoadedAgain() {
+        table.clear();
+
+        assertFalse(table.isLoaded());
+        assertNull(table.get(FIRST));
+        assertTrue(table.snapshot().isEmpty());
+        assertTrue(table.getHosts().isEmpty());
+
+        table.load(store);
+        assertTrue(table.isLoaded());
+        assertEquals(2, table.snapshot().size());
+        assertEquals(1000, table.get(FIRST).getCheckTime());
+    }
+
+    /**
+     * Keeps the statuses in a map and counts the written ids.
+     */
+    private static class MemoryStatusStore implements StatusStore {
+
+        final Map<Host, Status> statuses = new HashMap<>();
+        int writtenIds;
+
+        @Override
+        public void load(StatusTable table) {
+            for (Map.Entry<Host, Status> entry : statuses.entrySet()) {
+                table.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        @Override
+        public void write(StatusTable table, BitSet changed, Collection<Host> removed) {
+            statuses.keySet().removeAll(removed);
+
+            for (int id = changed.nextSetBit(0); id >= 0; id = changed.nextSetBit(id + 1)) {
+                Status status = new Status();
+
+                if (table.read(id, status)) {
+                    statuses.put(table.getHost(id), status);
+                    writtenIds++;
+                }
+            }
+        }
+
+        @Override
+        public void clear() {
+            statuses.clear();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package net.gotev.hostmonitor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests how a {@link Status} calculates the adaptive check interval which follows it, and
+ * counts the check results pending a reachability transition.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class StatusTest {
+
+    private static final int MIN_INTERVAL = 10000;
+    private static final int MAX_INTERVAL = 60000;
+    private static final float GROWTH_FACTOR = 2;
+
+    @Test
+    public void firstAdaptiveIntervalIsTheMinimum() {
+        assertEquals(MIN_INTERVAL, nextInterval(0, false));
+    }
+
+    @Test
+    public void adaptiveIntervalGrowsUpToTheMaximumWhileStable() {
+        int interval = nextInterval(0, false);
+        assertEquals(10000, interval);
+
+        interval = nextInterval(interval, false);
+        assertEquals(20000, interval);
+
+        interval = nextInterval(interval, false);
+        assertEquals(40000, interval);
+
+        interval = nextInterval(interval, false);
+        assertEquals(MAX_INTERVAL, interval);
+
+        assertEquals(MAX_INTERVAL, nextInterval(interval, false));
+    }
+
+    @Test
+    public void adaptiveIntervalRestartsFromTheMinimumWhenTheStatusChanges() {
+        assertEquals(MIN_INTERVAL, nextInterval(MAX_INTERVAL, true));
+    }
+
+    @Test
+    public void adaptiveIntervalIsRoundedUp() {
+        Status status = new Status(true, ConnectionType.WIFI);
+        status.setAdaptiveCheckInterval(10001);
+
+        assertEquals(15002, status.getNextAdaptiveCheckInterval(false, MIN_INTERVAL,
+                                                                MAX_INTERVAL, 1.5f));
+    }
+
+    @Test
+    public void transitionIsCommittedOnceTheThresholdIsReached() {
+        Status status = new Status(true, ConnectionType.WIFI);
+
+        status.setPendingResults(status.getNextPendingResults(3));
+        assertEquals(1, status.getPendingResults());
+
+        status.setPendingResults(status.getNextPendingResults(3));
+        assertEquals(2, status.getPendingResults());
+
+        assertEquals(0, status.getNextPendingResults(3));
+    }
+
+    @Test
+    public void transitionIsCommittedImmediatelyWithThresholdOne() {
+        assertEquals(0, new Status(true, ConnectionType.WIFI).getNextPendingResults(1));
+    }
+
+    private static int nextInterval(int adaptiveCheckInterval, boolean statusChanged) {
+        Status status = new Status(true, ConnectionType.WIFI);
+        status.setAdaptiveCheckInterval(adaptiveCheckInterval);
+
+        return status.getNextAdaptiveCheckInterval(statusChanged, MIN_INTERVAL, MAX_INTERVAL,
+                                                   GROWTH_FACTOR);
+    }
+}
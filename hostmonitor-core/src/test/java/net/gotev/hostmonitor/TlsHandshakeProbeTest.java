@@ -0,0 +1,126 @@
+package net.gotev.hostmonitor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.KeyStore;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link TlsHandshakeProbe} against a loopback TLS server, whose self-signed certificate
+ * is valid for localhost and 127.0.0.1. The certificate is trusted by installing a default
+ * SSL context for the duration of each test.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class TlsHandshakeProbeTest {
+
+    private static final String KEYSTORE = "/localhost.jks";
+    private static final char[] KEYSTORE_PASSWORD = "password".toCharArray();
+    private static final String LOOPBACK = "127.0.0.1";
+    private static final int TIMEOUT = 2000;
+
+    private SSLContext mDefaultContext;
+    private SSLServerSocket mServerSocket;
+    private Thread mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream input = getClass().getResourceAsStream(KEYSTORE);
+
+        try {
+            keyStore.load(input, KEYSTORE_PASSWORD);
+        } finally {
+            input.close();
+        }
+
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(
+                KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, KEYSTORE_PASSWORD);
+
+        TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(
+                TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(keyStore);
+
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), trustManagers.getTrustManagers(), null);
+
+        mDefaultContext = SSLContext.getDefault();
+        SSLContext.setDefault(context);
+
+        mServerSocket = (SSLServerSocket) context.getServerSocketFactory()
+                .createServerSocket(0, 1, InetAddress.getByName(LOOPBACK));
+        serve();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SSLContext.setDefault(mDefaultContext);
+        mServerSocket.close();
+        mServer.join(TIMEOUT);
+    }
+
+    @Test
+    public void certificateValidForTheHostIsHealthy() throws Exception {
+        assertTrue(check("localhost"));
+    }
+
+    @Test
+    public void certificateValidForAnotherHostIsRejected() throws Exception {
+        try {
+            check("example.com");
+            fail("The certificate is not valid for the host");
+        } catch (IOException exc) {
+            // expected
+        }
+    }
+
+    private boolean check(String host) throws IOException {
+        Socket socket = new Socket(LOOPBACK, mServerSocket.getLocalPort());
+
+        try {
+            return new TlsHandshakeProbe().check(socket, host, TIMEOUT);
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Accepts a single connection and completes the handshake, if the client goes on with it.
+     */
+    private void serve() {
+        mServer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    SSLSocket socket = (SSLSocket) mServerSocket.accept();
+
+                    try {
+                        socket.setSoTimeout(TIMEOUT);
+                        socket.startHandshake();
+                    } catch (IOException exc) {
+                        // the client aborted the handshake
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException exc) {
+                    // server socket closed
+                }
+            }
+        });
+        mServer.start();
+    }
+}
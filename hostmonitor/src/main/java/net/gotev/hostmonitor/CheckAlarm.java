@@ -0,0 +1,97 @@
+package net.gotev.hostmonitor;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+
+/**
+ * Wakes up the device with {@link AlarmManager} when the next check of the
+ * {@link CheckScheduler} is due. Times are on the {@link SystemClock#elapsedRealtime()} clock.
+ * @author gotev (Aleksandar Gotev)
+ */
+class CheckAlarm {
+
+    private static final String LOG_TAG = CheckAlarm.class.getSimpleName();
+    private static final int SCHEDULED_CHECK_ID = 0;
+    private static final int SETTLED_CHECK_ID = 1;
+
+    private CheckAlarm() { }
+
+    /**
+     * Sets the alarm which triggers the check of the next due hosts, or cancels it if no
+     * host is scheduled.
+     * @param context application context
+     * @param scheduler scheduler of the checks
+     */
+    static void set(Context context, CheckScheduler scheduler) {
+        long dueTime = scheduler.getNextDueTime();
+
+        if (dueTime < 0) {
+            Logger.debug(LOG_TAG, "no scheduled checks");
+            cancel(context);
+            return;
+        }
+
+        if (Logger.isEnabled(Logger.LogLevel.DEBUG)) {
+            Logger.debug(LOG_TAG, "next check in %dms", dueTime - SystemClock.elapsedRealtime());
+        }
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.set(AlarmManager.ELAPSED_REALTIME_WAKEUP, dueTime,
+                         getScheduledCheckIntent(context));
+    }
+
+    /**
+     * Cancels the alarm of the scheduled checks.
+     * @param context application context
+     */
+    static void cancel(Context context) {
+        Logger.debug(LOG_TAG, "cancelling scheduled checks");
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.cancel(getScheduledCheckIntent(context));
+    }
+
+    /**
+     * Sets the alarm which triggers the check of all the hosts once the connectivity settled.
+     * Setting it again replaces the previous one, so a burst of connectivity changes
+     * results in a single check. Unlike a delayed message, the alarm survives the death of
+     * the process.
+     * @param context application context
+     * @param delay milliseconds to wait before the check
+     */
+    static void setSettledCheck(Context context, int delay) {
+        Logger.debug(LOG_TAG, "check of all the hosts in " + delay + "ms");
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        long triggerAt = SystemClock.elapsedRealtime() + delay;
+        PendingIntent intent = getSettledCheckIntent(context);
+
+        // since KitKat set is inexact and may be deferred much longer than the settle window
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            alarmManager.setExact(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerAt, intent);
+        } else {
+            alarmManager.set(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerAt, intent);
+        }
+    }
+
+    /**
+     * Cancels the alarm of the check after the connectivity settled.
+     * @param context application context
+     */
+    static void cancelSettledCheck(Context context) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.cancel(getSettledCheckIntent(context));
+    }
+
+    private static PendingIntent getSettledCheckIntent(Context context) {
+        // the connection type is read when the check starts, after the connectivity settled
+        return PendingIntent.getService(context, SETTLED_CHECK_ID,
+                                        HostMonitor.getCheckIntent(context),
+                                        PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    private static PendingIntent getScheduledCheckIntent(Context context) {
+        return PendingIntent.getService(context, SCHEDULED_CHECK_ID,
+                                        HostMonitor.getScheduledCheckIntent(context), 0);
+    }
+}
@@ -19,8 +19,33 @@ public class ConnectivityReceiver extends BroadcastReceiver {
     public void onReceive(Context context, Intent intent) {
         Logger.debug(LOG_TAG, "onReceive");
 
-        manageWakeLock(context);
+        int settleWindow = new HostMonitorConfig(context).getConnectivitySettleWindow();
 
+        manageWakeLock(context, settleWindow);
+
+        // resolutions made on the previous network may not be valid anymore
+        DnsCache.getInstance().clear();
+
+        // the check in progress is now running against a stale connection
+        HostMonitor.onNetworkChanged();
+
+        // persistent connections are bound to the previous network. They're closed by the
+        // next check, so that sockets are not closed on the main thread
+        PersistentConnections.getInstance().onNetworkChanged();
+
+        Context appContext = context.getApplicationContext();
+
+        if (settleWindow == 0) {
+            CheckAlarm.cancelSettledCheck(appContext);
+            startCheck(appContext);
+            return;
+        }
+
+        // replaces the alarm of the previous connectivity change, if still pending
+        CheckAlarm.setSettledCheck(appContext, settleWindow);
+    }
+
+    private static void startCheck(Context context) {
         ConnectionType connectionType = HostMonitor.getCurrentConnectionType(context);
 
         Logger.debug(LOG_TAG, (connectionType == ConnectionType.NONE) ?
@@ -30,7 +55,9 @@ public class ConnectivityReceiver extends BroadcastReceiver {
         HostMonitor.start(context, connectionType);
     }
 
-    private synchronized void manageWakeLock(Context context) {
+    // the wake lock lasts also for the settle window, so the device doesn't sleep before
+    // the check gets started
+    private synchronized void manageWakeLock(Context context, int settleWindow) {
         if (wakeLock != null && wakeLock.isHeld()) {
             wakeLock.release();
         }
@@ -38,6 +65,6 @@ public class ConnectivityReceiver extends BroadcastReceiver {
         PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
         wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, LOG_TAG);
         wakeLock.setReferenceCounted(false);
-        wakeLock.acquire(10 * 1000);
+        wakeLock.acquire(settleWindow + 10 * 1000);
     }
 }
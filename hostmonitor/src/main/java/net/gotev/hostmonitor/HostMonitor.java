@@ -6,8 +6,12 @@ import android.content.Intent;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.os.PowerManager;
+import android.os.SystemClock;
 
-import java.net.Socket;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Service which performs reachability checks of the configured hosts and ports.
@@ -17,14 +21,33 @@ public class HostMonitor extends IntentService {
 
     private static final String LOG_TAG = HostMonitor.class.getSimpleName();
     private static final String ACTION_CHECK = "net.gotev.hostmonitor.check";
+    private static final String ACTION_SCHEDULED_CHECK = "net.gotev.hostmonitor.scheduled_check";
 
     private static final String PARAM_CONNECTION_TYPE = "net.gotev.hostmonitor.connection_type";
+    private static final String PARAM_NETWORK_GENERATION = "net.gotev.hostmonitor.network_generation";
+
+    // incremented on each connectivity change. A check started in a previous network
+    // generation has been overtaken, so it stops probing and discards the results which
+    // complete after the change
+    private static final AtomicInteger networkGeneration = new AtomicInteger();
 
     /**
      * Name of the parameter passed in the broadcast intent.
      */
     public static final String PARAM_STATUS = "HostStatus";
 
+    /**
+     * Name of the parameter passed in the broadcast intent when status changes are
+     * delivered in batch. It contains an {@link ArrayList} of {@link HostStatus}.
+     */
+    public static final String PARAM_STATUSES = "HostStatuses";
+
+    // status changes of the current check, when they are delivered in batch
+    private final ArrayList<HostStatus> mPendingStatuses = new ArrayList<>();
+
+    // network generation in which the current check has been started
+    private int mNetworkGeneration;
+
     public HostMonitor() {
         super(LOG_TAG);
     }
@@ -40,6 +63,18 @@ public class HostMonitor extends IntentService {
         return intent;
     }
 
+    /**
+     * Returns the {@link Intent} to start the reachability check of the hosts which are due,
+     * according to the {@link CheckScheduler}.
+     * @param context application context
+     * @return intent used to launch the service
+     */
+    static Intent getScheduledCheckIntent(Context context) {
+        Intent intent = new Intent(context, HostMonitor.class);
+        intent.setAction(ACTION_SCHEDULED_CHECK);
+        return intent;
+    }
+
     /**
      * Starts the host monitor check
      * @param context application context
@@ -57,9 +92,22 @@ public class HostMonitor extends IntentService {
         Intent intent = new Intent(context, HostMonitor.class);
         intent.setAction(ACTION_CHECK);
         intent.putExtra(PARAM_CONNECTION_TYPE, connectionType.ordinal());
+        intent.putExtra(PARAM_NETWORK_GENERATION, networkGeneration.get());
         context.startService(intent);
     }
 
+    /**
+     * Notifies that the device connectivity changed. The check in progress, if any, stops
+     * probing and discards the results of the probes which complete after the change, since
+     * they ran against the previous connection. The results applied before the change are
+     * still valid for the time they were taken, so they're persisted and delivered as usual
+     * and the checked hosts are scheduled again. The checks queued with the previous
+     * connection type are skipped.
+     */
+    static void onNetworkChanged() {
+        networkGeneration.incrementAndGet();
+    }
+
     /**
      * Stops the host monitor check.
      * @param context application context
@@ -70,72 +118,90 @@ public class HostMonitor extends IntentService {
 
     @Override
     protected void onHandleIntent(Intent intent) {
-        if (intent == null || !ACTION_CHECK.equals(intent.getAction())) return;
+        if (intent == null) return;
+
+        boolean scheduledCheck = ACTION_SCHEDULED_CHECK.equals(intent.getAction());
+        if (!scheduledCheck && !ACTION_CHECK.equals(intent.getAction())) return;
+
+        mNetworkGeneration = networkGeneration.get();
+
+        if (intent.getIntExtra(PARAM_NETWORK_GENERATION, mNetworkGeneration) != mNetworkGeneration) {
+            Logger.debug(LOG_TAG, "Skipping check queued before the last connectivity change");
+            return;
+        }
 
         PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
         PowerManager.WakeLock wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK,
                                                                   getClass().getSimpleName());
 
         wakeLock.acquire();
+        long wakeLockAcquired = System.nanoTime();
 
         HostMonitorConfig config = new HostMonitorConfig(this);
+        CheckScheduler scheduler = CheckScheduler.getInstance();
+        CheckRound round = new CheckRound(config.getCheckSettings(), config.getStatusTable(),
+                                          newMonitoredHosts(config), newRoundListener(config),
+                                          scheduler);
 
-        if (config.getHostsMap().isEmpty()) {
+        Collection<Host> hosts = round.getHostsToCheck(scheduledCheck,
+                                                       SystemClock.elapsedRealtime());
+
+        if (hosts.isEmpty()) {
             Logger.debug(LOG_TAG, "No hosts to check at this moment");
 
         } else {
-            ConnectionType connectionType = getConnectionType(intent);
+            round.check(getConnectionType(intent), hosts);
+
+            long writeStart = System.nanoTime();
+            if (config.saveHostsMap()) {
+                MetricsRecorder.onPersistenceWrite(System.nanoTime() - writeStart);
+            }
+            flushPendingStatuses(config);
 
-            if (connectionType == ConnectionType.NONE) {
-                notifyThatAllTheHostsAreUnreachable(connectionType, config);
-            } else {
-                checkReachability(connectionType, config);
+            if (isOvertaken()) {
+                Logger.debug(LOG_TAG, "Check overtaken by a connectivity change");
             }
+
+            round.schedule(hosts, SystemClock.elapsedRealtime());
         }
 
+        CheckAlarm.set(this, scheduler);
         wakeLock.release();
+        MetricsRecorder.onWakeLockReleased(System.nanoTime() - wakeLockAcquired);
+        MetricsRecorder.publish();
     }
 
-    private void notifyThatAllTheHostsAreUnreachable(ConnectionType connectionType,
-                                                     HostMonitorConfig config) {
-        Logger.debug(LOG_TAG, "No active connection. Notifying that all the hosts are unreachable");
-
-        for (Host host : config.getHostsMap().keySet()) {
-            Status previousStatus = config.getHostsMap().get(host);
-            Status newStatus = new Status(false, connectionType);
-
-            if (!newStatus.equals(previousStatus)) {
-                Logger.debug(LOG_TAG, "Host " + host.getHost() + " is currently unreachable on port "
-                        + host.getPort());
-
-                config.getHostsMap().put(host, newStatus);
-                notifyStatus(config.getBroadcastAction(), host, previousStatus, newStatus);
+    private static CheckRound.Hosts newMonitoredHosts(final HostMonitorConfig config) {
+        return new CheckRound.Hosts() {
+            @Override
+            public Probe getProbe(Host host) {
+                return config.getProbe(host);
             }
-        }
 
-        config.saveHostsMap();
+            @Override
+            public int getCheckInterval(int id) {
+                return config.getCheckInterval(id);
+            }
+        };
     }
 
-    private void checkReachability(ConnectionType connectionType, HostMonitorConfig config) {
-        Logger.debug(LOG_TAG, "Starting reachability check");
-
-        for (Host host : config.getHostsMap().keySet()) {
-            Status previousStatus = config.getHostsMap().get(host);
-            boolean currentReachable = isReachable(host, config.getSocketTimeout(), config.getMaxAttempts());
-            Status newStatus = new Status(currentReachable, connectionType);
-
-            if (!newStatus.equals(previousStatus)) {
-                Logger.debug(LOG_TAG, "Host " + host.getHost() + " is currently " +
-                        (currentReachable ? "reachable" : "unreachable") +
-                        " on port " + host.getPort() + " via " + connectionType);
+    private CheckRound.Listener newRoundListener(final HostMonitorConfig config) {
+        return new CheckRound.Listener() {
+            @Override
+            public void onStatusChanged(ProbeResult result, Status previousStatus,
+                                        Status newStatus) {
+                notifyStatus(config, result, previousStatus, newStatus);
+            }
 
-                config.getHostsMap().put(host, newStatus);
-                notifyStatus(config.getBroadcastAction(), host, previousStatus, newStatus);
+            @Override
+            public boolean isCancelled() {
+                return isOvertaken();
             }
-        }
+        };
+    }
 
-        config.saveHostsMap();
-        Logger.debug(LOG_TAG, "Reachability check finished!");
+    private boolean isOvertaken() {
+        return mNetworkGeneration != networkGeneration.get();
     }
 
     private ConnectionType getConnectionType(Intent intent) {
@@ -171,59 +237,60 @@ public class HostMonitor extends IntentService {
         return ConnectionType.NONE;
     }
 
-    private boolean isReachable(Host host, int connectTimeout, int maxAttempts) {
-        int attempts = 0;
-        boolean reachable = false;
-
-        while (attempts < maxAttempts) {
-            reachable = isReachable(host, connectTimeout);
-            if (reachable) break;
-            attempts++;
-        }
-
-        return reachable;
-    }
-
-    private boolean isReachable(Host host, int connectTimeout) {
-        boolean reachable;
-        Socket socket = null;
-
-        try {
-            socket = new Socket();
-            socket.connect(host.resolve(), connectTimeout);
-            reachable = true;
-
-        } catch (Exception exc) {
-            reachable = false;
-
-        } finally {
-            if (socket != null) {
-                try {
-                    socket.close();
-                } catch (Exception exc) {
-                    Logger.debug(LOG_TAG, "Error while closing socket.");
-                }
-            }
-        }
-
-        return reachable;
-    }
-
-    private void notifyStatus(String broadcastAction, Host host,
+    private void notifyStatus(HostMonitorConfig config, ProbeResult result,
                               Status previousStatus, Status currentStatus) {
+        Host host = result.getHost();
+        InetAddress address = result.getAddress();
+
         HostStatus status = new HostStatus()
                 .setHost(host.getHost())
                 .setPort(host.getPort())
                 .setPreviousReachable(previousStatus.isReachable())
                 .setPreviousConnectionType(previousStatus.getConnectionType())
                 .setReachable(currentStatus.isReachable())
-                .setConnectionType(currentStatus.getConnectionType());
+                .setConnectionType(currentStatus.getConnectionType())
+                .setAddress(address == null ? null : address.getHostAddress())
+                .setPreviousLatency(previousStatus.getLatency())
+                .setLatency(currentStatus.getLatency())
+                .setAttempts(result.getAttempts())
+                .setCheckTime(currentStatus.getCheckTime())
+                .setCheckInterval(config.getCheckInterval(host));
+
+        StatusListeners.dispatch(status);
+
+        if (!config.isStatusBroadcast()) return;
+
+        if (config.isBatchStatusDelivery()) {
+            mPendingStatuses.add(status);
+            return;
+        }
 
-        Logger.debug(LOG_TAG, "Broadcast with action: " + broadcastAction +
-                              " and status: " + status);
+        String broadcastAction = config.getBroadcastAction();
+        if (Logger.isEnabled(Logger.LogLevel.DEBUG)) {
+            Logger.debug(LOG_TAG, "Broadcast with action: %s and status: %s", broadcastAction,
+                         status);
+        }
         Intent broadcastStatus = new Intent(broadcastAction);
         broadcastStatus.putExtra(PARAM_STATUS, status);
 
         sendBroadcast(broadcastStatus);
+        MetricsRecorder.onBroadcast();
+    }
+
+    private void flushPendingStatuses(HostMonitorConfig config) {
+        if (mPendingStatuses.isEmpty()) return;
+
+        String broadcastAction = config.getBroadcastAction();
+        if (Logger.isEnabled(Logger.LogLevel.DEBUG)) {
+            Logger.debug(LOG_TAG, "Broadcast with action: %s and %d statuses", broadcastAction,
+                         mPendingStatuses.size());
+        }
+        Intent broadcastStatuses = new Intent(broadcastAction);
+        broadcastStatuses.putParcelableArrayListExtra(PARAM_STATUSES,
+                                                      new ArrayList<>(mPendingStatuses));
+        mPendingStatuses.clear();
+
+        sendBroadcast(broadcastStatuses);
+        MetricsRecorder.onBroadcast();
     }
 }
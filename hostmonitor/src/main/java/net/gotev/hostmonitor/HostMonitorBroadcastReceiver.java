@@ -6,6 +6,8 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.PowerManager;
 
+import java.util.List;
+
 /**
  * Reference implementation of the HostMonitor broadcast receiver.
  * @author gotev (Aleksandar Gotev)
@@ -14,7 +16,7 @@ public class HostMonitorBroadcastReceiver extends BroadcastReceiver {
 
     @Override
     public void onReceive(Context context, Intent intent) {
-        String action = new HostMonitorConfig(context).getBroadcastAction();
+        String action = HostMonitorConfig.getBroadcastAction(context);
 
         if (intent == null || action == null || !intent.getAction().equals(action)) {
             return;
@@ -26,8 +28,14 @@ public class HostMonitorBroadcastReceiver extends BroadcastReceiver {
 
         wakeLock.acquire();
 
-        HostStatus hostStatus = intent.getParcelableExtra(HostMonitor.PARAM_STATUS);
-        onHostStatusChanged(hostStatus);
+        if (intent.hasExtra(HostMonitor.PARAM_STATUSES)) {
+            List<HostStatus> hostStatuses =
+                    intent.getParcelableArrayListExtra(HostMonitor.PARAM_STATUSES);
+            onHostStatusesChanged(hostStatuses);
+        } else {
+            HostStatus hostStatus = intent.getParcelableExtra(HostMonitor.PARAM_STATUS);
+            onHostStatusChanged(hostStatus);
+        }
 
         wakeLock.release();
     }
@@ -43,7 +51,7 @@ public class HostMonitorBroadcastReceiver extends BroadcastReceiver {
      */
     public void register(final Context context) {
         final IntentFilter intentFilter = new IntentFilter();
-        intentFilter.addAction(new HostMonitorConfig(context).getBroadcastAction());
+        intentFilter.addAction(HostMonitorConfig.getBroadcastAction(context));
         context.registerReceiver(this, intentFilter);
     }
 
@@ -70,4 +78,20 @@ public class HostMonitorBroadcastReceiver extends BroadcastReceiver {
     public void onHostStatusChanged(HostStatus status) {
         Logger.info("HostMonitorBR", "host status changed: " + status);
     }
+
+    /**
+     * Method called with all the host status changes detected during a reachability check,
+     * when batch delivery is enabled with
+     * {@link HostMonitorConfig#setBatchStatusDelivery(boolean)}.
+     * By default it calls {@link #onHostStatusChanged(HostStatus)} for each status change.
+     * Override this in subclasses to handle all the changes at once.
+     * A partial wake lock is automatically held for you when code is executed inside this method.
+     * Once the execution ends, the wake lock gets released.
+     * @param statuses new host statuses
+     */
+    public void onHostStatusesChanged(List<HostStatus> statuses) {
+        for (HostStatus status : statuses) {
+            onHostStatusChanged(status);
+        }
+    }
 }
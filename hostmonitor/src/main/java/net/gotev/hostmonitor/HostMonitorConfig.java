@@ -1,17 +1,20 @@
 package net.gotev.hostmonitor;
 
-import android.app.AlarmManager;
-import android.app.PendingIntent;
 import android.content.Context;
 import android.content.SharedPreferences;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
 
 import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * Host Monitor configuration manager.
@@ -23,28 +26,95 @@ public class HostMonitorConfig {
     private static final String PREFS_FILE_NAME = "host_monitor_config";
 
     // shared preferences keys
+    // hosts were saved here as a single JSON string by previous versions
     private static final String KEY_HOSTS = "hosts";
     private static final String KEY_BROADCAST_ACTION = "broadcastAction";
     private static final String KEY_SOCKET_TIMEOUT = "socketTimeout";
     private static final String KEY_CHECK_INTERVAL = "checkInterval";
     private static final String KEY_MAX_ATTEMPTS = "maxAttempts";
+    private static final String KEY_PARALLELISM = "parallelism";
+    private static final String KEY_PROBE_ENGINE = "probeEngine";
+    private static final String KEY_DNS_CACHE_TTL = "dnsCacheTtl";
+    private static final String KEY_DNS_NEGATIVE_CACHE_TTL = "dnsNegativeCacheTtl";
+    private static final String KEY_RETRY_POLICY = "retryPolicy";
+    private static final String KEY_RETRY_POLICY_CLASS = "retryPolicyClass";
+    private static final String KEY_RETRY_TIME_BUDGET = "retryTimeBudget";
+    private static final String KEY_RACE_ALL_ADDRESSES = "raceAllAddresses";
+    private static final String KEY_LATENCY_CHANGE_THRESHOLD = "latencyChangeThreshold";
+    private static final String KEY_STATUS_STORAGE = "statusStorage";
+    private static final String KEY_BATCH_STATUS_DELIVERY = "batchStatusDelivery";
+    private static final String KEY_STATUS_BROADCAST = "statusBroadcast";
+    private static final String KEY_ADAPTIVE_MIN_CHECK_INTERVAL = "adaptiveMinCheckInterval";
+    private static final String KEY_ADAPTIVE_MAX_CHECK_INTERVAL = "adaptiveMaxCheckInterval";
+    private static final String KEY_ADAPTIVE_GROWTH_FACTOR = "adaptiveGrowthFactor";
+    private static final String KEY_CONNECTIVITY_SETTLE_WINDOW = "connectivitySettleWindow";
+    private static final String KEY_HYSTERESIS_UP_THRESHOLD = "hysteresisUpThreshold";
+    private static final String KEY_HYSTERESIS_DOWN_THRESHOLD = "hysteresisDownThreshold";
+    private static final String KEY_PERSISTENT_CONNECTIONS = "persistentConnections";
+    private static final String KEY_PERSISTENT_CONNECTIONS_RECHECK_INTERVAL =
+            "persistentConnectionsRecheckInterval";
+    // probes are saved for each host, with the host key appended
+    private static final String KEY_PROBE_PREFIX = "probe:";
+    private static final String KEY_PROBE_CLASS_PREFIX = "probeClass:";
 
     // default values
     private static final String DEFAULT_BROADCAST_ACTION = "net.gotev.hostmonitor.status";
     private static final int DEFAULT_SOCKET_TIMEOUT = 2000; //in milliseconds
     private static final int DEFAULT_CHECK_INTERVAL = 0; //in milliseconds
     private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final int DEFAULT_PARALLELISM = 1;
+    private static final ProbeEngine DEFAULT_PROBE_ENGINE = ProbeEngine.BLOCKING;
+    private static final int DEFAULT_DNS_CACHE_TTL = 60 * 1000; //in milliseconds
+    private static final int DEFAULT_DNS_NEGATIVE_CACHE_TTL = 10 * 1000; //in milliseconds
+    private static final int DEFAULT_RETRY_TIME_BUDGET = 0; //in milliseconds
+    private static final int DEFAULT_PERSISTENT_CONNECTIONS_RECHECK_INTERVAL = 5 * 60 * 1000; //in milliseconds
+    private static final int DEFAULT_LATENCY_CHANGE_THRESHOLD = 0; //in milliseconds
+    private static final StatusStorage DEFAULT_STATUS_STORAGE = StatusStorage.SHARED_PREFERENCES;
+    private static final int DEFAULT_ADAPTIVE_MIN_CHECK_INTERVAL = 0; //in milliseconds
+    private static final int DEFAULT_ADAPTIVE_MAX_CHECK_INTERVAL = 0; //in milliseconds
+    private static final float DEFAULT_ADAPTIVE_GROWTH_FACTOR = 2;
+    private static final int DEFAULT_CONNECTIVITY_SETTLE_WINDOW = 2000; //in milliseconds
+    private static final int DEFAULT_HYSTERESIS_THRESHOLD = 1;
     private static final int UNDEFINED = -1;
-    private static final int PERIODIC_CHECK_ID = 0;
+
+    // probes are stateless, so the hosts without their own probe share this one
+    private static final Probe DEFAULT_PROBE = new TcpProbe();
+
+    private static volatile Snapshot sSnapshot;
 
     private final Context mContext;
     private SharedPreferences mSharedPreferences;
 
-    private Map<Host, Status> mHostsMap;
+    private StatusStore mStatusStore;
+    // hosts added since the last save, with their check interval in milliseconds or UNDEFINED
+    // to keep the current one. Their statuses are kept only in the StatusTable
+    private final Map<Host, Integer> mAddedHosts = new HashMap<>();
+    private final Set<Host> mRemovedHosts = new HashSet<>();
+    // probes set or removed (null value) since the last save
+    private final Map<Host, Probe> mProbes = new HashMap<>();
     private String mBroadcastAction;
     private int mSocketTimeout = UNDEFINED;
     private int mCheckInterval = UNDEFINED;
     private int mMaxAttempts = UNDEFINED;
+    private int mParallelism = UNDEFINED;
+    private ProbeEngine mProbeEngine;
+    private int mDnsCacheTtl = UNDEFINED;
+    private int mDnsNegativeCacheTtl = UNDEFINED;
+    private RetryPolicy mRetryPolicy;
+    private int mRetryTimeBudget = UNDEFINED;
+    private Boolean mRaceAllAddresses;
+    private int mLatencyChangeThreshold = UNDEFINED;
+    private StatusStorage mStatusStorage;
+    private Boolean mBatchStatusDelivery;
+    private Boolean mStatusBroadcast;
+    private int mAdaptiveMinCheckInterval = UNDEFINED;
+    private int mAdaptiveMaxCheckInterval = UNDEFINED;
+    private float mAdaptiveGrowthFactor = UNDEFINED;
+    private int mConnectivitySettleWindow = UNDEFINED;
+    private int mHysteresisUpThreshold = UNDEFINED;
+    private int mHysteresisDownThreshold = UNDEFINED;
+    private Boolean mPersistentConnections;
+    private int mPersistentConnectionsRecheckInterval = UNDEFINED;
 
     /**
      * Creates a new Host Monitor configuration instance
@@ -62,26 +132,160 @@ public class HostMonitorConfig {
         return mSharedPreferences;
     }
 
-    Map<Host, Status> getHostsMap() {
-        if (mHostsMap == null) {
-            String json = getPrefs().getString(KEY_HOSTS, "");
+    /**
+     * Gets the process-wide snapshot of the persisted settings, loading it if needed.
+     */
+    private Snapshot getSnapshot() {
+        return getSnapshot(mContext);
+    }
 
-            if (json.isEmpty()) {
-                mHostsMap = new HashMap<>();
-            } else {
-                Type typeOfMap = new TypeToken<HashMap<Host, Status>>(){}.getType();
-                try {
-                    mHostsMap = new Gson().fromJson(json, typeOfMap);
-                } catch (Exception exc) {
-                    Logger.error(getClass().getSimpleName(),
-                                 "Error while deserializing hosts map: " + json
-                                 + ". Ignoring values.", exc);
-                    mHostsMap = new HashMap<>();
+    private static Snapshot getSnapshot(Context context) {
+        Snapshot snapshot = sSnapshot;
+
+        if (snapshot == null) {
+            synchronized (HostMonitorConfig.class) {
+                if (sSnapshot == null) {
+                    sSnapshot = new Snapshot(context.getApplicationContext()
+                            .getSharedPreferences(PREFS_FILE_NAME, Context.MODE_PRIVATE));
                 }
+                snapshot = sSnapshot;
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Discards the process-wide snapshot of the settings, so that it's loaded again from the
+     * persisted configuration when needed.
+     */
+    private static void invalidateSnapshot() {
+        synchronized (HostMonitorConfig.class) {
+            sSnapshot = null;
+        }
+    }
+
+    private StatusStore getStatusStore() {
+        if (mStatusStore == null) {
+            mStatusStore = getStatusStore(mContext, getSnapshot().statusStorage);
+        }
+
+        return mStatusStore;
+    }
+
+    private static StatusStore getStatusStore(Context context, StatusStorage storage) {
+        if (storage == StatusStorage.BINARY_FILE) {
+            return BinaryStatusStore.getInstance(context.getFilesDir());
+        }
+
+        return new SharedPreferencesStatusStore(context);
+    }
+
+    /**
+     * Moves all the hosts from the currently persisted storage to the newly set one.
+     */
+    private void migrateStatusStorage() {
+        Logger.debug(getClass().getSimpleName(), "moving hosts to " + mStatusStorage + " storage");
+
+        StatusTable table = getStatusTable();
+        StatusStore previousStore = getStatusStore();
+
+        mStatusStore = getStatusStore(mContext, mStatusStorage);
+        mStatusStore.clear();
+        // the changes not saved yet in the previous store are written as well
+        table.flushAll(mStatusStore);
+        previousStore.clear();
+    }
+
+    /**
+     * Gets the monitored hosts, including the changes not saved yet.
+     * @return unmodifiable collection of the monitored hosts. If no host has been added or
+     * removed, it's a view of the hosts in the status table, so it's not copied
+     */
+    Collection<Host> getHosts() {
+        Collection<Host> tableHosts = getStatusTable().getHosts();
+
+        if (mAddedHosts.isEmpty() && mRemovedHosts.isEmpty()) {
+            return tableHosts;
+        }
+
+        Set<Host> hosts = new HashSet<>(tableHosts);
+        hosts.removeAll(mRemovedHosts);
+        hosts.addAll(mAddedHosts.keySet());
+        return Collections.unmodifiableSet(hosts);
+    }
+
+    /**
+     * Checks if a host is monitored, including the changes not saved yet.
+     * @param host host
+     * @return true if monitored
+     */
+    private boolean isMonitored(Host host) {
+        return mAddedHosts.containsKey(host)
+                || (!mRemovedHosts.contains(host) && getStatusTable().getId(host) >= 0);
+    }
+
+    /**
+     * Gets the check interval set for a host, including the changes not saved yet.
+     * @param host host
+     * @return check interval in milliseconds, 0 if the global one is used, or
+     * {@link #UNDEFINED} if the host is not monitored
+     */
+    private int getOwnCheckInterval(Host host) {
+        Integer checkInterval = mAddedHosts.get(host);
+
+        if (checkInterval != null && checkInterval != UNDEFINED) return checkInterval;
+
+        // hosts removed and added again start from a new status
+        int id = mRemovedHosts.contains(host) ? -1 : getStatusTable().getId(host);
+
+        if (id >= 0) return getStatusTable().getCheckInterval(id);
+
+        return checkInterval != null ? 0 : UNDEFINED;
+    }
+
+    /**
+     * Gets the process-wide table of the hosts and their statuses, loading it if needed.
+     */
+    StatusTable getStatusTable() {
+        return getStatusTable(mContext);
+    }
+
+    /**
+     * Fills the status table with the persisted hosts.
+     */
+    private void loadStatusTable(StatusTable table) {
+        table.load(getStatusStore());
+        migrateLegacyHostsMap(table);
+    }
+
+    /**
+     * Moves the hosts saved as a single JSON string by previous versions of the library to the
+     * {@link StatusStore}.
+     */
+    private void migrateLegacyHostsMap(StatusTable table) {
+        String json = getPrefs().getString(KEY_HOSTS, "");
+
+        if (json.isEmpty()) return;
+
+        Logger.debug(getClass().getSimpleName(), "migrating legacy hosts map");
+
+        try {
+            Type typeOfMap = new TypeToken<HashMap<Host, Status>>(){}.getType();
+            Map<Host, Status> legacyHostsMap = new Gson().fromJson(json, typeOfMap);
+
+            for (Map.Entry<Host, Status> entry : legacyHostsMap.entrySet()) {
+                table.put(entry.getKey(), entry.getValue());
             }
+
+            table.flush(getStatusStore());
+        } catch (Exception exc) {
+            Logger.error(getClass().getSimpleName(),
+                         "Error while deserializing hosts map: " + json
+                         + ". Ignoring values.", exc);
         }
 
-        return mHostsMap;
+        getPrefs().edit().remove(KEY_HOSTS).apply();
     }
 
     /**
@@ -103,12 +307,22 @@ public class HostMonitorConfig {
      */
     public String getBroadcastAction() {
         if (mBroadcastAction == null) {
-            mBroadcastAction = getPrefs().getString(KEY_BROADCAST_ACTION, DEFAULT_BROADCAST_ACTION);
+            mBroadcastAction = getSnapshot().broadcastAction;
         }
 
         return mBroadcastAction;
     }
 
+    /**
+     * Gets the persisted broadcast action used for host status changes, without creating
+     * a configuration instance.
+     * @param context application context
+     * @return the persisted broadcast action string
+     */
+    static String getBroadcastAction(Context context) {
+        return getSnapshot(context).broadcastAction;
+    }
+
     /**
      * Adds a new host to be monitored. The change will be applied starting from the next
      * reachability scan.
@@ -119,13 +333,69 @@ public class HostMonitorConfig {
     public HostMonitorConfig add(final String host, final int port) {
         Host newHost = new Host(host, port);
 
-        if (getHostsMap().keySet().contains(newHost)) return this;
+        if (isMonitored(newHost)) return this;
+
+        mAddedHosts.put(newHost, UNDEFINED);
+
+        return this;
+    }
+
+    /**
+     * Adds a new host to be monitored with its own check interval, which overrides the one set
+     * with {@link #setCheckIntervalInSeconds(int)} or {@link #setCheckIntervalInMinutes(int)}.
+     * If the host is already monitored, its check interval gets updated.
+     * The change will be applied starting from the next reachability scan.
+     * @param host host IP address or FQDN
+     * @param port TCP port to check
+     * @param checkIntervalInSeconds how often to check the host reachability.
+     *                               0 means that the global check interval is used
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig add(final String host, final int port,
+                                 final int checkIntervalInSeconds) {
+        if (checkIntervalInSeconds < 0)
+            throw new IllegalArgumentException("Specify a zero or positive check interval!");
+
+        Host newHost = new Host(host, port);
+        int checkInterval = checkIntervalInSeconds * 1000;
+
+        if (getOwnCheckInterval(newHost) == checkInterval) return this;
 
-        mHostsMap.put(newHost, new Status());
+        mAddedHosts.put(newHost, checkInterval);
 
         return this;
     }
 
+    /**
+     * Adds a new host to be monitored with the given probe, which checks the host health once
+     * the TCP connection is established. If the host is already monitored, its probe gets
+     * updated. The change will be applied starting from the next reachability scan.
+     * @param host host IP address or FQDN
+     * @param port TCP port to check
+     * @param probe probe to use, e.g. {@link HttpHeadProbe} or {@link TlsHandshakeProbe}.
+     *              By default a {@link TcpProbe} is used
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig add(final String host, final int port, final Probe probe) {
+        if (probe == null)
+            throw new IllegalArgumentException("Probe MUST not be null!");
+
+        add(host, port);
+        mProbes.put(new Host(host, port), probe);
+
+        return this;
+    }
+
+    /**
+     * Gets the probe used to check the health of a monitored host.
+     * @param host monitored host
+     * @return the probe of the host, or a shared {@link TcpProbe} if not set
+     */
+    Probe getProbe(Host host) {
+        Probe probe = mProbes.containsKey(host) ? mProbes.get(host) : getSnapshot().probes.get(host);
+        return probe == null ? DEFAULT_PROBE : probe;
+    }
+
     /**
      * Remove a monitored host. The change will be applied starting from the next
      * reachability scan.
@@ -136,9 +406,11 @@ public class HostMonitorConfig {
     public HostMonitorConfig remove(final String host, final int port) {
         Host toRemove = new Host(host, port);
 
-        if (!getHostsMap().keySet().contains(toRemove)) return this;
+        if (!isMonitored(toRemove)) return this;
 
-        mHostsMap.remove(toRemove);
+        mAddedHosts.remove(toRemove);
+        mRemovedHosts.add(toRemove);
+        mProbes.put(toRemove, null);
 
         return this;
     }
@@ -148,10 +420,15 @@ public class HostMonitorConfig {
      * @return {@link HostMonitorConfig}
      */
     public HostMonitorConfig removeAll() {
-        if (mHostsMap != null) {
-            mHostsMap.clear();
+        Collection<Host> hosts = getHosts();
+
+        for (Host host : hosts) {
+            mProbes.put(host, null);
         }
 
+        mRemovedHosts.addAll(hosts);
+        mAddedHosts.clear();
+
         return this;
     }
 
@@ -189,7 +466,7 @@ public class HostMonitorConfig {
      */
     public int getSocketTimeout() {
         if (mSocketTimeout <= 0) {
-            mSocketTimeout = getPrefs().getInt(KEY_SOCKET_TIMEOUT, DEFAULT_SOCKET_TIMEOUT);
+            mSocketTimeout = getSnapshot().socketTimeout;
         }
 
         return mSocketTimeout;
@@ -230,12 +507,179 @@ public class HostMonitorConfig {
      */
     public int getCheckInterval() {
         if (mCheckInterval <= 0) {
-            mCheckInterval = getPrefs().getInt(KEY_CHECK_INTERVAL, DEFAULT_CHECK_INTERVAL);
+            mCheckInterval = getSnapshot().checkInterval;
         }
 
         return mCheckInterval;
     }
 
+    /**
+     * Gets the check interval of a monitored host.
+     * @param host monitored host
+     * @return the check interval of the host if set, otherwise its adaptive check interval if
+     * enabled, otherwise the global one, in milliseconds
+     */
+    int getCheckInterval(Host host) {
+        int checkInterval = getOwnCheckInterval(host);
+
+        if (checkInterval > 0) return checkInterval;
+
+        int id = mRemovedHosts.contains(host) ? -1 : getStatusTable().getId(host);
+
+        if (id >= 0 && isAdaptiveCheckInterval()
+                && getStatusTable().getAdaptiveCheckInterval(id) > 0) {
+            return getStatusTable().getAdaptiveCheckInterval(id);
+        }
+
+        return getCheckInterval();
+    }
+
+    /**
+     * Gets the check interval of a monitored host, as saved in the status table.
+     * @param id id of the host in the status table
+     * @return the check interval of the host if set, otherwise its adaptive check interval if
+     * enabled, otherwise the global one, in milliseconds
+     */
+    int getCheckInterval(int id) {
+        StatusTable table = getStatusTable();
+
+        if (table.getCheckInterval(id) > 0) {
+            return table.getCheckInterval(id);
+        }
+
+        if (isAdaptiveCheckInterval() && table.getAdaptiveCheckInterval(id) > 0) {
+            return table.getAdaptiveCheckInterval(id);
+        }
+
+        return getCheckInterval();
+    }
+
+    /**
+     * Gets the interval after which a monitored host is going to be checked again.
+     * It's the check interval of the host if set, otherwise its current adaptive check
+     * interval if enabled, otherwise the global check interval.
+     * @param host host IP address or FQDN
+     * @param port TCP port
+     * @return the effective check interval in milliseconds, or 0 if the host is not checked
+     * periodically or it's not monitored
+     */
+    public int getEffectiveCheckInterval(final String host, final int port) {
+        Host monitoredHost = new Host(host, port);
+
+        if (!isMonitored(monitoredHost)) return 0;
+
+        return getCheckInterval(monitoredHost);
+    }
+
+    /**
+     * Enables the adaptive check interval for the hosts which don't have their own check
+     * interval. The interval of each host starts from the minimum, is multiplied by the
+     * growth factor after each check in which the host status stays the same, up to the
+     * maximum, and drops back to the minimum as soon as the status changes. In this way,
+     * stable hosts are checked less and less often, while flapping hosts are checked
+     * frequently.
+     * @param minSeconds minimum check interval in seconds
+     * @param maxSeconds maximum check interval in seconds
+     * @param growthFactor factor by which the interval grows after each unchanged check
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig setAdaptiveCheckInterval(int minSeconds, int maxSeconds,
+                                                      float growthFactor) {
+        if (minSeconds < 1)
+            throw new IllegalArgumentException("Specify at least one second minimum interval!");
+
+        if (maxSeconds < minSeconds)
+            throw new IllegalArgumentException("Maximum interval MUST not be less than the minimum!");
+
+        if (growthFactor < 1)
+            throw new IllegalArgumentException("Specify a growth factor of at least 1!");
+
+        mAdaptiveMinCheckInterval = minSeconds * 1000;
+        mAdaptiveMaxCheckInterval = maxSeconds * 1000;
+        mAdaptiveGrowthFactor = growthFactor;
+        return this;
+    }
+
+    /**
+     * Disables the adaptive check interval (it's the default).
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig disableAdaptiveCheckInterval() {
+        mAdaptiveMinCheckInterval = DEFAULT_ADAPTIVE_MIN_CHECK_INTERVAL;
+        mAdaptiveMaxCheckInterval = DEFAULT_ADAPTIVE_MAX_CHECK_INTERVAL;
+        mAdaptiveGrowthFactor = DEFAULT_ADAPTIVE_GROWTH_FACTOR;
+        return this;
+    }
+
+    /**
+     * Checks if the adaptive check interval is enabled. By default is disabled.
+     * @return true if enabled, false otherwise
+     */
+    public boolean isAdaptiveCheckInterval() {
+        return getAdaptiveMaxCheckInterval() > 0;
+    }
+
+    /**
+     * Gets the minimum adaptive check interval in milliseconds.
+     * @return the configured minimum interval, or 0 if the adaptive check interval is disabled
+     */
+    public int getAdaptiveMinCheckInterval() {
+        if (mAdaptiveMinCheckInterval < 0) {
+            mAdaptiveMinCheckInterval = getSnapshot().adaptiveMinCheckInterval;
+        }
+
+        return mAdaptiveMinCheckInterval;
+    }
+
+    /**
+     * Gets the maximum adaptive check interval in milliseconds.
+     * @return the configured maximum interval, or 0 if the adaptive check interval is disabled
+     */
+    public int getAdaptiveMaxCheckInterval() {
+        if (mAdaptiveMaxCheckInterval < 0) {
+            mAdaptiveMaxCheckInterval = getSnapshot().adaptiveMaxCheckInterval;
+        }
+
+        return mAdaptiveMaxCheckInterval;
+    }
+
+    /**
+     * Gets the factor by which the adaptive check interval grows after each unchanged check.
+     * Default value is 2.
+     * @return the configured growth factor
+     */
+    public float getAdaptiveGrowthFactor() {
+        if (mAdaptiveGrowthFactor < 0) {
+            mAdaptiveGrowthFactor = getSnapshot().adaptiveGrowthFactor;
+        }
+
+        return mAdaptiveGrowthFactor;
+    }
+
+    /**
+     * Gets the settings used by a {@link ReachabilityCheck}.
+     * @return settings of the check
+     */
+    CheckSettings getCheckSettings() {
+        return new CheckSettings()
+                .setSocketTimeout(getSocketTimeout())
+                .setMaxAttempts(getMaxAttempts())
+                .setRetryPolicy(getRetryPolicy())
+                .setRetryTimeBudget(getRetryTimeBudget())
+                .setRaceAllAddresses(isRaceAllAddresses())
+                .setProbeEngine(getProbeEngine())
+                .setParallelism(getParallelism())
+                .setDnsCacheTtl(getDnsCacheTtl())
+                .setDnsNegativeCacheTtl(getDnsNegativeCacheTtl())
+                .setLatencyChangeThreshold(getLatencyChangeThreshold())
+                .setHysteresis(getHysteresisUpThreshold(), getHysteresisDownThreshold())
+                .setPersistentConnections(isPersistentConnections())
+                .setPersistentConnectionsRecheckInterval(getPersistentConnectionsRecheckInterval())
+                .setAdaptiveCheckInterval(getAdaptiveMinCheckInterval(),
+                                          getAdaptiveMaxCheckInterval(),
+                                          getAdaptiveGrowthFactor());
+    }
+
     /**
      * Sets the maximum number of socket connections to perform before notifying that the port
      * is unreachable.
@@ -257,16 +701,562 @@ public class HostMonitorConfig {
      */
     public int getMaxAttempts() {
         if (mMaxAttempts <= 0) {
-            mMaxAttempts = getPrefs().getInt(KEY_MAX_ATTEMPTS, DEFAULT_MAX_ATTEMPTS);
+            mMaxAttempts = getSnapshot().maxAttempts;
         }
 
         return mMaxAttempts;
     }
 
-    void saveHostsMap() {
-        Logger.debug(getClass().getSimpleName(), "saving hosts status map");
-        Gson gson = new GsonBuilder().enableComplexMapKeySerialization().create();
-        getPrefs().edit().putString(KEY_HOSTS, gson.toJson(mHostsMap)).apply();
+    /**
+     * Sets the maximum number of hosts to check at the same time. With the default value of 1,
+     * hosts are checked one after another, so a round lasts the sum of all the checks. With
+     * a higher value, a round lasts about as long as the slowest host and each status change
+     * is notified as soon as its check finishes.
+     * @param parallelism maximum number of concurrent checks (must be at least 1)
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Set at least one concurrent check!");
+
+        mParallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Gets the maximum number of hosts to check at the same time. Default value is 1.
+     * @return number of concurrent checks
+     */
+    public int getParallelism() {
+        if (mParallelism <= 0) {
+            mParallelism = getSnapshot().parallelism;
+        }
+
+        return mParallelism;
+    }
+
+    /**
+     * Sets the engine used to perform reachability checks.
+     * With {@link ProbeEngine#SELECTOR} all the hosts are checked together from a single
+     * thread and the parallelism setting is ignored.
+     * @param probeEngine engine to use
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig setProbeEngine(ProbeEngine probeEngine) {
+        if (probeEngine == null)
+            throw new IllegalArgumentException("Probe engine MUST not be null!");
+
+        mProbeEngine = probeEngine;
+        return this;
+    }
+
+    /**
+     * Gets the engine used to perform reachability checks.
+     * Default value is {@link ProbeEngine#BLOCKING}.
+     * @return the configured probe engine
+     */
+    public ProbeEngine getProbeEngine() {
+        if (mProbeEngine == null) {
+            mProbeEngine = getSnapshot().probeEngine;
+        }
+
+        return mProbeEngine;
+    }
+
+    /**
+     * Sets for how long a successful host name resolution is reused before performing a new
+     * DNS lookup. Cached resolutions are discarded whenever the device connectivity changes.
+     * 0 disables the cache.
+     * @param seconds how long to cache resolved addresses
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig setDnsCacheTtlInSeconds(int seconds) {
+        if (seconds < 0)
+            throw new IllegalArgumentException("Specify a zero or positive TTL!");
+
+        mDnsCacheTtl = seconds * 1000;
+        return this;
+    }
+
+    /**
+     * Gets for how long a successful host name resolution is cached, in milliseconds.
+     * Default value is 60 seconds.
+     * @return the configured DNS cache TTL in milliseconds
+     */
+    public int getDnsCacheTtl() {
+        if (mDnsCacheTtl < 0) {
+            mDnsCacheTtl = getSnapshot().dnsCacheTtl;
+        }
+
+        return mDnsCacheTtl;
+    }
+
+    /**
+     * Sets for how long a failed host name resolution is remembered before trying a new
+     * DNS lookup. 0 disables negative caching.
+     * @param seconds how long to cache failed resolutions
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig setDnsNegativeCacheTtlInSeconds(int seconds) {
+        if (seconds < 0)
+            throw new IllegalArgumentException("Specify a zero or positive TTL!");
+
+        mDnsNegativeCacheTtl = seconds * 1000;
+        return this;
+    }
+
+    /**
+     * Gets for how long a failed host name resolution is cached, in milliseconds.
+     * Default value is 10 seconds.
+     * @return the configured DNS negative cache TTL in milliseconds
+     */
+    public int getDnsNegativeCacheTtl() {
+        if (mDnsNegativeCacheTtl < 0) {
+            mDnsNegativeCacheTtl = getSnapshot().dnsNegativeCacheTtl;
+        }
+
+        return mDnsNegativeCacheTtl;
+    }
+
+    /**
+     * Sets the policy which decides how long to wait before retrying a failed connection
+     * attempt. The policy gets persisted with Gson, so custom implementations must be
+     * serializable and deserializable with it.
+     * @param retryPolicy retry policy (e.g. {@link ExponentialBackoffRetryPolicy})
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig setRetryPolicy(RetryPolicy retryPolicy) {
+        if (retryPolicy == null)
+            throw new IllegalArgumentException("Retry policy MUST not be null!");
+
+        mRetryPolicy = retryPolicy;
+        return this;
+    }
+
+    /**
+     * Gets the policy which decides how long to wait before retrying a failed connection
+     * attempt. By default, failed attempts are retried immediately.
+     * @return the configured retry policy
+     */
+    public RetryPolicy getRetryPolicy() {
+        if (mRetryPolicy == null) {
+            mRetryPolicy = getSnapshot().retryPolicy;
+        }
+
+        return mRetryPolicy;
+    }
+
+    /**
+     * Sets the maximum time to spend on a single host in each reachability check, including
+     * connection attempts and waits between them. When the budget is exhausted, the host is
+     * considered unreachable even if not all the attempts have been made.
+     * 0 means no limit (it's the default value).
+     * @param seconds maximum time to spend on each host
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig setRetryTimeBudgetInSeconds(int seconds) {
+        if (seconds < 0)
+            throw new IllegalArgumentException("Specify a zero or positive time budget!");
+
+        mRetryTimeBudget = seconds * 1000;
+        return this;
+    }
+
+    /**
+     * Gets the maximum time to spend on a single host in each reachability check, in
+     * milliseconds. By default is zero, which means no limit.
+     * @return the configured time budget in milliseconds
+     */
+    public int getRetryTimeBudget() {
+        if (mRetryTimeBudget < 0) {
+            mRetryTimeBudget = getSnapshot().retryTimeBudget;
+        }
+
+        return mRetryTimeBudget;
+    }
+
+    /**
+     * Enables or disables connection racing across all the addresses of each host.
+     * When enabled, each connection attempt resolves all the IPv4 and IPv6 addresses of the
+     * host and connects to them with staggered starts, alternating address families
+     * (RFC 8305, Happy Eyeballs). The first connection which succeeds wins, the others are
+     * cancelled and the winning address is reported in {@link HostStatus#getAddress()}.
+     * When disabled (it's the default), only the first resolved address is checked.
+     * Hosts which have a {@link Probe} other than {@link TcpProbe} are always connected to
+     * their first resolved address.
+     * @param raceAllAddresses true to race all the addresses, false to use only the first one
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig setRaceAllAddresses(boolean raceAllAddresses) {
+        mRaceAllAddresses = raceAllAddresses;
+        return this;
+    }
+
+    /**
+     * Checks if connection racing across all the addresses of each host is enabled.
+     * By default is disabled.
+     * @return true if enabled, false otherwise
+     */
+    public boolean isRaceAllAddresses() {
+        if (mRaceAllAddresses == null) {
+            mRaceAllAddresses = getSnapshot().raceAllAddresses;
+        }
+
+        return mRaceAllAddresses;
+    }
+
+    /**
+     * Sets the latency change which triggers a status notification even if the host
+     * reachability and connection type did not change. The latency is compared with the one
+     * of the last notification for the same host, so slow drifts get notified as well.
+     * 0 means that latency changes are not notified (it's the default value).
+     * @param millisecs latency change threshold in milliseconds
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig setLatencyChangeThreshold(int millisecs) {
+        if (millisecs < 0)
+            throw new IllegalArgumentException("Specify a zero or positive threshold!");
+
+        mLatencyChangeThreshold = millisecs;
+        return this;
+    }
+
+    /**
+     * Gets the latency change which triggers a status notification, in milliseconds.
+     * By default is zero, so latency changes are not notified.
+     * @return the configured threshold in milliseconds
+     */
+    public int getLatencyChangeThreshold() {
+        if (mLatencyChangeThreshold < 0) {
+            mLatencyChangeThreshold = getSnapshot().latencyChangeThreshold;
+        }
+
+        return mLatencyChangeThreshold;
+    }
+
+    /**
+     * Sets the storage used to persist the status of the monitored hosts. When the storage
+     * changes, the hosts are moved to the new storage on {@link #save()}.
+     * {@link StatusStorage#BINARY_FILE} keeps the cost of reading and updating statuses flat
+     * as the number of hosts grows.
+     * @param statusStorage storage to use
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig setStatusStorage(StatusStorage statusStorage) {
+        if (statusStorage == null)
+            throw new IllegalArgumentException("Status storage MUST not be null!");
+
+        mStatusStorage = statusStorage;
+        return this;
+    }
+
+    /**
+     * Gets the storage used to persist the status of the monitored hosts.
+     * Default value is {@link StatusStorage#SHARED_PREFERENCES}.
+     * @return the configured status storage
+     */
+    public StatusStorage getStatusStorage() {
+        if (mStatusStorage == null) {
+            mStatusStorage = getSnapshot().statusStorage;
+        }
+
+        return mStatusStorage;
+    }
+
+    /**
+     * Enables or disables batch delivery of status changes. When enabled, all the status
+     * changes detected during a reachability check are sent with a single broadcast and
+     * delivered to {@link HostMonitorBroadcastReceiver#onHostStatusesChanged(java.util.List)},
+     * so only one wake lock is acquired per check. When disabled (it's the default), a
+     * broadcast is sent for each status change.
+     * @param batchStatusDelivery true to deliver status changes in batch, false otherwise
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig setBatchStatusDelivery(boolean batchStatusDelivery) {
+        mBatchStatusDelivery = batchStatusDelivery;
+        return this;
+    }
+
+    /**
+     * Checks if batch delivery of status changes is enabled. By default is disabled.
+     * @return true if enabled, false otherwise
+     */
+    public boolean isBatchStatusDelivery() {
+        if (mBatchStatusDelivery == null) {
+            mBatchStatusDelivery = getSnapshot().batchStatusDelivery;
+        }
+
+        return mBatchStatusDelivery;
+    }
+
+    /**
+     * Enables or disables the broadcasts of the status changes. If all the consumers of the
+     * status changes are in the same process in which the checks run, register them with
+     * {@link #addStatusListener(HostStatusListener, Executor)} and disable the broadcasts,
+     * to avoid the cost of parceling each change and delivering it through the system.
+     * Keep them enabled (it's the default) if you have receivers in other processes.
+     * @param statusBroadcast true to broadcast status changes, false otherwise
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig setStatusBroadcast(boolean statusBroadcast) {
+        mStatusBroadcast = statusBroadcast;
+        return this;
+    }
+
+    /**
+     * Checks if status changes are broadcast. By default is enabled.
+     * @return true if enabled, false otherwise
+     */
+    public boolean isStatusBroadcast() {
+        if (mStatusBroadcast == null) {
+            mStatusBroadcast = getSnapshot().statusBroadcast;
+        }
+
+        return mStatusBroadcast;
+    }
+
+    /**
+     * Adds a listener which receives the host status changes directly, without broadcasts.
+     * It must be in the same process in which the checks run. Each change is delivered with
+     * {@link Executor#execute(Runnable)} on the given executor, so that a slow listener
+     * doesn't delay the checks, unless the executor runs the tasks on the calling thread.
+     * Unlike the other settings, listeners are not persisted and they are applied
+     * immediately, without the need to call {@link #save()}, so add them in your
+     * Application's onCreate. Adding a listener already added replaces its executor.
+     * @param listener status listener
+     * @param executor executor on which the listener is called
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig addStatusListener(HostStatusListener listener, Executor executor) {
+        if (listener == null)
+            throw new IllegalArgumentException("listener MUST not be null!");
+
+        if (executor == null)
+            throw new IllegalArgumentException("executor MUST not be null!");
+
+        StatusListeners.add(listener, executor);
+        return this;
+    }
+
+    /**
+     * Removes a status listener, if added.
+     * @param listener status listener
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig removeStatusListener(HostStatusListener listener) {
+        if (listener == null)
+            throw new IllegalArgumentException("listener MUST not be null!");
+
+        StatusListeners.remove(listener);
+        return this;
+    }
+
+    /**
+     * Sets how long to wait for the connectivity to settle before checking the hosts.
+     * Connectivity changes happening within this time from each other (e.g. during a WiFi
+     * handover) are coalesced into a single reachability check, performed with the final
+     * connection type. 0 means that each connectivity change triggers a check immediately.
+     * Default value is 2 seconds.
+     * @param millisecs settle window in milliseconds
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig setConnectivitySettleWindow(int millisecs) {
+        if (millisecs < 0)
+            throw new IllegalArgumentException("Specify a zero or positive settle window!");
+
+        mConnectivitySettleWindow = millisecs;
+        return this;
+    }
+
+    /**
+     * Gets how long to wait for the connectivity to settle before checking the hosts.
+     * @return the configured settle window in milliseconds
+     */
+    public int getConnectivitySettleWindow() {
+        if (mConnectivitySettleWindow < 0) {
+            mConnectivitySettleWindow = getSnapshot().connectivitySettleWindow;
+        }
+
+        return mConnectivitySettleWindow;
+    }
+
+    /**
+     * Sets how many consecutive check results must agree before a reachability change of a
+     * host gets committed and notified. Results which don't reach the threshold are counted
+     * for each host, and the counter restarts as soon as a result agrees with the current
+     * status. This suppresses reachable/unreachable flip-flops on lossy links.
+     * When the device has no connection, hosts become unreachable immediately.
+     * By default both thresholds are 1, so every change is notified immediately.
+     * @param upThreshold consecutive results needed to notify that a host became reachable
+     * @param downThreshold consecutive results needed to notify that a host became unreachable
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig setHysteresis(int upThreshold, int downThreshold) {
+        if (upThreshold < 1 || downThreshold < 1)
+            throw new IllegalArgumentException("Specify at least one consecutive result!");
+
+        mHysteresisUpThreshold = upThreshold;
+        mHysteresisDownThreshold = downThreshold;
+        return this;
+    }
+
+    /**
+     * Gets how many consecutive results are needed to notify that a host became reachable.
+     * Default value is 1.
+     * @return the configured threshold
+     */
+    public int getHysteresisUpThreshold() {
+        if (mHysteresisUpThreshold <= 0) {
+            mHysteresisUpThreshold = getSnapshot().hysteresisUpThreshold;
+        }
+
+        return mHysteresisUpThreshold;
+    }
+
+    /**
+     * Gets how many consecutive results are needed to notify that a host became unreachable.
+     * Default value is 1.
+     * @return the configured threshold
+     */
+    public int getHysteresisDownThreshold() {
+        if (mHysteresisDownThreshold <= 0) {
+            mHysteresisDownThreshold = getSnapshot().hysteresisDownThreshold;
+        }
+
+        return mHysteresisDownThreshold;
+    }
+
+    /**
+     * Enables or disables persistent connections. When enabled, one long-lived connection
+     * with TCP keepalive is kept open to each host, and checks only verify without blocking
+     * that it has not been closed or reset by the host, so no handshake is made while the
+     * host stays reachable. A new connection is made only when the previous one dropped,
+     * the device connectivity changed or the recheck interval elapsed.
+     * This is useful for hosts checked very often.
+     * Hosts which have a {@link Probe} other than {@link TcpProbe} are checked as usual.
+     * By default is disabled.
+     * Bear in mind that a host which disappears without closing the connection is detected
+     * only when TCP keepalive fails, which may take hours, or when the connection gets
+     * made again after the recheck interval.
+     * While a connection is kept, the latency of the checks is the time spent to check it.
+     * @param persistentConnections true to keep persistent connections, false otherwise
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig setPersistentConnections(boolean persistentConnections) {
+        mPersistentConnections = persistentConnections;
+        return this;
+    }
+
+    /**
+     * Checks if persistent connections are enabled. By default are disabled.
+     * @return true if enabled, false otherwise
+     */
+    public boolean isPersistentConnections() {
+        if (mPersistentConnections == null) {
+            mPersistentConnections = getSnapshot().persistentConnections;
+        }
+
+        return mPersistentConnections;
+    }
+
+    /**
+     * Sets the maximum age of a persistent connection. Older connections are closed and made
+     * again, so that a host which silently disappeared is detected with a new handshake
+     * without waiting for TCP keepalive. 0 means no limit. By default is 5 minutes.
+     * @param seconds maximum age of a persistent connection
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig setPersistentConnectionsRecheckIntervalInSeconds(int seconds) {
+        if (seconds < 0)
+            throw new IllegalArgumentException("Specify a zero or positive recheck interval!");
+
+        mPersistentConnectionsRecheckInterval = seconds * 1000;
+        return this;
+    }
+
+    /**
+     * Gets the maximum age of a persistent connection, in milliseconds.
+     * By default is 5 minutes. 0 means no limit.
+     * @return the configured recheck interval in milliseconds
+     */
+    public int getPersistentConnectionsRecheckInterval() {
+        if (mPersistentConnectionsRecheckInterval < 0) {
+            mPersistentConnectionsRecheckInterval =
+                    getSnapshot().persistentConnectionsRecheckInterval;
+        }
+
+        return mPersistentConnectionsRecheckInterval;
+    }
+
+    /**
+     * Sets the listener which receives the metrics of the checks (counters of rounds, probes
+     * and their outcomes, broadcasts, and histograms of DNS, connection, persistence and wake
+     * lock times) at the end of each check round.
+     * Unlike the other settings, the listener is not persisted and it's applied immediately,
+     * without the need to call {@link #save()}, so set it in your Application's onCreate.
+     * @param listener metrics listener
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig setMetricsListener(MetricsListener listener) {
+        if (listener == null)
+            throw new IllegalArgumentException("listener MUST not be null!");
+
+        MetricsRecorder.setListener(listener);
+        return this;
+    }
+
+    /**
+     * Removes the metrics listener, if any. Metrics are still recorded.
+     * @return {@link HostMonitorConfig}
+     */
+    public HostMonitorConfig removeMetricsListener() {
+        MetricsRecorder.setListener(null);
+        return this;
+    }
+
+    /**
+     * Applies the hosts added, removed or updated since the last save to the status table,
+     * then persists all the changes of the table, including the ones made by the checks.
+     * If nothing changed, nothing gets written.
+     * @return true if the changes have been written, false if there were no changes
+     */
+    boolean saveHostsMap() {
+        StatusTable table = getStatusTable();
+
+        // the table is locked, so that no check result gets overwritten by an older status
+        synchronized (table) {
+            // removals first, so that the hosts removed and added again start from a new status
+            for (Host host : mRemovedHosts) {
+                table.remove(host);
+            }
+
+            for (Map.Entry<Host, Integer> entry : mAddedHosts.entrySet()) {
+                int checkInterval = entry.getValue();
+                Status status = table.getStatus(entry.getKey());
+
+                if (status == null) {
+                    status = new Status();
+                } else if (checkInterval == UNDEFINED) {
+                    continue;
+                }
+
+                if (checkInterval != UNDEFINED) {
+                    status.setCheckInterval(checkInterval);
+                }
+
+                table.put(entry.getKey(), status);
+            }
+        }
+
+        mAddedHosts.clear();
+        mRemovedHosts.clear();
+
+        if (!table.flush(getStatusStore())) {
+            Logger.debug(getClass().getSimpleName(), "hosts status map unchanged, skipping save");
+            return false;
+        }
+
+        return true;
     }
 
     /**
@@ -277,32 +1267,77 @@ public class HostMonitorConfig {
     public static void reset(Context context) {
         Logger.debug(HostMonitor.class.getSimpleName(), "reset configuration");
         context.getSharedPreferences(PREFS_FILE_NAME, Context.MODE_PRIVATE).edit().clear().apply();
+        new SharedPreferencesStatusStore(context).clear();
+        BinaryStatusStore.getInstance(context.getFilesDir()).clear();
+        invalidateSnapshot();
+        StatusTable.getInstance().clear();
 
         Util.setBroadcastReceiverEnabled(context, ConnectivityReceiver.class, false);
 
-        Logger.debug(HostMonitor.class.getSimpleName(), "cancelling scheduled checks");
-        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-        alarmManager.cancel(getPeriodicCheckIntent(context));
+        CheckScheduler.getInstance().clear();
+        CheckAlarm.cancel(context);
+        CheckAlarm.cancelSettledCheck(context);
+        PersistentConnections.getInstance().closeAll();
+    }
+
+    /**
+     * Gets the current status of a monitored host and port. It can be called from any thread,
+     * also on hot paths, as it doesn't lock and doesn't do any I/O, except the first time
+     * it's called in the process, when the persisted statuses are loaded.
+     * The status is updated as soon as each check result is applied.
+     * @param context application context
+     * @param host host name or IP address
+     * @param port port number
+     * @return status, or null if the host and port are not monitored
+     */
+    public static ReachabilityStatus getStatus(Context context, String host, int port) {
+        return getStatusTable(context).get(new Host(host, port));
+    }
+
+    /**
+     * Gets the current status of all the monitored hosts and ports. Like
+     * {@link #getStatus(Context, String, int)}, it can be called from any thread.
+     * @param context application context
+     * @return unmodifiable list of the statuses
+     */
+    public static List<ReachabilityStatus> getStatusSnapshot(Context context) {
+        return getStatusTable(context).snapshot();
+    }
+
+    private static StatusTable getStatusTable(Context context) {
+        StatusTable table = StatusTable.getInstance();
+
+        if (!table.isLoaded()) {
+            synchronized (HostMonitorConfig.class) {
+                if (!table.isLoaded()) {
+                    new HostMonitorConfig(context).loadStatusTable(table);
+                }
+            }
+        }
+
+        return table;
     }
 
     /**
      * Saves and applies the configuration changes.
      * If there aren't configured hosts, it disables the {@link ConnectivityReceiver} and cancels
      * scheduled period checks. If there is at least one configured host, it enables the
-     * {@link ConnectivityReceiver} and re-schedules periodic checks with new settings. If periodic
-     * check interval is set to zero, host reachability checks will be triggered only when the
-     * connectivity status of the device changes.
+     * {@link ConnectivityReceiver} and triggers a reachability check of all the hosts, which
+     * re-schedules periodic checks with new settings. If the check interval of a host is zero,
+     * its reachability checks will be triggered only when the connectivity status of the
+     * device changes.
      */
     public void save() {
         Logger.debug(getClass().getSimpleName(), "saving configuration");
 
-        SharedPreferences.Editor prefs = getPrefs().edit();
-
-        if (mHostsMap != null && !mHostsMap.isEmpty()) {
-            Gson gson = new GsonBuilder().enableComplexMapKeySerialization().create();
-            prefs.putString(KEY_HOSTS, gson.toJson(mHostsMap));
+        if (mStatusStorage != null && mStatusStorage != getSnapshot().statusStorage) {
+            migrateStatusStorage();
         }
 
+        saveHostsMap();
+
+        SharedPreferences.Editor prefs = getPrefs().edit();
+
         if (mBroadcastAction != null && !mBroadcastAction.isEmpty()) {
             prefs.putString(KEY_BROADCAST_ACTION, mBroadcastAction);
         }
@@ -319,33 +1354,230 @@ public class HostMonitorConfig {
             prefs.putInt(KEY_MAX_ATTEMPTS, mMaxAttempts);
         }
 
-        prefs.apply();
+        if (mParallelism > 0) {
+            prefs.putInt(KEY_PARALLELISM, mParallelism);
+        }
 
-        boolean thereIsAtLeastOneHost = !getHostsMap().isEmpty();
-        Util.setBroadcastReceiverEnabled(mContext, ConnectivityReceiver.class, thereIsAtLeastOneHost);
+        if (mProbeEngine != null) {
+            prefs.putString(KEY_PROBE_ENGINE, mProbeEngine.name());
+        }
+
+        if (mDnsCacheTtl >= 0) {
+            prefs.putInt(KEY_DNS_CACHE_TTL, mDnsCacheTtl);
+        }
 
-        AlarmManager alarmManager = (AlarmManager) mContext.getSystemService(Context.ALARM_SERVICE);
-        PendingIntent intent = getPeriodicCheckIntent(mContext);
+        if (mDnsNegativeCacheTtl >= 0) {
+            prefs.putInt(KEY_DNS_NEGATIVE_CACHE_TTL, mDnsNegativeCacheTtl);
+        }
 
-        Logger.debug(HostMonitor.class.getSimpleName(), "cancelling scheduled checks");
-        alarmManager.cancel(intent);
+        if (mRetryPolicy != null) {
+            prefs.putString(KEY_RETRY_POLICY_CLASS, mRetryPolicy.getClass().getName());
+            prefs.putString(KEY_RETRY_POLICY, new Gson().toJson(mRetryPolicy));
+        }
 
-        if (thereIsAtLeastOneHost) {
-            if (getCheckInterval() > 0) {
-                Logger.debug(getClass().getSimpleName(), "scheduling periodic checks every " +
-                                                         (getCheckInterval() / 1000) + " seconds");
-                alarmManager.setRepeating(AlarmManager.RTC_WAKEUP,
-                                          System.currentTimeMillis() + getCheckInterval(),
-                                          getCheckInterval(), intent);
+        if (mRetryTimeBudget >= 0) {
+            prefs.putInt(KEY_RETRY_TIME_BUDGET, mRetryTimeBudget);
+        }
+
+        if (mRaceAllAddresses != null) {
+            prefs.putBoolean(KEY_RACE_ALL_ADDRESSES, mRaceAllAddresses);
+        }
+
+        if (mLatencyChangeThreshold >= 0) {
+            prefs.putInt(KEY_LATENCY_CHANGE_THRESHOLD, mLatencyChangeThreshold);
+        }
+
+        if (mStatusStorage != null) {
+            prefs.putString(KEY_STATUS_STORAGE, mStatusStorage.name());
+        }
+
+        if (mBatchStatusDelivery != null) {
+            prefs.putBoolean(KEY_BATCH_STATUS_DELIVERY, mBatchStatusDelivery);
+        }
+
+        if (mStatusBroadcast != null) {
+            prefs.putBoolean(KEY_STATUS_BROADCAST, mStatusBroadcast);
+        }
+
+        if (mAdaptiveMinCheckInterval >= 0) {
+            prefs.putInt(KEY_ADAPTIVE_MIN_CHECK_INTERVAL, mAdaptiveMinCheckInterval);
+        }
+
+        if (mAdaptiveMaxCheckInterval >= 0) {
+            prefs.putInt(KEY_ADAPTIVE_MAX_CHECK_INTERVAL, mAdaptiveMaxCheckInterval);
+        }
+
+        if (mAdaptiveGrowthFactor >= 0) {
+            prefs.putFloat(KEY_ADAPTIVE_GROWTH_FACTOR, mAdaptiveGrowthFactor);
+        }
+
+        if (mConnectivitySettleWindow >= 0) {
+            prefs.putInt(KEY_CONNECTIVITY_SETTLE_WINDOW, mConnectivitySettleWindow);
+        }
+
+        if (mHysteresisUpThreshold > 0) {
+            prefs.putInt(KEY_HYSTERESIS_UP_THRESHOLD, mHysteresisUpThreshold);
+        }
+
+        if (mHysteresisDownThreshold > 0) {
+            prefs.putInt(KEY_HYSTERESIS_DOWN_THRESHOLD, mHysteresisDownThreshold);
+        }
+
+        if (mPersistentConnections != null) {
+            prefs.putBoolean(KEY_PERSISTENT_CONNECTIONS, mPersistentConnections);
+        }
+
+        if (mPersistentConnectionsRecheckInterval >= 0) {
+            prefs.putInt(KEY_PERSISTENT_CONNECTIONS_RECHECK_INTERVAL,
+                         mPersistentConnectionsRecheckInterval);
+        }
+
+        for (Map.Entry<Host, Probe> entry : mProbes.entrySet()) {
+            String hostKey = entry.getKey().getKey();
+            Probe probe = entry.getValue();
+
+            if (probe == null || probe instanceof TcpProbe) {
+                prefs.remove(KEY_PROBE_CLASS_PREFIX + hostKey);
+                prefs.remove(KEY_PROBE_PREFIX + hostKey);
+            } else {
+                prefs.putString(KEY_PROBE_CLASS_PREFIX + hostKey, probe.getClass().getName());
+                prefs.putString(KEY_PROBE_PREFIX + hostKey, new Gson().toJson(probe));
             }
+        }
+        mProbes.clear();
+
+        prefs.apply();
+        invalidateSnapshot();
 
+        boolean thereIsAtLeastOneHost = !getHosts().isEmpty();
+        Util.setBroadcastReceiverEnabled(mContext, ConnectivityReceiver.class, thereIsAtLeastOneHost);
+
+        CheckAlarm.cancel(mContext);
+
+        if (thereIsAtLeastOneHost) {
             Logger.debug(getClass().getSimpleName(), "triggering reachability check");
             HostMonitor.start(mContext);
         }
     }
 
-    private static PendingIntent getPeriodicCheckIntent(Context context) {
-        return PendingIntent.getBroadcast(context, PERIODIC_CHECK_ID,
-                                          HostMonitor.getCheckIntent(context), 0);
+    /**
+     * Immutable snapshot of the persisted settings. It's loaded once and shared by all the
+     * configuration instances in the process until the configuration gets saved or reset,
+     * so that reading settings does not cause any I/O or parsing.
+     */
+    private static final class Snapshot {
+        private final String broadcastAction;
+        private final int socketTimeout;
+        private final int checkInterval;
+        private final int maxAttempts;
+        private final int parallelism;
+        private final ProbeEngine probeEngine;
+        private final int dnsCacheTtl;
+        private final int dnsNegativeCacheTtl;
+        private final RetryPolicy retryPolicy;
+        private final int retryTimeBudget;
+        private final boolean raceAllAddresses;
+        private final int latencyChangeThreshold;
+        private final StatusStorage statusStorage;
+        private final boolean batchStatusDelivery;
+        private final boolean statusBroadcast;
+        private final int adaptiveMinCheckInterval;
+        private final int adaptiveMaxCheckInterval;
+        private final float adaptiveGrowthFactor;
+        private final int connectivitySettleWindow;
+        private final int hysteresisUpThreshold;
+        private final int hysteresisDownThreshold;
+        private final boolean persistentConnections;
+        private final int persistentConnectionsRecheckInterval;
+        private final Map<Host, Probe> probes;
+
+        Snapshot(SharedPreferences prefs) {
+            broadcastAction = prefs.getString(KEY_BROADCAST_ACTION, DEFAULT_BROADCAST_ACTION);
+            socketTimeout = prefs.getInt(KEY_SOCKET_TIMEOUT, DEFAULT_SOCKET_TIMEOUT);
+            checkInterval = prefs.getInt(KEY_CHECK_INTERVAL, DEFAULT_CHECK_INTERVAL);
+            maxAttempts = prefs.getInt(KEY_MAX_ATTEMPTS, DEFAULT_MAX_ATTEMPTS);
+            parallelism = prefs.getInt(KEY_PARALLELISM, DEFAULT_PARALLELISM);
+            probeEngine = getEnum(prefs, KEY_PROBE_ENGINE, DEFAULT_PROBE_ENGINE);
+            dnsCacheTtl = prefs.getInt(KEY_DNS_CACHE_TTL, DEFAULT_DNS_CACHE_TTL);
+            dnsNegativeCacheTtl = prefs.getInt(KEY_DNS_NEGATIVE_CACHE_TTL,
+                                               DEFAULT_DNS_NEGATIVE_CACHE_TTL);
+            retryPolicy = getRetryPolicy(prefs);
+            retryTimeBudget = prefs.getInt(KEY_RETRY_TIME_BUDGET, DEFAULT_RETRY_TIME_BUDGET);
+            raceAllAddresses = prefs.getBoolean(KEY_RACE_ALL_ADDRESSES, false);
+            latencyChangeThreshold = prefs.getInt(KEY_LATENCY_CHANGE_THRESHOLD,
+                                                  DEFAULT_LATENCY_CHANGE_THRESHOLD);
+            statusStorage = getEnum(prefs, KEY_STATUS_STORAGE, DEFAULT_STATUS_STORAGE);
+            batchStatusDelivery = prefs.getBoolean(KEY_BATCH_STATUS_DELIVERY, false);
+            statusBroadcast = prefs.getBoolean(KEY_STATUS_BROADCAST, true);
+            adaptiveMinCheckInterval = prefs.getInt(KEY_ADAPTIVE_MIN_CHECK_INTERVAL,
+                                                    DEFAULT_ADAPTIVE_MIN_CHECK_INTERVAL);
+            adaptiveMaxCheckInterval = prefs.getInt(KEY_ADAPTIVE_MAX_CHECK_INTERVAL,
+                                                    DEFAULT_ADAPTIVE_MAX_CHECK_INTERVAL);
+            adaptiveGrowthFactor = prefs.getFloat(KEY_ADAPTIVE_GROWTH_FACTOR,
+                                                  DEFAULT_ADAPTIVE_GROWTH_FACTOR);
+            connectivitySettleWindow = prefs.getInt(KEY_CONNECTIVITY_SETTLE_WINDOW,
+                                                    DEFAULT_CONNECTIVITY_SETTLE_WINDOW);
+            hysteresisUpThreshold = prefs.getInt(KEY_HYSTERESIS_UP_THRESHOLD,
+                                                 DEFAULT_HYSTERESIS_THRESHOLD);
+            hysteresisDownThreshold = prefs.getInt(KEY_HYSTERESIS_DOWN_THRESHOLD,
+                                                   DEFAULT_HYSTERESIS_THRESHOLD);
+            persistentConnections = prefs.getBoolean(KEY_PERSISTENT_CONNECTIONS, false);
+            persistentConnectionsRecheckInterval = prefs.getInt(
+                    KEY_PERSISTENT_CONNECTIONS_RECHECK_INTERVAL,
+                    DEFAULT_PERSISTENT_CONNECTIONS_RECHECK_INTERVAL);
+            probes = getProbes(prefs);
+        }
+
+        private static <T extends Enum<T>> T getEnum(SharedPreferences prefs, String key,
+                                                     T defaultValue) {
+            String value = prefs.getString(key, defaultValue.name());
+
+            try {
+                return Enum.valueOf(defaultValue.getDeclaringClass(), value);
+            } catch (IllegalArgumentException exc) {
+                Logger.error(HostMonitorConfig.class.getSimpleName(),
+                             "Unknown value for " + key + ": " + value + ". Using default.", exc);
+                return defaultValue;
+            }
+        }
+
+        private static Map<Host, Probe> getProbes(SharedPreferences prefs) {
+            Map<Host, Probe> probes = new HashMap<>();
+
+            for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+                if (!entry.getKey().startsWith(KEY_PROBE_CLASS_PREFIX)) continue;
+
+                String hostKey = entry.getKey().substring(KEY_PROBE_CLASS_PREFIX.length());
+                String className = (String) entry.getValue();
+                String json = prefs.getString(KEY_PROBE_PREFIX + hostKey, "{}");
+
+                try {
+                    probes.put(Host.parseKey(hostKey),
+                               (Probe) new Gson().fromJson(json, Class.forName(className)));
+                } catch (Exception exc) {
+                    Logger.error(HostMonitorConfig.class.getSimpleName(),
+                                 "Error while deserializing probe of " + hostKey + ": "
+                                 + json + ". Using default.", exc);
+                }
+            }
+
+            return Collections.unmodifiableMap(probes);
+        }
+
+        private static RetryPolicy getRetryPolicy(SharedPreferences prefs) {
+            String className = prefs.getString(KEY_RETRY_POLICY_CLASS, null);
+
+            if (className == null) return new FixedRetryPolicy(0);
+
+            String json = prefs.getString(KEY_RETRY_POLICY, "{}");
+            try {
+                return (RetryPolicy) new Gson().fromJson(json, Class.forName(className));
+            } catch (Exception exc) {
+                Logger.error(HostMonitorConfig.class.getSimpleName(),
+                             "Error while deserializing retry policy " + className + ": "
+                             + json + ". Using default.", exc);
+                return new FixedRetryPolicy(0);
+            }
+        }
     }
 }
@@ -17,6 +17,12 @@ public class HostStatus implements Parcelable {
     private boolean reachable;
     private ConnectionType previousConnectionType;
     private ConnectionType connectionType;
+    private String address;
+    private long previousLatency;
+    private long latency;
+    private int attempts;
+    private long checkTime;
+    private int checkInterval;
 
     public HostStatus() { }
 
@@ -74,6 +80,85 @@ public class HostStatus implements Parcelable {
         return this;
     }
 
+    /**
+     * Gets the IP address to which the connection has been established.
+     * @return IP address, or null if the host is not reachable
+     */
+    public String getAddress() {
+        return address;
+    }
+
+    public HostStatus setAddress(String address) {
+        this.address = address;
+        return this;
+    }
+
+    /**
+     * Gets the measured TCP connection latency.
+     * @return latency in milliseconds, or -1 if the host is not reachable
+     */
+    public long getLatency() {
+        return latency;
+    }
+
+    public HostStatus setLatency(long latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Gets the TCP connection latency notified with the previous status.
+     * @return latency in milliseconds, or -1 if the host was not reachable
+     */
+    public long getPreviousLatency() {
+        return previousLatency;
+    }
+
+    public HostStatus setPreviousLatency(long previousLatency) {
+        this.previousLatency = previousLatency;
+        return this;
+    }
+
+    /**
+     * Gets the number of connection attempts made during the check.
+     * @return number of attempts
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public HostStatus setAttempts(int attempts) {
+        this.attempts = attempts;
+        return this;
+    }
+
+    /**
+     * Gets the time of the check.
+     * @return time in milliseconds since epoch
+     */
+    public long getCheckTime() {
+        return checkTime;
+    }
+
+    public HostStatus setCheckTime(long checkTime) {
+        this.checkTime = checkTime;
+        return this;
+    }
+
+    /**
+     * Gets the interval after which the host is going to be checked again. When the adaptive
+     * check interval is enabled, this is the current effective interval of the host.
+     * @return interval in milliseconds, or 0 if the host is not checked periodically
+     */
+    public int getCheckInterval() {
+        return checkInterval;
+    }
+
+    public HostStatus setCheckInterval(int checkInterval) {
+        this.checkInterval = checkInterval;
+        return this;
+    }
+
     public boolean connectionTypeChanged() {
         return previousConnectionType != connectionType;
     }
@@ -82,6 +167,10 @@ public class HostStatus implements Parcelable {
         return previousReachable != reachable;
     }
 
+    public boolean latencyChanged() {
+        return previousLatency != latency;
+    }
+
     // This is used to regenerate the object.
     // All Parcelables must have a CREATOR that implements these two methods
     public static final Parcelable.Creator<HostStatus> CREATOR = new Parcelable.Creator<HostStatus>() {
@@ -109,6 +198,12 @@ public class HostStatus implements Parcelable {
         dest.writeInt(reachable ? 1 : 0);
         dest.writeInt(connectionType.ordinal());
         dest.writeInt(previousConnectionType.ordinal());
+        dest.writeString(address);
+        dest.writeLong(previousLatency);
+        dest.writeLong(latency);
+        dest.writeInt(attempts);
+        dest.writeLong(checkTime);
+        dest.writeInt(checkInterval);
     }
 
     private HostStatus(Parcel in) {
@@ -118,6 +213,12 @@ public class HostStatus implements Parcelable {
         reachable = (in.readInt() == 1);
         connectionType = ConnectionType.values()[in.readInt()];
         previousConnectionType = ConnectionType.values()[in.readInt()];
+        address = in.readString();
+        previousLatency = in.readLong();
+        latency = in.readLong();
+        attempts = in.readInt();
+        checkTime = in.readLong();
+        checkInterval = in.readInt();
     }
 
     @Override
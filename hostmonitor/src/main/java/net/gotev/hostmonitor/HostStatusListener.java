@@ -0,0 +1,21 @@
+package net.gotev.hostmonitor;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Receives the host status changes directly, in the same process in which the checks run,
+ * without going through broadcasts. Register it with
+ * {@link HostMonitorConfig#addStatusListener(HostStatusListener, Executor)}.
+ * @author gotev (Aleksandar Gotev)
+ */
+public interface HostStatusListener {
+
+    /**
+     * Called on the listener's executor when there's a host status change.
+     * The same {@link HostStatus} instance is passed to all the listeners, so don't modify it.
+     * No wake lock is held for you, so acquire one if you need the device to stay awake
+     * after this method returns.
+     * @param status new host status
+     */
+    void onHostStatusChanged(HostStatus status);
+}
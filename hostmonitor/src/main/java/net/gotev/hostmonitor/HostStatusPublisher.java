@@ -0,0 +1,281 @@
+package net.gotev.hostmonitor;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Publishes the host status changes to {@link StatusFlow.Subscriber}s, in the same process in
+ * which the checks run. Each subscription keeps the changes not yet requested by its
+ * subscriber according to the {@link OverflowStrategy}, so a burst of changes never
+ * overwhelms a slow subscriber nor grows memory without bound.
+ * Subscribers are called on the given executor.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class HostStatusPublisher implements StatusFlow.Publisher {
+
+    private static final String LOG_TAG = HostStatusPublisher.class.getSimpleName();
+
+    /**
+     * What to do with the changes which the subscriber has not requested yet.
+     */
+    public enum OverflowStrategy {
+        /**
+         * Keeps only the latest change of each host. The delivered change reports as
+         * previous values the ones of the first conflated change, so a subscriber sees
+         * every transition from the last state it received. Memory is bounded by the number
+         * of monitored hosts.
+         */
+        LATEST_PER_HOST,
+
+        /**
+         * Keeps up to the buffer size changes, discarding the oldest ones when full.
+         */
+        BUFFER,
+
+        /**
+         * Discards the changes which arrive when the subscriber has no outstanding requests.
+         */
+        DROP
+    }
+
+    // runs the tasks on the check thread, which only enqueues the changes
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final OverflowStrategy mStrategy;
+    private final int mBufferSize;
+    private final Executor mExecutor;
+
+    /**
+     * Creates a new publisher.
+     * @param strategy overflow strategy of the subscriptions
+     * @param bufferSize maximum number of changes kept for each subscription with the
+     *                   {@link OverflowStrategy#BUFFER} strategy. Ignored otherwise
+     * @param executor executor on which the subscribers are called
+     */
+    public HostStatusPublisher(OverflowStrategy strategy, int bufferSize, Executor executor) {
+        if (strategy == null)
+            throw new IllegalArgumentException("strategy MUST not be null!");
+
+        if (executor == null)
+            throw new IllegalArgumentException("executor MUST not be null!");
+
+        if (strategy == OverflowStrategy.BUFFER && bufferSize < 1)
+            throw new IllegalArgumentException("Specify a buffer size of at least 1!");
+
+        mStrategy = strategy;
+        mBufferSize = bufferSize;
+        mExecutor = executor;
+    }
+
+    @Override
+    public void subscribe(StatusFlow.Subscriber subscriber) {
+        if (subscriber == null)
+            throw new IllegalArgumentException("subscriber MUST not be null!");
+
+        StatusSubscription subscription = new StatusSubscription(subscriber);
+        StatusListeners.add(subscription, DIRECT);
+        subscription.start();
+    }
+
+    private class StatusSubscription implements StatusFlow.Subscription, HostStatusListener {
+
+        private final StatusFlow.Subscriber mSubscriber;
+
+        // all the fields below are guarded by this
+        private final ArrayDeque<HostStatus> mQueue = new ArrayDeque<>();
+        private final Map<String, HostStatus> mLatest = new LinkedHashMap<>();
+        private long mRequested;
+        private boolean mCancelled;
+        private Throwable mError;
+        // true while a task is delivering signals, so that they are never concurrent
+        private boolean mDraining = true;
+
+        StatusSubscription(StatusFlow.Subscriber subscriber) {
+            mSubscriber = subscriber;
+        }
+
+        void start() {
+            execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        mSubscriber.onSubscribe(StatusSubscription.this);
+                    } catch (Exception exc) {
+                        Logger.error(LOG_TAG, "Error in subscriber onSubscribe", exc);
+                        cancel();
+                    }
+
+                    drain();
+                }
+            });
+        }
+
+        @Override
+        public void onHostStatusChanged(HostStatus status) {
+            synchronized (this) {
+                if (mCancelled) return;
+
+                if (mStrategy == OverflowStrategy.LATEST_PER_HOST) {
+                    String key = status.getHost() + ":" + status.getPort();
+                    HostStatus pending = mLatest.remove(key);
+                    mLatest.put(key, pending == null ? status : conflate(pending, status));
+
+                } else if (mStrategy == OverflowStrategy.BUFFER) {
+                    if (mQueue.size() >= mBufferSize) {
+                        mQueue.poll();
+                    }
+                    mQueue.add(status);
+
+                } else if (mRequested > mQueue.size()) {
+                    mQueue.add(status);
+
+                } else {
+                    return;
+                }
+            }
+
+            scheduleDrain();
+        }
+
+        @Override
+        public void request(long count) {
+            synchronized (this) {
+                if (mCancelled) return;
+
+                if (count <= 0) {
+                    mError = new IllegalArgumentException("Requested " + count
+                            + " status changes. Request a positive number!");
+                } else {
+                    mRequested += count;
+                    // the demand saturates at Long.MAX_VALUE, which means unbounded
+                    if (mRequested < 0) mRequested = Long.MAX_VALUE;
+                }
+            }
+
+            scheduleDrain();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                if (mCancelled) return;
+
+                mCancelled = true;
+                mQueue.clear();
+                mLatest.clear();
+            }
+
+            StatusListeners.remove(this);
+        }
+
+        private void scheduleDrain() {
+            synchronized (this) {
+                if (mDraining) return;
+                mDraining = true;
+            }
+
+            execute(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            });
+        }
+
+        /**
+         * Delivers the pending signals as long as the subscriber requested them.
+         */
+        private void drain() {
+            while (true) {
+                HostStatus next;
+                Throwable error;
+
+                synchronized (this) {
+                    error = mError;
+
+                    if (mCancelled || (error == null && (mRequested == 0 || isQueueEmpty()))) {
+                        mDraining = false;
+                        return;
+                    }
+
+                    next = error == null ? poll() : null;
+
+                    if (error == null && mRequested != Long.MAX_VALUE) {
+                        mRequested--;
+                    }
+                }
+
+                if (error != null) {
+                    cancel();
+                    try {
+                        mSubscriber.onError(error);
+                    } catch (Exception exc) {
+                        Logger.error(LOG_TAG, "Error in subscriber onError", exc);
+                    }
+                    continue;
+                }
+
+                try {
+                    mSubscriber.onNext(next);
+                } catch (Exception exc) {
+                    Logger.error(LOG_TAG, "Error in subscriber onNext. Cancelling subscription", exc);
+                    cancel();
+                }
+            }
+        }
+
+        private boolean isQueueEmpty() {
+            return mQueue.isEmpty() && mLatest.isEmpty();
+        }
+
+        private HostStatus poll() {
+            if (!mQueue.isEmpty()) return mQueue.poll();
+
+            Iterator<HostStatus> iterator = mLatest.values().iterator();
+            HostStatus status = iterator.next();
+            iterator.remove();
+            return status;
+        }
+
+        private void execute(Runnable task) {
+            try {
+                mExecutor.execute(task);
+            } catch (Exception exc) {
+                Logger.error(LOG_TAG, "Error while scheduling delivery. Cancelling subscription", exc);
+                cancel();
+
+                synchronized (this) {
+                    mDraining = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges two consecutive changes of the same host into a single one, which goes from the
+     * previous state of the older change to the current state of the newer one.
+     */
+    private static HostStatus conflate(HostStatus older, HostStatus newer) {
+        return new HostStatus()
+                .setHost(newer.getHost())
+                .setPort(newer.getPort())
+                .setPreviousReachable(older.isPreviousReachable())
+                .setPreviousConnectionType(older.getPreviousConnectionType())
+                .setPreviousLatency(older.getPreviousLatency())
+                .setReachable(newer.isReachable())
+                .setConnectionType(newer.getConnectionType())
+                .setAddress(newer.getAddress())
+                .setLatency(newer.getLatency())
+                .setAttempts(newer.getAttempts())
+                .setCheckTime(newer.getCheckTime())
+                .setCheckInterval(newer.getCheckInterval());
+    }
+}
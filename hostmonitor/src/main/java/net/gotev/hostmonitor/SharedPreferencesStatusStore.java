@@ -0,0 +1,70 @@
+package net.gotev.hostmonitor;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.google.gson.Gson;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Status store which keeps each host in its own {@link SharedPreferences} entry, so that only
+ * the changed hosts have to be serialized when writing.
+ * @author gotev (Aleksandar Gotev)
+ */
+class SharedPreferencesStatusStore implements StatusStore {
+
+    private static final String LOG_TAG = SharedPreferencesStatusStore.class.getSimpleName();
+
+    // shared preferences file name
+    static final String PREFS_FILE_NAME = "host_monitor_status";
+
+    private final SharedPreferences mPrefs;
+    private final Gson mGson = new Gson();
+
+    public SharedPreferencesStatusStore(Context context) {
+        mPrefs = context.getSharedPreferences(PREFS_FILE_NAME, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public void load(StatusTable table) {
+        for (Map.Entry<String, ?> entry : mPrefs.getAll().entrySet()) {
+            try {
+                table.put(Host.parseKey(entry.getKey()),
+                          mGson.fromJson((String) entry.getValue(), Status.class));
+            } catch (Exception exc) {
+                Logger.error(LOG_TAG, "Error while deserializing host " + entry.getKey() + ": "
+                             + entry.getValue() + ". Ignoring value.", exc);
+            }
+        }
+    }
+
+    @Override
+    public void write(StatusTable table, BitSet changed, Collection<Host> removed) {
+        SharedPreferences.Editor editor = mPrefs.edit();
+
+        // removals first, so that the hosts removed and added again are kept
+        for (Host host : removed) {
+            editor.remove(host.getKey());
+        }
+
+        Status status = new Status();
+
+        for (int id = changed.nextSetBit(0); id >= 0; id = changed.nextSetBit(id + 1)) {
+            Host host = table.getHost(id);
+
+            if (host != null && table.read(id, status)) {
+                editor.putString(host.getKey(), mGson.toJson(status));
+            }
+        }
+
+        editor.apply();
+    }
+
+    @Override
+    public void clear() {
+        mPrefs.edit().clear().apply();
+    }
+}
@@ -0,0 +1,71 @@
+package net.gotev.hostmonitor;
+
+/**
+ * Interfaces of the host status stream, with the same contract of the Reactive Streams
+ * specification (and java.util.concurrent.Flow, which is not available on Android).
+ * Subscribers signal how many status changes they are ready to receive, so that a slow
+ * subscriber never gets more changes than it asked for.
+ * @author gotev (Aleksandar Gotev)
+ */
+public final class StatusFlow {
+
+    private StatusFlow() { }
+
+    /**
+     * Producer of host status changes.
+     */
+    public interface Publisher {
+        /**
+         * Adds a subscriber, which receives {@link Subscriber#onSubscribe(Subscription)}
+         * before any other signal.
+         * @param subscriber subscriber
+         */
+        void subscribe(Subscriber subscriber);
+    }
+
+    /**
+     * Receiver of host status changes. Signals are never concurrent with each other.
+     */
+    public interface Subscriber {
+        /**
+         * Called once, before any other signal.
+         * @param subscription subscription, to be used to request changes or to cancel
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called with the next status change, only if requested.
+         * @param status host status change
+         */
+        void onNext(HostStatus status);
+
+        /**
+         * Called when the subscription terminated because of an error. No other signals
+         * follow.
+         * @param error error
+         */
+        void onError(Throwable error);
+
+        /**
+         * Called when there won't be other status changes. No other signals follow.
+         */
+        void onComplete();
+    }
+
+    /**
+     * Link between a publisher and a subscriber.
+     */
+    public interface Subscription {
+        /**
+         * Requests other status changes.
+         * @param count number of additional changes the subscriber is ready to receive
+         *              (must be positive)
+         */
+        void request(long count);
+
+        /**
+         * Stops the delivery of status changes and releases the pending ones.
+         */
+        void cancel();
+    }
+}
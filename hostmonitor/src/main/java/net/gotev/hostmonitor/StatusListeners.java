@@ -0,0 +1,66 @@
+package net.gotev.hostmonitor;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Process-wide registry of the {@link HostStatusListener}s. Registrations are rare and
+ * dispatches are frequent, so the registry is copied on write and iterated without locking.
+ * @author gotev (Aleksandar Gotev)
+ */
+class StatusListeners {
+
+    private static final String LOG_TAG = StatusListeners.class.getSimpleName();
+
+    private static class Registration {
+        private final HostStatusListener listener;
+        private final Executor executor;
+
+        Registration(HostStatusListener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+    }
+
+    private static final CopyOnWriteArrayList<Registration> registrations =
+            new CopyOnWriteArrayList<>();
+
+    private StatusListeners() { }
+
+    static synchronized void add(HostStatusListener listener, Executor executor) {
+        remove(listener);
+        registrations.add(new Registration(listener, executor));
+    }
+
+    static synchronized void remove(HostStatusListener listener) {
+        for (Registration registration : registrations) {
+            if (registration.listener == listener) {
+                registrations.remove(registration);
+                return;
+            }
+        }
+    }
+
+    static boolean isEmpty() {
+        return registrations.isEmpty();
+    }
+
+    /**
+     * Delivers a status change to all the registered listeners, each one on its executor.
+     * @param status new host status
+     */
+    static void dispatch(final HostStatus status) {
+        for (final Registration registration : registrations) {
+            try {
+                registration.executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        registration.listener.onHostStatusChanged(status);
+                    }
+                });
+            } catch (Exception exc) {
+                Logger.error(LOG_TAG, "Error while delivering status to listener", exc);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package net.gotev.hostmonitor;
+
+/**
+ * Enumeration of the storages which can be used to persist the status of the monitored hosts.
+ * @author gotev (Aleksandar Gotev)
+ */
+public enum StatusStorage {
+    /**
+     * Each host is saved as a JSON string in its own shared preferences entry.
+     */
+    SHARED_PREFERENCES,
+
+    /**
+     * Hosts are saved as fixed size records in a memory mapped binary file, so a host status
+     * can be read or updated in place without decoding or rewriting the others.
+     */
+    BINARY_FILE
+}
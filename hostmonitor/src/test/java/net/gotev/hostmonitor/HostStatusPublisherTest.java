@@ -0,0 +1,211 @@
+package net.gotev.hostmonitor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@link HostStatusPublisher} delivers only the requested status changes and keeps
+ * the other ones according to its overflow strategy. Subscribers are called synchronously, so
+ * each signal is delivered before the call which caused it returns.
+ * @author gotev (Aleksandar Gotev)
+ */
+public class HostStatusPublisherTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static class TestSubscriber implements StatusFlow.Subscriber {
+        private StatusFlow.Subscription subscription;
+        private final List<HostStatus> received = new ArrayList<>();
+        private Throwable error;
+
+        @Override
+        public void onSubscribe(StatusFlow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(HostStatus status) {
+            received.add(status);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    private final List<TestSubscriber> mSubscribers = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        Logger.setLogLevel(Logger.LogLevel.OFF);
+    }
+
+    @After
+    public void tearDown() {
+        for (TestSubscriber subscriber : mSubscribers) {
+            subscriber.subscription.cancel();
+        }
+    }
+
+    @Test
+    public void changesAreDeliveredOnlyWhenRequested() {
+        TestSubscriber subscriber = subscribe(HostStatusPublisher.OverflowStrategy.BUFFER, 10);
+
+        dispatch("a", true);
+        dispatch("b", true);
+        dispatch("c", true);
+        assertTrue(subscriber.received.isEmpty());
+
+        subscriber.subscription.request(2);
+        assertHosts(subscriber, "a", "b");
+
+        subscriber.subscription.request(1);
+        assertHosts(subscriber, "a", "b", "c");
+    }
+
+    @Test
+    public void outstandingDemandIsServedImmediately() {
+        TestSubscriber subscriber = subscribe(HostStatusPublisher.OverflowStrategy.BUFFER, 10);
+
+        subscriber.subscription.request(2);
+        dispatch("a", true);
+        dispatch("b", true);
+        dispatch("c", true);
+
+        assertHosts(subscriber, "a", "b");
+    }
+
+    @Test
+    public void unboundedDemandDeliversEverything() {
+        TestSubscriber subscriber = subscribe(HostStatusPublisher.OverflowStrategy.BUFFER, 1);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.subscription.request(1);
+
+        for (int i = 0; i < 5; i++) {
+            dispatch("host" + i, true);
+        }
+
+        assertEquals(5, subscriber.received.size());
+    }
+
+    @Test
+    public void bufferDiscardsTheOldestChangesWhenFull() {
+        TestSubscriber subscriber = subscribe(HostStatusPublisher.OverflowStrategy.BUFFER, 2);
+
+        dispatch("a", true);
+        dispatch("b", true);
+        dispatch("c", true);
+        subscriber.subscription.request(10);
+
+        assertHosts(subscriber, "b", "c");
+    }
+
+    @Test
+    public void dropDiscardsTheChangesWithoutDemand() {
+        TestSubscriber subscriber = subscribe(HostStatusPublisher.OverflowStrategy.DROP, 0);
+
+        dispatch("a", true);
+        subscriber.subscription.request(1);
+        dispatch("b", true);
+        dispatch("c", true);
+
+        assertHosts(subscriber, "b");
+    }
+
+    @Test
+    public void latestPerHostConflatesTheChangesOfEachHost() {
+        TestSubscriber subscriber = subscribe(
+                HostStatusPublisher.OverflowStrategy.LATEST_PER_HOST, 0);
+
+        dispatch("a", false);
+        dispatch("b", false);
+        dispatch("a", true);
+        subscriber.subscription.request(10);
+
+        // hosts are delivered in the order of their latest change
+        assertHosts(subscriber, "b", "a");
+
+        HostStatus conflated = subscriber.received.get(1);
+        assertTrue(conflated.isPreviousReachable());
+        assertTrue(conflated.isReachable());
+    }
+
+    @Test
+    public void nonPositiveRequestIsAnError() {
+        TestSubscriber subscriber = subscribe(HostStatusPublisher.OverflowStrategy.BUFFER, 10);
+
+        dispatch("a", true);
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertTrue(subscriber.received.isEmpty());
+
+        subscriber.subscription.request(1);
+        assertTrue(subscriber.received.isEmpty());
+    }
+
+    @Test
+    public void cancelStopsTheDelivery() {
+        TestSubscriber subscriber = subscribe(HostStatusPublisher.OverflowStrategy.BUFFER, 10);
+
+        subscriber.subscription.request(10);
+        dispatch("a", true);
+        subscriber.subscription.cancel();
+        dispatch("b", true);
+
+        assertHosts(subscriber, "a");
+        assertNull(subscriber.error);
+    }
+
+    private TestSubscriber subscribe(HostStatusPublisher.OverflowStrategy strategy,
+                                     int bufferSize) {
+        TestSubscriber subscriber = new TestSubscriber();
+        new HostStatusPublisher(strategy, bufferSize, DIRECT).subscribe(subscriber);
+        mSubscribers.add(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * Dispatches the change of a host, which was reachable before if it's not anymore and
+     * the other way around.
+     */
+    private static void dispatch(String host, boolean reachable) {
+        StatusListeners.dispatch(new HostStatus()
+                .setHost(host)
+                .setPort(80)
+                .setPreviousReachable(!reachable)
+                .setReachable(reachable)
+                .setConnectionType(ConnectionType.WIFI));
+    }
+
+    private static void assertHosts(TestSubscriber subscriber, String... hosts) {
+        assertEquals(hosts.length, subscriber.received.size());
+
+        for (int i = 0; i < hosts.length; i++) {
+            assertEquals(hosts[i], subscriber.received.get(i).getHost());
+        }
+
+        assertFalse(subscriber.received.contains(null));
+    }
+}